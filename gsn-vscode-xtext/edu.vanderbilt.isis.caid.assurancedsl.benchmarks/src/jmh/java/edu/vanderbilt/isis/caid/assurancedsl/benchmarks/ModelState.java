@@ -0,0 +1,140 @@
+package edu.vanderbilt.isis.caid.assurancedsl.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.generator.IGenerator2;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.inject.Injector;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+import edu.vanderbilt.isis.caid.assurancedsl.ide.AssuranceIdeSetup;
+import edu.vanderbilt.isis.caid.assurancedsl.ide.CommandService;
+import edu.vanderbilt.isis.caid.assurancedsl.ide.ModelWorkspace;
+
+/**
+ * A model directory loaded into a warm workspace of a command service, as the commands see it.
+ *
+ * The model is either a copy of one of the sample models or a synthetic model of the given shape, written
+ * to a temporary directory so that benchmarks which save do not touch the originals. The sample models are
+ * looked up in the directory given by the system property {@value #SAMPLE_MODELS_PROPERTY}, by default
+ * next to the Gradle root project.
+ */
+@State(Scope.Benchmark)
+public class ModelState {
+
+    public static final String SAMPLE_MODELS_PROPERTY = "gsn.sampleModels";
+
+    public static final String SYNTHETIC = "synthetic";
+
+    /**
+     * The name of a directory of the sample models, or {@value #SYNTHETIC}.
+     */
+    @Param({ "gauss", "BlueROV", SYNTHETIC })
+    public String model;
+
+    @Param("20")
+    public int files;
+
+    @Param("2000")
+    public int nodes;
+
+    @Param("4")
+    public int depth;
+
+    @Param("4")
+    public int fanOut;
+
+    @Param("0.2")
+    public double crossFileRefRatio;
+
+    public File directory;
+
+    public CommandService commandService;
+
+    public AssuranceGenerator generator;
+
+    public ModelWorkspace workspace;
+
+    public List<Resource> resources;
+
+    public HashMap<String, ALLNodes> objDict;
+
+    /**
+     * The ids of all nodes in the order of the resources, before the response is sorted.
+     */
+    public List<String> nodeIds;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("gsn-benchmark-").toFile();
+        if (SYNTHETIC.equals(model)) {
+            new SyntheticModelGenerator(files, nodes, depth, fanOut, crossFileRefRatio, 42).write(directory);
+        } else {
+            copy(new File(System.getProperty(SAMPLE_MODELS_PROPERTY, "../sample-models"), model), directory);
+        }
+
+        Injector injector = new AssuranceIdeSetup().createInjectorAndDoEMFRegistration();
+        commandService = injector.getInstance(CommandService.class);
+        generator = (AssuranceGenerator) injector.getInstance(IGenerator2.class);
+        workspace = commandService.getModelWorkspace(directory.getPath());
+        resources = commandService.getResourceList(workspace);
+        for (Resource r : resources) {
+            if (!r.getErrors().isEmpty()) {
+                throw new IllegalStateException(r.getURI() + ": " + r.getErrors());
+            }
+        }
+        objDict = commandService.generateObjectDict(resources, generator);
+
+        nodeIds = new ArrayList<String>();
+        for (Resource r : resources) {
+            for (Iterator<EObject> it = r.getAllContents(); it.hasNext();) {
+                EObject obj = it.next();
+                if (obj instanceof ALLNodes) {
+                    nodeIds.add(generator.getNodeFQN(obj));
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        if (!from.isDirectory()) {
+            throw new IOException("Not a model directory: " + from.getAbsolutePath());
+        }
+        Path source = from.toPath();
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path p : (Iterable<Path>) paths::iterator) {
+                Path target = to.toPath().resolve(source.relativize(p).toString());
+                if (Files.isDirectory(p)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(p, target);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package edu.vanderbilt.isis.caid.assurancedsl.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.eclipse.xtext.validation.CheckMode;
+import org.eclipse.xtext.validation.IResourceValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.ide.GeneratedNode;
+import edu.vanderbilt.isis.caid.assurancedsl.ide.JsonFragmentCache;
+
+/**
+ * The stages of the command pipeline of CommandService, each on a loaded model.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    /**
+     * Parses and links all files of the model directory, as the first command on a directory does.
+     */
+    @Benchmark
+    public List<Resource> getResourceListCold(ModelState state) throws IOException {
+        state.workspace.invalidate();
+        return state.commandService.getResourceList(state.workspace);
+    }
+
+    /**
+     * Checks the files of a loaded model directory for changes, as every later command does.
+     */
+    @Benchmark
+    public List<Resource> getResourceListWarm(ModelState state) throws IOException {
+        return state.commandService.getResourceList(state.workspace);
+    }
+
+    /**
+     * Builds the GET_MODEL_JSON nodes from the cached JSON fragments of unchanged resources.
+     */
+    @Benchmark
+    public List<GeneratedNode> generateJSONOutput(ModelState state) {
+        return state.commandService.generateJSONOutput(state.resources, state.generator,
+                state.workspace.getResourceSet());
+    }
+
+    /**
+     * Generates the JSON of every node from scratch.
+     */
+    @Benchmark
+    public List<GeneratedNode> generateJSONOutputUncached(ModelState state) {
+        return new JsonFragmentCache().generate(state.resources, state.generator);
+    }
+
+    /**
+     * Sorts the node ids into the order of the model JSON, which the generator did with JsonObjectSort
+     * before the fragments were merged.
+     */
+    @Benchmark
+    public List<String> sortNodeIds(ModelState state) {
+        List<String> ids = new ArrayList<String>(state.nodeIds);
+        ids.sort(state.generator::compareNodeIds);
+        return ids;
+    }
+
+    @Benchmark
+    public HashMap<String, ALLNodes> generateObjectDict(ModelState state) {
+        return state.commandService.generateObjectDict(state.resources, state.generator);
+    }
+
+    /**
+     * Serializes every resource of the model; the files are not written again since their content does
+     * not change.
+     */
+    @Benchmark
+    public List<URI> saveResourceSet(ModelState state) {
+        for (Resource r : state.resources) {
+            r.setModified(true);
+        }
+        return state.commandService.saveResourceSet(state.resources, state.workspace.getResourceSet());
+    }
+
+    /**
+     * Runs all checks of AssuranceValidator (and the built-in ones) on every resource.
+     */
+    @Benchmark
+    public void validate(ModelState state, Blackhole blackhole) {
+        IResourceValidator validator = state.commandService.getResourceValidator();
+        for (Resource r : state.resources) {
+            blackhole.consume(validator.validate(r, CheckMode.ALL, CancelIndicator.NullImpl));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package edu.vanderbilt.isis.caid.assurancedsl.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.lsp4j.ExecuteCommandParams;
+import org.eclipse.xtext.serializer.ISerializer;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.eclipse.xtext.validation.IResourceValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.inject.Injector;
+
+import edu.vanderbilt.isis.caid.assurancedsl.AssuranceStandaloneSetup;
+import edu.vanderbilt.isis.caid.assurancedsl.ide.AssuranceIdeSetup;
+import edu.vanderbilt.isis.caid.assurancedsl.ide.CommandService;
+
+/**
+ * The fixed per-command overhead of the language runtime: a new standalone injector for every resource
+ * set, serializer and validator, as CommandService created them before the runtime was shared, against
+ * the shared AssuranceLanguageRuntime.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuntimeOverheadBenchmark {
+
+    /**
+     * Command service that builds a new injector for every runtime service.
+     */
+    public static class PerCallInjectorCommandService extends CommandService {
+        @Override
+        public ResourceSet getResourceSet() {
+            Injector injector = new AssuranceStandaloneSetup().createInjectorAndDoEMFRegistration();
+            return injector.getInstance(ResourceSet.class);
+        }
+
+        @Override
+        public IResourceValidator getResourceValidator() {
+            Injector injector = new AssuranceStandaloneSetup().createInjectorAndDoEMFRegistration();
+            return injector.getInstance(IResourceValidator.class);
+        }
+
+        @Override
+        public ISerializer getSerializer() {
+            Injector injector = new AssuranceStandaloneSetup().createInjectorAndDoEMFRegistration();
+            return injector.getInstance(ISerializer.class);
+        }
+    }
+
+    /**
+     * A command service of each kind, without a model.
+     */
+    @State(Scope.Benchmark)
+    public static class CommandServices {
+
+        public CommandService perCall;
+
+        public CommandService shared;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Injector injector = new AssuranceIdeSetup().createInjectorAndDoEMFRegistration();
+            shared = injector.getInstance(CommandService.class);
+            perCall = new PerCallInjectorCommandService();
+            injector.injectMembers(perCall);
+        }
+    }
+
+    @Benchmark
+    public void runtimeServicesPerCallInjector(CommandServices services, Blackhole blackhole) {
+        getRuntimeServices(services.perCall, blackhole);
+    }
+
+    @Benchmark
+    public void runtimeServicesShared(CommandServices services, Blackhole blackhole) {
+        getRuntimeServices(services.shared, blackhole);
+    }
+
+    /**
+     * A command on a cold workspace pays the runtime setup plus a full load of the model directory.
+     */
+    @Benchmark
+    public Object coldGetModelJsonPerCallInjector(ModelState state, CommandServices services) {
+        services.perCall.getModelWorkspace(state.directory.getPath()).invalidate();
+        return getModelJson(services.perCall, state);
+    }
+
+    @Benchmark
+    public Object coldGetModelJsonShared(ModelState state) {
+        state.workspace.invalidate();
+        return getModelJson(state.commandService, state);
+    }
+
+    private static void getRuntimeServices(CommandService commandService, Blackhole blackhole) {
+        blackhole.consume(commandService.getResourceSet());
+        blackhole.consume(commandService.getSerializer());
+        blackhole.consume(commandService.getResourceValidator());
+    }
+
+    private static Object getModelJson(CommandService commandService, ModelState state) {
+        String arg = "{\"modelDir\":\"" + state.directory.getPath().replace("\\", "\\\\") + "\"}";
+        Object result = commandService.execute(
+                new ExecuteCommandParams("gsn.GET_MODEL_JSON", Collections.<Object>singletonList(arg)), null,
+                CancelIndicator.NullImpl);
+        if (!(result instanceof String) || !((String) result).startsWith("[")) {
+            throw new IllegalStateException("GET_MODEL_JSON failed: " + result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,182 @@
+package edu.vanderbilt.isis.caid.assurancedsl.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Writes a synthetic assurance model of a given shape for the benchmarks.
+ *
+ * The nodes are spread evenly over {@code files} goal files, every file holding the same tree: goals are
+ * decomposed by a strategy into {@code fanOut} sub-goals down to {@code depth} levels (or until the
+ * file's share of {@code nodes} is used up) and the leaf goals are solved by a solution. Every goal other
+ * than a root references a goal of a later file with probability {@code crossFileRefRatio}; references
+ * only point forward, so the model has no reference cycles. The roots reference a context of a shared
+ * contexts file. The output depends only on the parameters and the seed.
+ */
+public final class SyntheticModelGenerator {
+
+    private static class Node {
+
+        final String kind;
+
+        final String name;
+
+        final String path;
+
+        final List<Node> children = new ArrayList<Node>();
+
+        Node(String kind, String name, Node parent) {
+            this.kind = kind;
+            this.name = name;
+            this.path = parent != null ? parent.path + "." + name : name;
+        }
+    }
+
+    private final int files;
+
+    private final int nodes;
+
+    private final int depth;
+
+    private final int fanOut;
+
+    private final double crossFileRefRatio;
+
+    private final long seed;
+
+    public SyntheticModelGenerator(int files, int nodes, int depth, int fanOut, double crossFileRefRatio,
+            long seed) {
+        this.files = Math.max(1, files);
+        this.nodes = nodes;
+        this.depth = depth;
+        this.fanOut = Math.max(1, fanOut);
+        this.crossFileRefRatio = crossFileRefRatio;
+        this.seed = seed;
+    }
+
+    /**
+     * Writes ctx.gsn and m0.gsn ... m&lt;files-1&gt;.gsn into the given directory.
+     */
+    public void write(File dir) throws IOException {
+        dir.mkdirs();
+        Node root = createTree();
+        List<Node> goals = new ArrayList<Node>();
+        collectGoals(root, goals);
+        Random random = new Random(seed);
+
+        StringBuilder contexts = new StringBuilder();
+        contexts.append("CONTEXTS ctx\n{\n");
+        for (int i = 0; i < files; i++) {
+            contexts.append("    context C").append(i).append("\n    {\n");
+            contexts.append("        uuid:\"").append(uuid("ctx.C" + i)).append("\";\n");
+            contexts.append("        summary:'''Context of module ").append(i).append("''';\n");
+            contexts.append("    }\n");
+        }
+        contexts.append("}\n");
+        writeFile(new File(dir, "ctx.gsn"), contexts);
+
+        for (int i = 0; i < files; i++) {
+            StringBuilder b = new StringBuilder();
+            b.append("GOALS m").append(i).append("\n{\n");
+            writeNode(b, root, i, goals, random, 1);
+            b.append("}\n");
+            writeFile(new File(dir, "m" + i + ".gsn"), b);
+        }
+    }
+
+    /**
+     * Builds the goal tree shared by all files, breadth first so that the node budget cuts off the
+     * deepest levels.
+     */
+    private Node createTree() {
+        int budget = Math.max(1, (nodes + files - 1) / files);
+        int count = 1;
+        int counter = 0;
+        Node root = new Node("goal", "Root", null);
+        Deque<Node> queue = new ArrayDeque<Node>();
+        Deque<Integer> levels = new ArrayDeque<Integer>();
+        queue.add(root);
+        levels.add(0);
+        while (!queue.isEmpty()) {
+            Node goal = queue.poll();
+            int level = levels.poll();
+            if (level < depth && count + 1 + fanOut <= budget) {
+                Node strategy = new Node("strategy", "S" + counter++, goal);
+                goal.children.add(strategy);
+                count++;
+                for (int k = 0; k < fanOut; k++) {
+                    Node child = new Node("goal", "G" + counter++, strategy);
+                    strategy.children.add(child);
+                    count++;
+                    queue.add(child);
+                    levels.add(level + 1);
+                }
+            } else {
+                goal.children.add(new Node("solution", "Sn" + counter++, goal));
+                count++;
+            }
+        }
+        return root;
+    }
+
+    private void writeNode(StringBuilder b, Node node, int file, List<Node> goals, Random random, int indent) {
+        String ns = "m" + file;
+        indent(b, indent).append(node.kind).append(' ').append(node.name).append('\n');
+        indent(b, indent).append("{\n");
+        indent(b, indent + 1).append("uuid:\"").append(uuid(ns + "." + node.path)).append("\";\n");
+        indent(b, indent + 1).append("summary:'''").append(node.kind).append(' ').append(node.path)
+                .append(" of module ").append(file).append("''';\n");
+        if (node.kind.equals("solution")) {
+            indent(b, indent + 1).append("artifact:\"http://example.org/artifacts/").append(ns).append('/')
+                    .append(node.name).append(".zip\";\n");
+            indent(b, indent + 1).append("status:")
+                    .append((node.name.hashCode() & 1) == 0 ? "Approved" : "NotReviewed").append(";\n");
+        }
+        for (Node child : node.children) {
+            writeNode(b, child, file, goals, random, indent + 1);
+        }
+        if (node.kind.equals("goal")) {
+            if (node.path.equals("Root")) {
+                indent(b, indent + 1).append("ref_context: ctx.C").append(file).append(";\n");
+            } else if (file + 1 < files && random.nextDouble() < crossFileRefRatio) {
+                int target = file + 1 + random.nextInt(files - file - 1);
+                Node goal = goals.get(random.nextInt(goals.size()));
+                indent(b, indent + 1).append("ref_goal: m").append(target).append('.').append(goal.path)
+                        .append(";\n");
+            }
+        }
+        indent(b, indent).append("}\n");
+    }
+
+    private static void collectGoals(Node node, List<Node> goals) {
+        if (node.kind.equals("goal")) {
+            goals.add(node);
+        }
+        for (Node child : node.children) {
+            collectGoals(child, goals);
+        }
+    }
+
+    private static StringBuilder indent(StringBuilder b, int indent) {
+        for (int i = 0; i < indent; i++) {
+            b.append("    ");
+        }
+        return b;
+    }
+
+    private static String uuid(String path) {
+        return UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static void writeFile(File file, CharSequence content) throws IOException {
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
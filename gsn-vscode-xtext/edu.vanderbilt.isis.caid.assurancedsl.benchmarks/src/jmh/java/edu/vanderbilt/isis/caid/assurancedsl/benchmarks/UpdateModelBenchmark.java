@@ -0,0 +1,157 @@
+package edu.vanderbilt.isis.caid.assurancedsl.benchmarks;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.change.util.ChangeRecorder;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.GoalNode;
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.GoalNodeRef;
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.SolutionNode;
+
+/**
+ * CommandService.updateModel for each command type of MODEL_UPDATE. Every change is rolled back after
+ * the invocation, outside of the measurement, so all invocations see the same model.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateModelBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Command {
+
+        @Param({ "onAttributeChange", "onNewChildNode", "onNewChildRef", "onRemoveChildNode", "onRemoveChildRef",
+                "onDeleteNode" })
+        public String cmd;
+
+        JSONObject command;
+
+        ChangeRecorder recorder;
+
+        @Setup(Level.Trial)
+        public void setup(ModelState state) {
+            command = createCommand(state);
+        }
+
+        @Setup(Level.Invocation)
+        public void record(ModelState state) {
+            recorder = new ChangeRecorder(state.workspace.getResourceSet());
+        }
+
+        @TearDown(Level.Invocation)
+        public void rollback() {
+            recorder.endRecording().apply();
+            recorder.dispose();
+        }
+
+        private JSONObject createCommand(ModelState state) {
+            GoalNode goal = null;
+            SolutionNode solution = null;
+            GoalNodeRef ref = null;
+            for (Resource r : state.resources) {
+                for (Iterator<EObject> it = r.getAllContents(); it.hasNext();) {
+                    EObject obj = it.next();
+                    if (goal == null && obj instanceof GoalNode) {
+                        goal = (GoalNode) obj;
+                    } else if (solution == null && obj instanceof SolutionNode
+                            && obj.eContainer() instanceof GoalNode) {
+                        solution = (SolutionNode) obj;
+                    } else if (ref == null && obj instanceof GoalNodeRef
+                            && !((GoalNodeRef) obj).getRef().eIsProxy()) {
+                        ref = (GoalNodeRef) obj;
+                    }
+                }
+            }
+            if (goal == null || solution == null) {
+                throw new IllegalStateException("The model needs a goal and a solved goal: " + state.model);
+            }
+
+            JSONObject c = new JSONObject();
+            c.put("cmd", cmd);
+            switch (cmd) {
+                case "onAttributeChange":
+                    c.put("nodeId", id(state, goal));
+                    c.put("attr", "summary");
+                    c.put("newValue", "Changed by the benchmark");
+                    break;
+                case "onNewChildNode":
+                    c.put("nodeId", id(state, goal));
+                    c.put("childType", "Solution");
+                    c.put("childName", "BenchmarkSolution");
+                    break;
+                case "onNewChildRef":
+                    c.put("nodeId", id(state, goal));
+                    c.put("childId", id(state, otherGoal(state, goal)));
+                    c.put("relationType", "SupportedBy");
+                    break;
+                case "onRemoveChildRef":
+                    if (ref != null) {
+                        c.put("nodeId", id(state, ref.eContainer()));
+                        c.put("childId", id(state, ref.getRef()));
+                        break;
+                    }
+                    // no reference in the model, remove a contained child instead
+                case "onRemoveChildNode":
+                    c.put("nodeId", id(state, solution.eContainer()));
+                    c.put("childId", id(state, solution));
+                    break;
+                case "onDeleteNode":
+                    c.put("nodeId", id(state, solution));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command " + cmd);
+            }
+            return c;
+        }
+
+        /**
+         * Returns a goal in another file than the given one if there is one, for a cross-file reference.
+         */
+        private static GoalNode otherGoal(ModelState state, GoalNode goal) {
+            GoalNode result = null;
+            for (Resource r : state.resources) {
+                for (Iterator<EObject> it = r.getAllContents(); it.hasNext();) {
+                    EObject obj = it.next();
+                    if (obj instanceof GoalNode && obj != goal) {
+                        if (r != goal.eResource()) {
+                            return (GoalNode) obj;
+                        }
+                        if (result == null) {
+                            result = (GoalNode) obj;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static String id(ModelState state, EObject node) {
+            return state.generator.getNodeFQN(node);
+        }
+    }
+
+    @Benchmark
+    public String updateModel(ModelState state, Command command) {
+        return state.commandService.updateModel(state.objDict, state.generator, command.command,
+                state.workspace.getResourceSet());
+    }
+}
@@ -0,0 +1,77 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.ide.serializer.IChangeSerializer;
+import org.eclipse.xtext.serializer.ISerializer;
+import org.eclipse.xtext.validation.IResourceValidator;
+
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+
+import edu.vanderbilt.isis.caid.assurancedsl.AssuranceStandaloneSetup;
+
+/**
+ * Standalone language runtime shared by all commands of the language server.
+ *
+ * The Guice injector is created (and the EMF packages are registered) only once per JVM. The serializer
+ * and the resource validator do not keep per-call state, so a single instance of each is handed out to
+ * every caller; resource sets and change serializers, which record one batch of changes each, are created
+ * fresh from the shared injector.
+ */
+public final class AssuranceLanguageRuntime {
+
+    private static volatile AssuranceLanguageRuntime instance;
+
+    private final Injector injector;
+
+    private final Provider<ResourceSet> resourceSetProvider;
+
+    private final ISerializer serializer;
+
+    private final Provider<IChangeSerializer> changeSerializerProvider;
+
+    private final IResourceValidator resourceValidator;
+
+    private AssuranceLanguageRuntime(Injector injector) {
+        this.injector = injector;
+        this.resourceSetProvider = injector.getProvider(ResourceSet.class);
+        this.serializer = injector.getInstance(ISerializer.class);
+        this.changeSerializerProvider = injector.getProvider(IChangeSerializer.class);
+        this.resourceValidator = injector.getInstance(IResourceValidator.class);
+    }
+
+    public static AssuranceLanguageRuntime getInstance() {
+        AssuranceLanguageRuntime result = instance;
+        if (result == null) {
+            synchronized (AssuranceLanguageRuntime.class) {
+                result = instance;
+                if (result == null) {
+                    result = new AssuranceLanguageRuntime(
+                            new AssuranceStandaloneSetup().createInjectorAndDoEMFRegistration());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public Injector getInjector() {
+        return injector;
+    }
+
+    public ResourceSet newResourceSet() {
+        return resourceSetProvider.get();
+    }
+
+    public ISerializer getSerializer() {
+        return serializer;
+    }
+
+    public IChangeSerializer newChangeSerializer() {
+        return changeSerializerProvider.get();
+    }
+
+    public IResourceValidator getResourceValidator() {
+        return resourceValidator;
+    }
+}
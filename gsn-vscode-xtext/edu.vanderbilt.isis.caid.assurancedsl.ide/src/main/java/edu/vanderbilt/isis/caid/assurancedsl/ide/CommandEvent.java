@@ -0,0 +1,46 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.nio.charset.StandardCharsets;
+
+import edu.vanderbilt.isis.caid.assurancedsl.generator.PhaseEvent;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for one gsn.* command from request to response; its phases are recorded
+ * as {@link PhaseEvent}s on the same thread.
+ */
+@Name("edu.vanderbilt.isis.caid.assurancedsl.Command")
+@Label("GSN Command")
+@Category({ "GSN", "Commands" })
+@Description("A gsn.* command executed by the language server")
+@StackTrace(false)
+public class CommandEvent extends Event {
+
+    @Label("Command")
+    public String command;
+
+    @Label("Model Directory")
+    public String modelDir;
+
+    @Label("Bytes Out")
+    @DataAmount
+    public long bytesOut;
+
+    /**
+     * Commits the event if it is recorded; the size of the response is only computed then.
+     */
+    public void end(String cmd, Object result) {
+        if (shouldCommit()) {
+            command = cmd;
+            modelDir = PhaseEvent.getModelDir();
+            bytesOut = result != null ? result.toString().getBytes(StandardCharsets.UTF_8).length : 0;
+            commit();
+        }
+    }
+}
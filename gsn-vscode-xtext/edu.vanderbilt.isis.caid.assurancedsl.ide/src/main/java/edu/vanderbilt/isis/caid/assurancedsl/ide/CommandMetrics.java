@@ -0,0 +1,253 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.json.JSONObject;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Latency histograms, counters and cache hit rates of the command service, as returned by the
+ * gsn.GET_METRICS command.
+ *
+ * A histogram counts durations in logarithmic buckets (four per power of two of microseconds), so
+ * recording is a few atomic increments and the reported percentiles are accurate to about 20%. Hit rates
+ * are read from the caches when the metrics are reported.
+ *
+ * With the system property {@value #DUMP_INTERVAL_PROPERTY} set to a number of seconds, the metrics are
+ * also written periodically as one line of JSON, appended to the file given by
+ * {@value #DUMP_FILE_PROPERTY} or else printed to standard error.
+ */
+public class CommandMetrics {
+
+    public static final String DUMP_INTERVAL_PROPERTY = "gsn.metrics.dumpInterval";
+
+    public static final String DUMP_FILE_PROPERTY = "gsn.metrics.dumpFile";
+
+    /**
+     * Stops the time of a phase when closed.
+     */
+    public final class Timer implements AutoCloseable {
+
+        private final String name;
+
+        private final long start = System.nanoTime();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void close() {
+            record(name, System.nanoTime() - start);
+        }
+    }
+
+    public static class Histogram {
+
+        private static final int SUB_BUCKETS = 4;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder sum = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long nanos) {
+            long micros = Math.max(1, nanos / 1000);
+            int log = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = log < 2 ? 0 : (int) (micros >>> (log - 2)) & (SUB_BUCKETS - 1);
+            buckets.incrementAndGet(log * SUB_BUCKETS + sub);
+            count.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Returns the upper bound in milliseconds of the bucket that holds the given fraction of the
+         * recorded durations, at most the largest duration.
+         */
+        public double getPercentile(double p) {
+            long total = getCount();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p * total));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    int log = i / SUB_BUCKETS;
+                    double upper = log < 2 ? 2L << log
+                            : (double) (1L << log) * (SUB_BUCKETS + i % SUB_BUCKETS + 1) / SUB_BUCKETS;
+                    return Math.min(upper / 1000, getMax());
+                }
+            }
+            return getMax();
+        }
+
+        public double getMean() {
+            long n = getCount();
+            return n == 0 ? 0 : sum.sum() / 1e6 / n;
+        }
+
+        public double getMax() {
+            return max.get() / 1e6;
+        }
+
+        JSONObject toJSON() {
+            return new JSONObject().put("count", getCount()).put("meanMs", round(getMean()))
+                    .put("p50Ms", round(getPercentile(0.5))).put("p90Ms", round(getPercentile(0.9)))
+                    .put("p99Ms", round(getPercentile(0.99))).put("maxMs", round(getMax()));
+        }
+    }
+
+    private static class HitRate {
+
+        final LongSupplier hits;
+
+        final LongSupplier misses;
+
+        long hitsAtReset;
+
+        long missesAtReset;
+
+        HitRate(LongSupplier hits, LongSupplier misses) {
+            this.hits = hits;
+            this.misses = misses;
+        }
+    }
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+
+    private final Map<String, HitRate> hitRates = new ConcurrentHashMap<String, HitRate>();
+
+    private volatile long since = System.currentTimeMillis();
+
+    private ScheduledExecutorService dumper;
+
+    /**
+     * Starts timing a phase; use it in a try-with-resources statement.
+     */
+    public Timer time(String name) {
+        return new Timer(name);
+    }
+
+    public void record(String name, long nanos) {
+        histograms.computeIfAbsent(name, k -> new Histogram()).record(nanos);
+    }
+
+    public void increment(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public Histogram getHistogram(String name) {
+        return histograms.get(name);
+    }
+
+    public long getCounter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * Reports the hit rate of a cache from its cumulative hit and miss counts.
+     */
+    public void registerHitRate(String name, LongSupplier hits, LongSupplier misses) {
+        hitRates.put(name, new HitRate(hits, misses));
+    }
+
+    /**
+     * Starts over with empty histograms and counters; hit rates only count from now on.
+     */
+    public synchronized void reset() {
+        histograms.clear();
+        counters.clear();
+        for (HitRate rate : hitRates.values()) {
+            rate.hitsAtReset = rate.hits.getAsLong();
+            rate.missesAtReset = rate.misses.getAsLong();
+        }
+        since = System.currentTimeMillis();
+    }
+
+    public synchronized JSONObject toJSON() {
+        JSONObject result = new JSONObject();
+        result.put("since", since);
+        result.put("durationMs", System.currentTimeMillis() - since);
+
+        JSONObject h = new JSONObject();
+        for (Map.Entry<String, Histogram> e : new TreeMap<String, Histogram>(histograms).entrySet()) {
+            h.put(e.getKey(), e.getValue().toJSON());
+        }
+        result.put("latencies", h);
+
+        JSONObject c = new JSONObject();
+        for (Map.Entry<String, LongAdder> e : new TreeMap<String, LongAdder>(counters).entrySet()) {
+            c.put(e.getKey(), e.getValue().sum());
+        }
+        result.put("counters", c);
+
+        JSONObject r = new JSONObject();
+        for (Map.Entry<String, HitRate> e : new TreeMap<String, HitRate>(hitRates).entrySet()) {
+            HitRate rate = e.getValue();
+            long hits = rate.hits.getAsLong() - rate.hitsAtReset;
+            long misses = rate.misses.getAsLong() - rate.missesAtReset;
+            r.put(e.getKey(), new JSONObject().put("hits", hits).put("misses", misses).put("rate",
+                    hits + misses == 0 ? 0 : round((double) hits / (hits + misses))));
+        }
+        result.put("cacheHitRates", r);
+        return result;
+    }
+
+    /**
+     * Starts the periodic dump if the system property {@value #DUMP_INTERVAL_PROPERTY} asks for it.
+     */
+    public synchronized void startDumpFromSystemProperties() {
+        long interval = Long.getLong(DUMP_INTERVAL_PROPERTY, 0);
+        if (interval <= 0 || dumper != null) {
+            return;
+        }
+        String file = System.getProperty(DUMP_FILE_PROPERTY);
+        dumper = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("gsn-metrics-dump").setDaemon(true).build());
+        dumper.scheduleAtFixedRate(() -> dump(file), interval, interval, TimeUnit.SECONDS);
+    }
+
+    private void dump(String file) {
+        String line = toJSON().toString();
+        if (file == null) {
+            System.err.println(line);
+            return;
+        }
+        try (PrintStream out = new PrintStream(new FileOutputStream(file, true), true, StandardCharsets.UTF_8.name())) {
+            out.println(line);
+        } catch (IOException e) {
+            System.err.println("Unable to write metrics to " + file + ": " + e);
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -2,55 +2,100 @@ package edu.vanderbilt.isis.caid.assurancedsl.ide;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import com.google.inject.Inject;
-import com.google.inject.Injector;
 import com.google.inject.Provider;
+import com.google.inject.Singleton;
 import org.eclipse.lsp4j.ExecuteCommandParams;
+import org.eclipse.lsp4j.services.LanguageClient;
 import org.eclipse.xtext.ide.server.ILanguageServerAccess;
+import org.eclipse.xtext.ide.server.UriExtensions;
 import org.eclipse.xtext.ide.server.commands.IExecutableCommandService;
 import org.eclipse.xtext.util.CancelIndicator;
+import org.eclipse.xtext.service.OperationCanceledManager;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.xtext.resource.IResourceDescriptions;
 import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.util.EcoreUtil;
-import org.eclipse.emf.ecore.util.EcoreUtil.UsageCrossReferencer;
 import org.eclipse.emf.ecore.xmi.impl.URIHandlerImpl;
 import org.eclipse.xtext.EcoreUtil2;
-import org.eclipse.xtext.generator.GeneratorContext;
 import org.eclipse.xtext.generator.JavaIoFileSystemAccess;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.xtext.generator.IGenerator2;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
-import edu.vanderbilt.isis.caid.assurancedsl.AssuranceStandaloneSetup;
 import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.ModelJsonWriter;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.NodePathCache;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.NodeReferenceIndex;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.NodeSearchIndex;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.PhaseEvent;
 import org.eclipse.xtext.xbase.lib.IteratorExtensions;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONException;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.HashMap;
+import java.util.HashSet;
+import org.apache.log4j.Logger;
 import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
 import edu.vanderbilt.isis.caid.assurancedsl.assurance.AssuranceFactory;
 import org.eclipse.xtext.resource.SaveOptions;
 import org.eclipse.emf.common.notify.Notifier;
-import org.eclipse.xtext.resource.XtextResource;
 import org.eclipse.xtext.nodemodel.INode;
 import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
 import org.eclipse.xtext.nodemodel.ICompositeNode;
 import org.eclipse.xtext.validation.IResourceValidator;
-import org.eclipse.xtext.validation.Issue;
-import org.eclipse.xtext.validation.CheckMode;
 import org.eclipse.xtext.serializer.ISerializer;
-import org.eclipse.emf.ecore.EObject;
-import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.xtext.ide.serializer.IChangeSerializer;
+import org.eclipse.xtext.ide.serializer.ITextDocumentChange;
+import org.eclipse.emf.ecore.change.ChangeDescription;
+import org.eclipse.emf.ecore.change.util.ChangeRecorder;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
 import edu.vanderbilt.isis.caid.assurancedsl.assurance.URIA;
 import edu.vanderbilt.isis.caid.assurancedsl.assurance.LabelInfo;
 
-import org.eclipse.emf.ecore.EStructuralFeature.Setting;
 
+@Singleton
 public class CommandService implements IExecutableCommandService {
 
+    private static final Logger LOG = Logger.getLogger(CommandService.class);
+
+    /**
+     * A command of a MODEL_UPDATE could not be applied; the message is returned to the client.
+     */
+    public static class CommandFailedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        CommandFailedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The directory of the graph editor's views.json and labels.json inside a model directory.
+     */
+    public static final String STATE_DIRECTORY = ".gsn-editor";
+
     @Inject
     Provider<ResourceSet> resourceSetProvider;
 
@@ -69,10 +114,57 @@ public class CommandService implements IExecutableCommandService {
     @Inject
     private ISerializer serializer;
 
+    @Inject
+    private UriExtensions uriExtensions;
+
+    @Inject
+    private OperationCanceledManager operationCanceledManager;
+
+    private final Map<String, ModelWorkspace> workspaces = new ConcurrentHashMap<String, ModelWorkspace>();
+
+    private final ParallelResourceLoader loader = new ParallelResourceLoader(this::getResourceSet);
+
+    private final JsonFragmentCache fragmentCache = new JsonFragmentCache();
+
+    private final ParallelResourceSaver saver = new ParallelResourceSaver();
+
+    private final CommandMetrics metrics = new CommandMetrics();
+
+    private final SingleFlight<String, Object> reads = new SingleFlight<String, Object>();
+
+    private final ModelDirectoryWatcher watcher = new ModelDirectoryWatcher(this::modelFilesChanged);
+
+    private volatile LanguageClient client;
+
+    public CommandService() {
+        metrics.registerHitRate("jsonFragments", fragmentCache::getHits, fragmentCache::getMisses);
+        metrics.registerHitRate("coalescedReads", reads::getJoined, reads::getComputed);
+        metrics.registerHitRate("workspaceFiles", () -> sumWorkspaces(ModelWorkspace::getReusedCount),
+                () -> sumWorkspaces(ModelWorkspace::getParsedCount));
+        metrics.registerHitRate("modelCache", () -> sumWorkspaces(ModelWorkspace::getRestoredCount),
+                () -> sumWorkspaces(ModelWorkspace::getParsedCount));
+        metrics.registerHitRate("nodePaths", () -> sumWorkspaces(ModelWorkspace::getNodePathHits),
+                () -> sumWorkspaces(ModelWorkspace::getNodePathMisses));
+        metrics.startDumpFromSystemProperties();
+    }
+
     @Override
     public List<String> initialize() {
         return Lists.newArrayList("gsn.GET_MODEL_JSON", "gsn.GENERATE_MODEL_JSON", "gsn.MODEL_UPDATE",
-                "gsn.REVEAL_ORIGIN", "gsn.ASSIGN_UUIDS");
+                "gsn.REVEAL_ORIGIN", "gsn.QUERY_SUBTREE", "gsn.SEARCH", "gsn.GET_VIEW", "gsn.ASSIGN_UUIDS",
+                "gsn.GET_METRICS", "gsn.DUMP_RECORDING");
+    }
+
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    private long sumWorkspaces(ToLongFunction<ModelWorkspace> count) {
+        long sum = 0;
+        for (ModelWorkspace workspace : workspaces.values()) {
+            sum += count.applyAsLong(workspace);
+        }
+        return sum;
     }
 
     public String getPath(String input) {
@@ -97,73 +189,269 @@ public class CommandService implements IExecutableCommandService {
     }
 
     public ResourceSet getResourceSet() {
-        Injector injector = new AssuranceStandaloneSetup().createInjectorAndDoEMFRegistration();
-        return injector.getInstance(ResourceSet.class);
+        return AssuranceLanguageRuntime.getInstance().newResourceSet();
     }
 
     public IResourceValidator getResourceValidator() {
-        Injector injector = new AssuranceStandaloneSetup().createInjectorAndDoEMFRegistration();
-        return injector.getInstance(IResourceValidator.class);
+        return AssuranceLanguageRuntime.getInstance().getResourceValidator();
     }
 
     public ISerializer getSerializer() {
-        Injector injector = new AssuranceStandaloneSetup().createInjectorAndDoEMFRegistration();
-        return injector.getInstance(ISerializer.class);
+        return AssuranceLanguageRuntime.getInstance().getSerializer();
     }
 
-    public List<Resource> getResourceList(String moduri, ResourceSet resourceSet) {
-        String parentPath = moduri;
-        File fileorig = new File(moduri);
-        if (fileorig.isFile()) {
-            parentPath = fileorig.getParent();
+    public ModelWorkspace getModelWorkspace(String moduri) {
+        File dir = new File(moduri);
+        if (dir.isFile()) {
+            dir = dir.getParentFile();
         }
-        fileAccess.setOutputPath(parentPath);
-        File folder = new File(parentPath);
+        File key = dir.getAbsoluteFile();
+        return workspaces.computeIfAbsent(key.getPath(), k -> {
+            ModelStorageCache storage = ModelStorageCache.forDirectory(key);
+            return new ModelWorkspace(key, this::getResourceSet, loader, storage,
+                    new NodeLocationIndex(storage, (AssuranceGenerator) generator), (AssuranceGenerator) generator);
+        });
+    }
 
-        List<Resource> resourceList = new ArrayList<Resource>();
-        for (File file : folder.listFiles()) {
+    public List<Resource> getResourceList(ModelWorkspace workspace) throws IOException {
+        return getResourceList(workspace, CancelIndicator.NullImpl);
+    }
 
-            if (file.getName().endsWith(".gsn")) {
-                Resource r = resourceSet.getResource(URI.createFileURI(file.getPath()), true);
-                r.setTrackingModification(true);
-                resourceList.add(r);
-            }
+    public List<Resource> getResourceList(ModelWorkspace workspace, CancelIndicator cancelIndicator)
+            throws IOException {
+        fileAccess.setOutputPath(workspace.getDirectory().getPath());
+        if (ModelDirectoryWatcher.isEnabled()) {
+            watcher.watch(workspace.getDirectory());
+        }
+        try (CommandMetrics.Timer t = metrics.time("phase.refresh")) {
+            return workspace.refresh(cancelIndicator);
+        }
+    }
+
+    /**
+     * Marks the changed files of a watched directory stale and tells the client about changes the server
+     * did not make itself. This runs on the thread of the watcher, so it only touches the workspace under
+     * its monitor; the files are parsed by the next command that refreshes the workspace.
+     */
+    private void modelFilesChanged(File directory, Set<File> files, boolean overflow) {
+        ModelWorkspace workspace = workspaces.get(directory.getPath());
+        if (workspace == null) {
+            return;
+        }
+        Set<URI> changes = workspace.markChanged(overflow ? null : files);
+        metrics.increment("watcher.changes", 1);
+        if (!changes.isEmpty()) {
+            notifyModelChanged(directory, changes);
+        }
+    }
+
+    /**
+     * Sends a telemetry/event notification {@code {"type": "gsn.modelChanged", "modelDir": ..., "files":
+     * [...]}} to the client. The standard notification is used since the server is started by the plain
+     * Xtext launcher, whose client proxy has no custom notifications.
+     */
+    private void notifyModelChanged(File directory, Set<URI> changes) {
+        LanguageClient languageClient = client;
+        if (languageClient == null) {
+            return;
+        }
+        List<String> files = new ArrayList<String>();
+        for (URI uri : changes) {
+            files.add(uri.toFileString());
+        }
+        files.sort(null);
+        Map<String, Object> event = new LinkedHashMap<String, Object>();
+        event.put("type", "gsn.modelChanged");
+        event.put("modelDir", directory.getPath());
+        event.put("files", files);
+        languageClient.telemetryEvent(event);
+        metrics.increment("watcher.notifications", 1);
+    }
+
+    /**
+     * Runs the read on the .gsn files of the model directory in the language server's workspace, which
+     * also reflects the content of unsaved editors, and returns its result. The read runs inside a read of
+     * the language server, like the command itself, so document changes and builds wait for it; the
+     * resources must not be used after it. The read handles its own errors.
+     *
+     * Returns null, and does not run the read, if the server does not manage all of the files in one
+     * resource set, e.g. because the directory lies outside of the opened workspace, or if it still holds
+     * the content of a file from before the server wrote it. MODEL_UPDATE and ASSIGN_UUIDS write through the
+     * {@link ModelWorkspace}, and the language server only sees the files once the client reports the
+     * change; until then reads are served by the workspace, which has the written content.
+     */
+    public <T> T readLive(String moduri, ILanguageServerAccess access, Function<List<Resource>, T> read) {
+        if (access == null) {
+            return null;
+        }
+        ModelWorkspace workspace = getModelWorkspace(moduri);
+        List<File> files = ModelWorkspace.listModelFiles(workspace.getDirectory());
+        if (files.isEmpty()) {
+            return null;
+        }
+        try {
+            return access.doSyncRead(uriExtensions.toUriString(URI.createFileURI(files.get(0).getPath())), ctx -> {
+                List<Resource> resourceList = new ArrayList<Resource>();
+                for (File file : files) {
+                    URI uri = URI.createFileURI(file.getPath());
+                    Resource resource = access.doSyncRead(uriExtensions.toUriString(uri), c -> c.getResource());
+                    if (resource == null || resource.getResourceSet() != ctx.getResource().getResourceSet()) {
+                        return null;
+                    }
+                    if (workspace.isOverwritten(uri, JsonFragmentCache.getTextHash(resource))) {
+                        metrics.increment("commands.live.behindWrites", 1);
+                        return null;
+                    }
+                    resourceList.add(resource);
+                }
+                return read.apply(resourceList);
+            });
+        } catch (RuntimeException e) {
+            // not part of any project of the language server
+            return null;
+        }
+    }
 
+    /**
+     * Marks the files of all given resources as written by the server so that the next refresh picks up
+     * the serialized text (and node model) instead of trusting the old stamps.
+     */
+    private void markSaved(ModelWorkspace workspace, List<URI> written) {
+        for (URI uri : written) {
+            workspace.markSaved(uri);
         }
-        return resourceList;
     }
 
-    public JSONArray generateJSONOutput(List<Resource> resourceList, AssuranceGenerator a1, ResourceSet resourceSet) {
-        long startTime = System.currentTimeMillis();
-        JSONArray jsonarray = new JSONArray();
+    public List<GeneratedNode> generateJSONOutput(List<Resource> resourceList, AssuranceGenerator a1,
+            ResourceSet resourceSet) {
+        return generateJSONOutput(resourceList, a1, resourceSet, CancelIndicator.NullImpl);
+    }
+
+    public List<GeneratedNode> generateJSONOutput(List<Resource> resourceList, AssuranceGenerator a1,
+            ResourceSet resourceSet, CancelIndicator cancelIndicator) {
+        try (CommandMetrics.Timer t = metrics.time("phase.generateJSON")) {
+            List<GeneratedNode> nodes = fragmentCache.generate(resourceList, a1, cancelIndicator);
+            metrics.increment("nodes.emitted", nodes.size());
+            return nodes;
+        }
+    }
+
+    /**
+     * Streams the model JSON of all resources to model.json in the model directory, pretty-printed and
+     * in the order of the GET_MODEL_JSON response, without building the document in memory first.
+     */
+    public void writeModelJSON(List<Resource> resourceList, AssuranceGenerator a1, File file) throws IOException {
+        writeModelJSON(resourceList, a1, file, CancelIndicator.NullImpl);
+    }
+
+    /**
+     * Like {@link #writeModelJSON(List, AssuranceGenerator, File)}; a cancellation is honored until the
+     * JSON is written. The JSON goes to a temporary file next to the file that replaces it only when
+     * complete, so a failure leaves the previous file in place and never a half-written one.
+     */
+    public void writeModelJSON(List<Resource> resourceList, AssuranceGenerator a1, File file,
+            CancelIndicator cancelIndicator) throws IOException {
+        List<String> ids = new ArrayList<String>();
+        List<ALLNodes> nodes = new ArrayList<ALLNodes>();
+        for (Resource cr : resourceList) {
+            operationCanceledManager.checkCanceled(cancelIndicator);
+            for (ALLNodes g : IteratorExtensions.toIterable(Iterators.filter(cr.getAllContents(), ALLNodes.class))) {
+                ids.add(a1.getNodeFQN(g));
+                nodes.add(g);
+            }
+        }
+        Integer[] order = new Integer[nodes.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        PhaseEvent sort = PhaseEvent.start("sort");
+        Arrays.sort(order, (i1, i2) -> a1.compareNodeIds(ids.get(i1), ids.get(i2)));
+        sort.end(resourceList.size(), order.length, -1);
+        operationCanceledManager.checkCanceled(cancelIndicator);
+
+        PhaseEvent generate = PhaseEvent.start("generateJSON");
+        try {
+            ParallelResourceSaver.replace(file.toPath(), out -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                ModelJsonWriter w = new ModelJsonWriter(writer, 4);
+                w.beginArray();
+                for (Integer i : order) {
+                    a1.writeNode(nodes.get(i), w);
+                }
+                w.endArray();
+                writer.flush();
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generate.end(resourceList.size(), order.length, file.length());
+    }
 
+    /**
+     * Runs the generator over every resource for its side effect of filling in missing UUIDs. The JSON
+     * fragment cache is bypassed here, since a cached fragment says nothing about the in-memory objects.
+     */
+    public void assignUUIDs(List<Resource> resourceList, AssuranceGenerator a1) {
         for (Resource cr : resourceList) {
-            JSONArray js = a1.generateJSON(cr);
-            for (int i = 0; i < js.length(); i++) {
-                if (js.get(i).toString().equals("{}"))
-                    continue;
-                jsonarray.put(js.get(i));
+            a1.assignUUIDs(cr);
+        }
+    }
+
+    /**
+     * Gives the nodes of the resources that are not among the existing ones, i.e. the nodes a MODEL_UPDATE
+     * created, a new UUID if they have none. Other nodes are left as they are written in their files; only
+     * gsn.ASSIGN_UUIDS fills those in.
+     */
+    public void assignUUIDs(Collection<Resource> resources, Set<ALLNodes> existing, AssuranceGenerator a1) {
+        for (Resource cr : resources) {
+            for (ALLNodes g : IteratorExtensions.toIterable(Iterators.filter(cr.getAllContents(), ALLNodes.class))) {
+                if (!existing.contains(g)) {
+                    a1.dumpNodeUUID(a1.getNodeDetails(g));
+                }
             }
         }
-        System.out.println(
-                String.format("generateJSONOutput without sort : %d[ms]", System.currentTimeMillis() - startTime));
+    }
 
-        startTime = System.currentTimeMillis();
-        jsonarray = a1.JsonObjectSort(jsonarray);
-        System.out
-                .println(String.format("generateJSONOutput sorting : %d[ms]", System.currentTimeMillis() - startTime));
-        startTime = System.currentTimeMillis();
-        // saveResourceSet(resourceList, resourceSet);
-        System.out.println(
-                String.format("generateJSONOutput saveResourceSet : %d[ms]", System.currentTimeMillis() - startTime));
-        return jsonarray;
+    private static Set<ALLNodes> collectNodes(Collection<Resource> resources) {
+        Set<ALLNodes> nodes = new HashSet<ALLNodes>();
+        for (Resource cr : resources) {
+            Iterators.addAll(nodes, Iterators.filter(cr.getAllContents(), ALLNodes.class));
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the model as the client asked for it: the full array by default, or only the nodes that
+     * changed since the client's version with {@code "responseMode": "delta"}.
+     */
+    public String getModelResponse(String dirPath, JSONObject args, List<GeneratedNode> nodes) {
+        ModelSnapshot snapshot = getModelWorkspace(dirPath).getSnapshot();
+        if ("delta".equals(args.optString("responseMode"))) {
+            Long baseVersion = args.has("baseVersion") ? args.getLong("baseVersion") : null;
+            return snapshot.delta(nodes, baseVersion);
+        }
+        snapshot.update(nodes);
+        return GeneratedNode.toJSON(nodes);
     }
 
+    /**
+     * Maps the ids of the nodes of the resources to the nodes. If the resources are all resources of a
+     * resource set with a NodePathCache, the dictionary of the cache is returned; it is kept current as
+     * the model changes and must not be modified.
+     */
     public HashMap<String, ALLNodes> generateObjectDict(List<Resource> resourceList, AssuranceGenerator a1) {
         HashMap<String, ALLNodes> map = new HashMap<String, ALLNodes>();
 
-        for (Resource cr : resourceList) {
-            map = a1.getObjectDictionary(cr, map);
+        try (CommandMetrics.Timer t = metrics.time("phase.objectDict")) {
+            ResourceSet rs = resourceList.isEmpty() ? null : resourceList.get(0).getResourceSet();
+            NodePathCache cache = NodePathCache.find(rs);
+            if (cache != null && rs.getResources().size() == resourceList.size()
+                    && rs.getResources().containsAll(resourceList)) {
+                return a1.getObjectDictionary(cache);
+            }
+            for (Resource cr : resourceList) {
+                map = a1.getObjectDictionary(cr, map);
+            }
         }
         return map;
     }
@@ -267,6 +555,10 @@ public class CommandService implements IExecutableCommandService {
         return a1.onDeleteNode(node);
     }
 
+    /**
+     * Applies one command of a MODEL_UPDATE to a model whose cross references are resolved, see
+     * {@link #recordUpdates(HashMap, AssuranceGenerator, JSONArray, ResourceSet, Collection)}.
+     */
     public String updateModel(HashMap<String, ALLNodes> objDict, AssuranceGenerator a1, JSONObject commandObj,
             ResourceSet resourceSet) {
         String message = "";
@@ -278,18 +570,7 @@ public class CommandService implements IExecutableCommandService {
         String cmd = commandObj.getString("cmd");
         switch (cmd) {
             case "onAttributeChange":
-                java.util.Collection<EStructuralFeature.Setting> l1 = EcoreUtil.UsageCrossReferencer.find(node,
-                        resourceSet);
-                message = OnAttributeChange(objDict, a1, commandObj, node);
-                if (message == "") {
-                    EcoreUtil2.resolveAll(node);
-                    for (Setting setting : l1) {
-                        EObject source = setting.getEObject();
-                        EcoreUtil2.resolveAll(source);
-                    }
-                }
-
-                return message;
+                return OnAttributeChange(objDict, a1, commandObj, node);
             case "onNewChildNode":
                 return onNewChildNode(objDict, a1, commandObj, node);
             case "onNewChildRef":
@@ -307,118 +588,284 @@ public class CommandService implements IExecutableCommandService {
         return message;
     }
 
+    /**
+     * Applies the commands of a MODEL_UPDATE as one transaction, recording the changes of the given
+     * resources (all resources of the set if null). Cross references are resolved once for the batch
+     * instead of once per command, so renames keep pointing at their nodes; with a NodeReferenceIndex on
+     * the resource set only the unresolved references are visited. The ids of the object dictionary are
+     * brought up to date after renames when a later command does not find its node; a dictionary of a
+     * NodePathCache only recomputes the ids of the renamed subtrees.
+     *
+     * Either way the model is left as it was: if a command fails, its message is thrown as a
+     * CommandFailedException; otherwise the returned change description replays the whole batch when
+     * applied (with applyAndReverse), e.g. inside a change serializer modification. The modified flags
+     * of the resources are restored as well.
+     */
+    public ChangeDescription recordUpdates(HashMap<String, ALLNodes> objDict, AssuranceGenerator a1,
+            JSONArray commandList, ResourceSet resourceSet, Collection<Resource> affected) {
+        PhaseEvent event = PhaseEvent.start("update");
+        resolveReferences(resourceSet);
+        Collection<Resource> recorded = affected != null ? affected
+                : new ArrayList<Resource>(resourceSet.getResources());
+        Map<Resource, Boolean> modified = new HashMap<Resource, Boolean>();
+        for (Resource r : recorded) {
+            modified.put(r, r.isModified());
+        }
+        ChangeRecorder recorder = new ChangeRecorder(recorded);
+        ChangeDescription change;
+        String message = "";
+        try {
+            NodePathCache paths = NodePathCache.find(resourceSet);
+            boolean cached = paths != null && paths.isDictionary(objDict);
+            boolean renamed = false;
+            for (int i = 0; i != commandList.length() && message.isEmpty(); i++) {
+                JSONObject command = commandList.getJSONObject(i);
+                if ((renamed || cached) && (!objDict.containsKey(command.optString("nodeId"))
+                        || command.has("childId") && !objDict.containsKey(command.optString("childId")))) {
+                    if (cached) {
+                        a1.getObjectDictionary(paths);
+                    } else {
+                        objDict.putAll(generateObjectDict(new ArrayList<Resource>(resourceSet.getResources()), a1));
+                    }
+                    renamed = false;
+                }
+                message = updateModel(objDict, a1, command, resourceSet);
+                renamed |= "onAttributeChange".equals(command.optString("cmd"))
+                        && "name".equals(command.optString("attr"));
+            }
+            resolveReferences(resourceSet);
+        } catch (RuntimeException ex) {
+            message = ex.toString();
+        } finally {
+            change = recorder.endRecording();
+            recorder.dispose();
+            // Undo the batch; on success the description now redoes it.
+            change.applyAndReverse();
+            for (Map.Entry<Resource, Boolean> e : modified.entrySet()) {
+                e.getKey().setModified(e.getValue());
+            }
+            event.end(recorded.size(), commandList.length(), -1);
+        }
+        if (!message.isEmpty()) {
+            metrics.increment("updates.rolledBack", 1);
+            throw new CommandFailedException(message);
+        }
+        metrics.increment("updates.commands", commandList.length());
+        return change;
+    }
+
+    private static void resolveReferences(ResourceSet resourceSet) {
+        NodeReferenceIndex index = NodeReferenceIndex.find(resourceSet);
+        if (index != null) {
+            index.resolveProxies();
+        } else {
+            EcoreUtil2.resolveAll(resourceSet);
+        }
+    }
+
     public boolean checkSerializer(ResourceSet rs) {
         ISerializer serializer = getSerializer();
         boolean ret = true;
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
         Iterable<ALLNodes> _filter = Iterables.<ALLNodes>filter(
                 IteratorExtensions.<Notifier>toIterable(rs.getAllContents()), ALLNodes.class);
-        System.out
-                .println(String.format("    checkSerializer (get AllNodes): %d[ms]",
-                        System.currentTimeMillis() - startTime));
-        startTime = System.currentTimeMillis();
+        metrics.record("phase.checkSerializer.collect", System.nanoTime() - startTime);
+        startTime = System.nanoTime();
         for (final ALLNodes g : _filter) {
             try {
                 serializer.serialize(g);
 
             } catch (Exception ex) {
                 ret = false;
-                System.out.println("issues with object " + ex.toString());
+                LOG.warn("Unable to serialize " + EcoreUtil2.getURI(g), ex);
+                metrics.increment("checkSerializer.failures", 1);
             }
 
         }
 
-        System.out
-                .println(String.format("    checkSerializer (loop:serialize): %d[ms]",
-                        System.currentTimeMillis() - startTime));
+        metrics.record("phase.checkSerializer.serialize", System.nanoTime() - startTime);
         return ret;
 
     }
 
-    public boolean saveResourceSet(List<Resource> resourceList, ResourceSet rs) {
+    /**
+     * Saves the resources that changed in memory, plus the ones referencing them, and returns the URIs
+     * of the files that were actually written, or null if the resources could not be saved.
+     */
+    public List<URI> saveResourceSet(List<Resource> resourceList, ResourceSet rs) {
         // TODO: Improve error handling here. Can we swallow some exception? And when
         // not - couldn't we just let
         // the exception be handled by the caller and return the error message to vscode
         // extension?
 
-        // IResourceValidator rv = getResourceValidator();
-        long startTime = System.currentTimeMillis();
-        for (Resource cr : resourceList) {
-            try {
-                EcoreUtil2.resolveAll(cr);
-            } catch (Exception ex) {
-
-            }
-        }
-
-        System.out
-                .println(String.format("  saveResourceSet (resolve): %d[ms]", System.currentTimeMillis() - startTime));
-        startTime = System.currentTimeMillis();
-        // if (!checkSerializer(rs)) {
-        // return false;
-        // }
-
-        System.out.println(
-                String.format("  saveResourceSet (checkSerializer): %d[ms]", System.currentTimeMillis() - startTime));
+        long startTime = System.nanoTime();
+        List<Resource> dirty = ParallelResourceSaver.getDirtyResources(resourceList);
+        metrics.record("phase.saveResourceSet.dirty", System.nanoTime() - startTime);
 
         SaveOptions.Builder options = SaveOptions.newBuilder();
         options.format();
-        
 
-        startTime = System.currentTimeMillis();
-        for (Resource cr : resourceList) {
-            try {
+        startTime = System.nanoTime();
+        PhaseEvent save = PhaseEvent.start("save");
+        List<URI> written;
+        try {
+            written = saver.save(dirty, options.getOptions().toOptionsMap());
+        } catch (Exception ex) {
+            LOG.error("Unable to save the model", ex);
+            metrics.increment("saves.failed", 1);
+            return null;
+        }
+        save.end(written.size(), -1, -1);
+        metrics.record("phase.saveResourceSet.write", System.nanoTime() - startTime);
+        metrics.increment("resources.saved", written.size());
+        return written;
+    }
 
-                // if (cr.isModified()) {
-                // System.out.println(cr.getURI().toFileString());
-                // }
-                // if (cr.isTrackingModification()) {
-                // System.out.println(cr.getURI().toFileString());
-                // }
-
-                // List<Issue> issues = rv.validate(cr,CheckMode.ALL, CancelIndicator.NullImpl);
-                // boolean doSave = true;
-                // for (Issue issue: issues) {
-                // switch (issue.getSeverity()) {
-                // case ERROR:
-                // {
-                // doSave = false;
-                // System.out.println("ERROR: " + issue.getMessage());
-                // break;
-                // }
-                // case WARNING:
-                // {
-                // System.out.println("WARNING: " + issue.getMessage());
-                // break;
-                // }
-                // default:
-                // break;
-                // }
-                // }
-
-                cr.save(options.getOptions().toOptionsMap());
+    /**
+     * Runs the modification while the changes of the affected resources are recorded, and writes them
+     * back as minimal text edits of the files: only the changed regions are serialized and formatted, and
+     * the rest of every file keeps its formatting. References to renamed nodes in other files are updated
+     * the same way. With {@code affected == null} the changes of all resources are recorded.
+     *
+     * Resources that the modification changed without being recorded, and all resources if the edits can
+     * not be computed, are re-serialized as a whole instead. Returns the URIs of the written files, or
+     * null if the resources could not be saved. Exceptions thrown by the modification itself are passed
+     * on.
+     */
+    public List<URI> saveChanges(List<Resource> resourceList, ResourceSet rs, Collection<Resource> affected,
+            Runnable modification) {
+        Set<Resource> recorded = new LinkedHashSet<Resource>(affected != null ? affected : resourceList);
+        if (recorded.isEmpty()) {
+            recorded.addAll(resourceList);
+        }
+        if (recorded.isEmpty()) {
+            modification.run();
+            return new ArrayList<URI>();
+        }
+        long startTime = System.nanoTime();
+        IChangeSerializer changeSerializer = AssuranceLanguageRuntime.getInstance().newChangeSerializer();
+        for (Resource cr : recorded) {
+            changeSerializer.addModification(cr, r -> {
+            });
+        }
+        boolean[] modified = { false };
+        changeSerializer.addModification(recorded.iterator().next(), r -> {
+            modification.run();
+            modified[0] = true;
+        });
+        List<ITextDocumentChange> changes = new ArrayList<ITextDocumentChange>();
+        PhaseEvent format = PhaseEvent.start("format");
+        try {
+            changeSerializer.applyModifications(change -> {
+                if (change instanceof ITextDocumentChange) {
+                    changes.add((ITextDocumentChange) change);
+                }
+            });
+        } catch (RuntimeException ex) {
+            if (!modified[0]) {
+                throw ex;
+            }
+            LOG.warn("Unable to compute the text edits of the update, saving the resources as a whole", ex);
+            metrics.increment("saveChanges.fallbacks", 1);
+            return saveResourceSet(resourceList, rs);
+        }
+        format.end(recorded.size(), -1, -1);
+        metrics.record("phase.saveChanges.diff", System.nanoTime() - startTime);
 
-            } catch (Exception ex) {
-                System.out.println(ex.toString());
-                return false;
+        startTime = System.nanoTime();
+        PhaseEvent save = PhaseEvent.start("save");
+        List<Resource> unrecorded = new ArrayList<Resource>();
+        for (Resource cr : resourceList) {
+            if (cr.isModified() && !recorded.contains(cr)) {
+                unrecorded.add(cr);
             }
+        }
+        List<URI> written;
+        try {
+            written = saver.write(changes);
+            if (!unrecorded.isEmpty()) {
+                SaveOptions.Builder options = SaveOptions.newBuilder();
+                options.format();
+                written.addAll(saver.save(unrecorded, options.getOptions().toOptionsMap()));
+            }
+        } catch (Exception ex) {
+            LOG.error("Unable to save the model", ex);
+            metrics.increment("saves.failed", 1);
+            return null;
+        }
+        for (Resource cr : resourceList) {
+            cr.setModified(false);
+        }
+        save.end(written.size(), -1, -1);
+        metrics.record("phase.saveChanges.write", System.nanoTime() - startTime);
+        metrics.increment("resources.saved", written.size());
+        return written;
+    }
 
+    /**
+     * Returns the resources that the commands of a MODEL_UPDATE change, or null if that is not known up
+     * front: deleting a node also removes the references to it from other files, which are only known
+     * when the resource set has a NodeReferenceIndex.
+     */
+    public Set<Resource> getAffectedResources(JSONArray commandList, HashMap<String, ALLNodes> objDict) {
+        Set<Resource> result = new LinkedHashSet<Resource>();
+        for (int i = 0; i != commandList.length(); i++) {
+            JSONObject command = commandList.getJSONObject(i);
+            if ("onDeleteNode".equals(command.optString("cmd"))) {
+                ALLNodes node = objDict.get(command.optString("nodeId"));
+                NodeReferenceIndex index = NodeReferenceIndex.find(node);
+                if (index == null) {
+                    return null;
+                }
+                result.addAll(index.getReferringResources(node));
+            }
+            for (String key : new String[] { "nodeId", "childId" }) {
+                ALLNodes node = objDict.get(command.optString(key));
+                if (node != null && node.eResource() != null) {
+                    result.add(node.eResource());
+                }
+            }
         }
+        return result;
+    }
 
-        System.out.println(
-                String.format("  saveResourceSet (loop:isMod|Track|save): %d[ms]",
-                        System.currentTimeMillis() - startTime));
-        return true;
+    private static String toFilePath(URI uri) {
+        if ("".equals(uri.authority())) {
+            // resources of the language server are addressed as file:///...
+            uri = URI.createHierarchicalURI(uri.scheme(), null, uri.device(), uri.segments(), null, null);
+        }
+        return uri.toFileString();
+    }
 
+    /**
+     * The node with the given id, or else the node with the given uuid, which integrations that only know
+     * the uuid pass instead. Uuids are looked up in the node locations if they are given.
+     */
+    private ALLNodes findNode(HashMap<String, ALLNodes> map, String idOrUuid, NodeLocationIndex locations) {
+        ALLNodes node = map.get(idOrUuid);
+        if (node != null) {
+            return node;
+        }
+        NodeLocationIndex.Location location = locations != null ? locations.find(idOrUuid) : null;
+        if (location != null && map.containsKey(location.path)) {
+            return map.get(location.path);
+        }
+        // nodes of resources changed in memory are not in the node locations
+        for (ALLNodes candidate : map.values()) {
+            if (idOrUuid.equals(NodeLocationIndex.getUuid((AssuranceGenerator) generator, candidate))) {
+                return candidate;
+            }
+        }
+        return null;
     }
 
     public String getPosition(HashMap<String, ALLNodes> map, String path) {
 
-        ALLNodes childNode = map.get(path);
+        ALLNodes childNode = findNode(map, path, null);
         if (childNode != null) {
             ICompositeNode n = NodeModelUtils.getNode(childNode); //
             JSONObject j = new JSONObject();
-            j.put("filePath", childNode.eResource().getURI().toFileString());
+            j.put("filePath", toFilePath(childNode.eResource().getURI()));
             j.put("lineNumber", n.getStartLine());
             return j.toString();
 
@@ -426,8 +873,191 @@ public class CommandService implements IExecutableCommandService {
         return "Could not find node at path : " + path;
     }
 
+    public String getPosition(NodeLocationIndex.Location location, String path) {
+        if (location != null) {
+            JSONObject j = new JSONObject();
+            j.put("filePath", toFilePath(location.file));
+            j.put("lineNumber", location.line);
+            j.put("offset", location.offset);
+            return j.toString();
+        }
+        return "Could not find node at path : " + path;
+    }
+
+    private String querySubtree(SubtreeQuery query, HashMap<String, ALLNodes> objDict, String idOrUuid,
+            NodeLocationIndex locations, CancelIndicator cancelIndicator) {
+        ALLNodes root = findNode(objDict, idOrUuid, locations);
+        if (root == null) {
+            return "Could not find node at path : " + idOrUuid;
+        }
+        try (CommandMetrics.Timer t = metrics.time("phase.querySubtree")) {
+            return query.run(root, objDict, (AssuranceGenerator) generator, cancelIndicator);
+        }
+    }
+
+    /**
+     * Searches the text of the nodes of the resources with the index of their resource set and returns
+     * {@code {"total": n, "results": [{"id", "uuid", "score", "highlights": [{"field", "text", "ranges"}]}]}}
+     * with the best matches first.
+     */
+    public String search(NodeSearchIndex index, List<Resource> resourceList, String query, int limit) {
+        AssuranceGenerator a1 = (AssuranceGenerator) generator;
+        try (CommandMetrics.Timer t = metrics.time("phase.search")) {
+            if (resourceList.isEmpty()) {
+                return new JSONObject().put("total", 0).put("results", new JSONArray()).toString();
+            }
+            NodeSearchIndex.Result result = index.search(query, limit, resourceList);
+            JSONArray results = new JSONArray();
+            for (NodeSearchIndex.Hit hit : result.hits) {
+                JSONObject r = new JSONObject();
+                r.put("id", a1.getNodeFQN(hit.node));
+                r.put("uuid", NodeLocationIndex.getUuid(a1, hit.node));
+                r.put("score", hit.score);
+                JSONArray highlights = new JSONArray();
+                for (NodeSearchIndex.Highlight h : index.highlight(hit.node, query)) {
+                    JSONArray ranges = new JSONArray();
+                    for (int[] range : h.ranges) {
+                        ranges.put(new JSONArray().put(range[0]).put(range[1]));
+                    }
+                    highlights.put(new JSONObject().put("field", h.field).put("text", h.text).put("ranges", ranges));
+                }
+                r.put("highlights", highlights);
+                results.put(r);
+            }
+            return new JSONObject().put("total", result.total).put("results", results).toString();
+        }
+    }
+
+    /**
+     * Reads the view of a gsn.GET_VIEW command: the view given as {@code "view"}, or the view with the id
+     * {@code "viewId"} in views.json. Groups are resolved with the {@code "labels"} of the arguments, or else
+     * with labels.json.
+     */
+    public ViewQuery getViewQuery(File directory, JSONObject args) throws IOException {
+        JSONObject view = args.optJSONObject("view");
+        if (view == null) {
+            String viewId = args.getString("viewId");
+            JSONArray views = readEditorState(directory, "views.json");
+            for (int i = 0; i < views.length() && view == null; i++) {
+                JSONObject candidate = views.optJSONObject(i);
+                if (candidate != null && viewId.equals(candidate.optString("id"))) {
+                    view = candidate;
+                }
+            }
+            if (view == null) {
+                throw new IllegalArgumentException("Could not find view " + viewId);
+            }
+        }
+        JSONArray labels = args.optJSONArray("labels");
+        return ViewQuery.fromView(view, labels != null ? labels : readEditorState(directory, "labels.json"));
+    }
+
+    /**
+     * Reads a file of the graph editor's state, from the state directory or else from the model directory
+     * itself; an empty array if there is neither.
+     */
+    private JSONArray readEditorState(File directory, String name) throws IOException {
+        File[] candidates = { new File(new File(directory, STATE_DIRECTORY), name), new File(directory, name) };
+        for (File file : candidates) {
+            if (file.isFile()) {
+                return new JSONArray(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            }
+        }
+        return new JSONArray();
+    }
+
+    /**
+     * Returns the nodes the view shows, see {@link ViewQuery#run}. With a cache, results are kept in it until
+     * the model changes in a way that could alter them; the key tells the model directory and view apart.
+     */
+    public String getView(List<Resource> resourceList, ViewCache cache, String key, ViewQuery query,
+            CancelIndicator cancelIndicator) {
+        AssuranceGenerator a1 = (AssuranceGenerator) generator;
+        try (CommandMetrics.Timer t = metrics.time("phase.view")) {
+            if (resourceList.isEmpty()) {
+                return "{\"nodes\":[],\"matches\":[]}";
+            }
+            if (cache == null) {
+                return query.run(generateObjectDict(resourceList, a1), a1, cancelIndicator).json;
+            }
+            ViewQuery.Result result = cache.get(key);
+            if (result != null) {
+                metrics.increment("commands.gsn.GET_VIEW.cached", 1);
+                return result.json;
+            }
+            long changeCount = cache.getChangeCount();
+            result = query.run(generateObjectDict(resourceList, a1), a1, cancelIndicator);
+            cache.put(key, result, changeCount);
+            return result.json;
+        }
+    }
+
+    /**
+     * Runs the command and records its latency. gsn.GET_METRICS returns the metrics; with
+     * {@code "reset": true} they start over afterwards.
+     */
     @Override
     public Object execute(ExecuteCommandParams params, ILanguageServerAccess access, CancelIndicator cancelIndicator) {
+        String cmd = params.getCommand();
+        if (access != null && access.getLanguageClient() != null) {
+            client = access.getLanguageClient();
+        }
+        if ("gsn.GET_METRICS".equals(cmd)) {
+            String result = metrics.toJSON().toString();
+            List<Object> parameters = params.getArguments();
+            if (parameters != null && !parameters.isEmpty()) {
+                try {
+                    if (new JSONObject(parameters.get(0).toString()).optBoolean("reset")) {
+                        metrics.reset();
+                    }
+                } catch (JSONException ex) {
+                    return "Unable to parse JSON arugment " + ex.toString();
+                }
+            }
+            return result;
+        }
+        if ("gsn.DUMP_RECORDING".equals(cmd)) {
+            return dumpRecording(params.getArguments());
+        }
+        metrics.increment("commands." + cmd, 1);
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        Object result = null;
+        try (CommandMetrics.Timer t = metrics.time("command." + cmd)) {
+            result = executeCommand(params, access, cancelIndicator);
+            return result;
+        } finally {
+            event.end(cmd, result);
+            PhaseEvent.clearCommand();
+        }
+    }
+
+    /**
+     * Writes the data of all running flight recordings to the file given as {@code "path"}, by default a
+     * new file in the temporary directory, and returns the path as JSON. Start the server with
+     * -XX:StartFlightRecording to record the GSN events.
+     */
+    public String dumpRecording(List<Object> parameters) {
+        if (!FlightRecorder.isAvailable() || FlightRecorder.getFlightRecorder().getRecordings().isEmpty()) {
+            return "No flight recording is running; start the language server with -XX:StartFlightRecording";
+        }
+        try {
+            JSONObject args = parameters != null && !parameters.isEmpty()
+                    ? new JSONObject(parameters.get(0).toString())
+                    : new JSONObject();
+            Path path = args.has("path") ? Paths.get(args.getString("path"))
+                    : Files.createTempFile("gsn-", ".jfr");
+            try (Recording snapshot = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+                snapshot.dump(path);
+            }
+            return new JSONObject().put("path", path.toAbsolutePath().toString()).toString();
+        } catch (Exception ex) {
+            return "Unable to dump the flight recording " + ex.toString();
+        }
+    }
+
+    private Object executeCommand(ExecuteCommandParams params, ILanguageServerAccess access,
+            CancelIndicator cancelIndicator) {
         List<Object> parameters = params.getArguments();
         String cmd = params.getCommand();
         JSONObject args;
@@ -440,6 +1070,7 @@ public class CommandService implements IExecutableCommandService {
             }
 
             dirPath = args.getString("modelDir");
+            PhaseEvent.setCommand(cmd, dirPath);
             String mesg = checkArg(dirPath);
             if (mesg != "") {
                 return mesg;
@@ -448,132 +1079,282 @@ public class CommandService implements IExecutableCommandService {
             return "Missing arguments";
         }
 
+        if ("gsn.GET_MODEL_JSON".equals(cmd) || "gsn.REVEAL_ORIGIN".equals(cmd)
+                || "gsn.QUERY_SUBTREE".equals(cmd) || "gsn.SEARCH".equals(cmd) || "gsn.GET_VIEW".equals(cmd)) {
+            // Identical reads of the same model, e.g. from a burst of saves, share one computation.
+            JSONObject key = new JSONObject(args.toString());
+            key.put("modelDir", getModelWorkspace(dirPath).getDirectory().getPath());
+            return reads.execute(cmd + " " + key.toString(), cancelIndicator,
+                    ci -> runCommand(cmd, dirPath, args, access, ci));
+        }
+        return runCommand(cmd, dirPath, args, access, cancelIndicator);
+    }
+
+    private Object runCommand(String cmd, String dirPath, JSONObject args, ILanguageServerAccess access,
+            CancelIndicator cancelIndicator) {
+        if ("gsn.GET_MODEL_JSON".equals(cmd)) {
+            // Read straight from the language server's workspace when it knows the model directory.
+            String live = readLive(dirPath, access, liveResources -> {
+                try {
+                    metrics.increment("commands.gsn.GET_MODEL_JSON.live", 1);
+                    List<GeneratedNode> nodes = generateJSONOutput(liveResources, (AssuranceGenerator) generator,
+                            liveResources.get(0).getResourceSet(), cancelIndicator);
+                    return getModelResponse(dirPath, args, nodes);
+                } catch (Exception e) {
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
+                }
+            });
+            if (live != null) {
+                return live;
+            }
+        }
+
         if ("gsn.GET_MODEL_JSON".equals(cmd) || "gsn.GENERATE_MODEL_JSON".equals(cmd)) {
-            try {
-                long startTime = System.currentTimeMillis();
-                ResourceSet resourceSet = getResourceSet();
-                resourceSet.getLoadOptions().put(XtextResource.OPTION_RESOLVE_ALL, Boolean.TRUE);
-                List<Resource> resourceList = getResourceList(dirPath, resourceSet);
-                GeneratorContext gc = new GeneratorContext();
-                gc.setCancelIndicator(cancelIndicator);
-                AssuranceGenerator a1 = (AssuranceGenerator) generator;
-                JSONArray jsonarray = generateJSONOutput(resourceList, a1, resourceSet);
-                System.out
-                        .println(String.format("GET/GENERATE_MODEL_JSON : %d[ms]",
-                                System.currentTimeMillis() - startTime));
-                if ("gsn.GENERATE_MODEL_JSON".equals(cmd)) {
-                    fileAccess.generateFile("model.json", jsonarray.toString(4));
-                    return null;
-                } else {
-                    return jsonarray.toString();
+            ModelWorkspace workspace = getModelWorkspace(dirPath);
+            synchronized (workspace) {
+                try {
+                    List<Resource> resourceList = getResourceList(workspace, cancelIndicator);
+                    ResourceSet resourceSet = workspace.getResourceSet();
+                    AssuranceGenerator a1 = (AssuranceGenerator) generator;
+                    if ("gsn.GENERATE_MODEL_JSON".equals(cmd)) {
+                        writeModelJSON(resourceList, a1, new File(workspace.getDirectory(), "model.json"),
+                                cancelIndicator);
+                        return null;
+                    } else {
+                        List<GeneratedNode> nodes = generateJSONOutput(resourceList, a1, resourceSet,
+                                cancelIndicator);
+                        return getModelResponse(dirPath, args, nodes);
+                    }
+                } catch (Exception e) {
+                    workspace.invalidate();
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
                 }
-            } catch (Exception e) {
-                return e.getMessage() != null ? e.getMessage() : e.toString();
             }
         }
 
         else if ("gsn.ASSIGN_UUIDS".equals(cmd)) {
-            try {
-                ResourceSet resourceSet = getResourceSet();
-                resourceSet.getLoadOptions().put(XtextResource.OPTION_RESOLVE_ALL, Boolean.TRUE);
-                List<Resource> resourceList = getResourceList(dirPath, resourceSet);
-                GeneratorContext gc = new GeneratorContext();
-                gc.setCancelIndicator(cancelIndicator);
-                AssuranceGenerator a1 = (AssuranceGenerator) generator;
-                generateJSONOutput(resourceList, a1, resourceSet);
-
-                if (saveResourceSet(resourceList, resourceSet)) {
-                    return null;
-                } else {
-                    return "Failed to save model after assigning UUIDs";
-                }
+            ModelWorkspace workspace = getModelWorkspace(dirPath);
+            synchronized (workspace) {
+                try {
+                    List<Resource> resourceList = getResourceList(workspace, cancelIndicator);
+                    ResourceSet resourceSet = workspace.getResourceSet();
+                    AssuranceGenerator a1 = (AssuranceGenerator) generator;
+                    List<URI> saved = saveChanges(resourceList, resourceSet, null,
+                            () -> assignUUIDs(resourceList, a1));
+                    if (saved != null) {
+                        markSaved(workspace, saved);
+                        return null;
+                    } else {
+                        workspace.invalidate();
+                        return "Failed to save model after assigning UUIDs";
+                    }
 
-            } catch (Exception e) {
-                return e.getMessage() != null ? e.getMessage() : e.toString();
+                } catch (Exception e) {
+                    workspace.invalidate();
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
+                }
             }
         }
 
         else if ("gsn.MODEL_UPDATE".equals(cmd)) {
+            JSONArray commandObj;
+
             try {
-                JSONArray commandObj;
+                commandObj = args.getJSONArray("commandList");
+            } catch (JSONException ex) {
+                return "Unable to Parse CommandList " + ex.toString();
+            }
+
+            if (commandObj == null) {
+                return "Null CommandList ";
+            }
 
+            ModelWorkspace workspace = getModelWorkspace(dirPath);
+            synchronized (workspace) {
                 try {
-                    commandObj = args.getJSONArray("commandList");
-                } catch (JSONException ex) {
-                    return "Unable to Parse CommandList " + ex.toString();
-                }
+                    List<Resource> resourceList = getResourceList(workspace, cancelIndicator);
+                    ResourceSet resourceSet = workspace.getResourceSet();
+                    AssuranceGenerator a1 = (AssuranceGenerator) generator;
+
+                    HashMap<String, ALLNodes> objDict = generateObjectDict(resourceList, a1);
+                    JSONArray commandList = commandObj;
+                    List<List<GeneratedNode>> nodes = new ArrayList<List<GeneratedNode>>(1);
+                    Set<Resource> affected = getAffectedResources(commandList, objDict);
+                    ChangeDescription batch;
+                    try {
+                        batch = recordUpdates(objDict, a1, commandList, resourceSet, affected);
+                    } catch (CommandFailedException ex) {
+                        // The batch is rolled back in memory and nothing is written.
+                        return ex.getMessage();
+                    }
+                    Collection<Resource> changed = affected != null ? affected : resourceList;
+                    Set<ALLNodes> existing = collectNodes(changed);
+                    List<URI> saved = saveChanges(resourceList, resourceSet, affected, () -> {
+                        batch.applyAndReverse();
+
+                        // The UUIDs of new nodes have to be recorded along with the nodes.
+                        assignUUIDs(changed, existing, a1);
+                        nodes.add(generateJSONOutput(resourceList, a1, resourceSet));
+                    });
+                    if (saved != null) {
+                        markSaved(workspace, saved);
+                        return getModelResponse(dirPath, args, nodes.get(0));
+                    } else {
+                        workspace.invalidate();
+                        return "Could not save resources due to errors";
+                    }
 
-                if (commandObj == null) {
-                    return "Null CommandList ";
+                } catch (Exception e) {
+                    workspace.invalidate();
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
                 }
+            }
+
+        } else if ("gsn.REVEAL_ORIGIN".equals(cmd)) {
+            String objID = null;
+            try {
+                objID = args.has("uuid") && !args.has("nodeId") ? args.getString("uuid") : args.getString("nodeId");
 
-                ResourceSet resourceSet = getResourceSet();
-                resourceSet.getLoadOptions().put(XtextResource.OPTION_RESOLVE_ALL, Boolean.TRUE);
-                List<Resource> resourceList = getResourceList(dirPath, resourceSet);
-                AssuranceGenerator a1 = (AssuranceGenerator) generator;
-                GeneratorContext gc = new GeneratorContext();
-                gc.setCancelIndicator(cancelIndicator);
+            } catch (JSONException ex) {
+                return "Unable to get object path - nodeId " + ex.toString();
+            }
 
-                HashMap<String, ALLNodes> objDict = generateObjectDict(resourceList, a1);
-                for (int i = 0; i != commandObj.length(); i++) {
+            if (objID == null) {
+                return "Null Object Path ";
+            }
 
-                    String message = updateModel(objDict, a1, commandObj.getJSONObject(i), resourceSet);
-                    if (message != "") {
-                        return message;
-                    }
+            String nodeId = objID;
+            String live = readLive(dirPath, access, liveResources -> {
+                try {
+                    HashMap<String, ALLNodes> objDict = generateObjectDict(liveResources,
+                            (AssuranceGenerator) generator);
+                    return getPosition(objDict, nodeId);
+                } catch (Exception e) {
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
                 }
+            });
+            if (live != null) {
+                return live;
+            }
 
-                EcoreUtil2.resolveAll(resourceSet);
-                // Iterable<ALLNodes> _filter = Iterables.<ALLNodes>filter(
-                // IteratorExtensions.<Notifier>toIterable(resourceSet.getAllContents()),
-                // ALLNodes.class);
-                // for (final ALLNodes g : _filter) {
-                // System.out.println(g.toString());
-                // }
-
-                JSONArray jsonarray = generateJSONOutput(resourceList, a1, resourceSet);
-                // fileAccess.generateFile("model.json", jsonarray.toString(4));
-                if (saveResourceSet(resourceList, resourceSet)) {
-                    // System.exit(1);
-                    return jsonarray.toString();
-                } else {
-                    return "Could not save resources due to errors";
-                }
+            ModelWorkspace workspace = getModelWorkspace(dirPath);
+            synchronized (workspace) {
+                try {
+                    // The node locations answer without loading the model unless files changed since they
+                    // were indexed.
+                    if (workspace.updateLocations()) {
+                        NodeLocationIndex.Location location = workspace.getLocations().find(objID);
+                        if (location != null) {
+                            metrics.increment("commands.gsn.REVEAL_ORIGIN.indexed", 1);
+                            return getPosition(location, objID);
+                        }
+                    }
+                    // Nodes the index does not know, e.g. of resources changed in memory, are looked up in
+                    // the model.
+                    List<Resource> resourceList = getResourceList(workspace, cancelIndicator);
+                    NodeLocationIndex locations = workspace.getLocations();
+                    NodeLocationIndex.Location location = locations != null ? locations.find(objID) : null;
+                    if (location != null) {
+                        return getPosition(location, objID);
+                    }
+                    AssuranceGenerator a1 = (AssuranceGenerator) generator;
 
-            } catch (Exception e) {
-                return e.getMessage() != null ? e.getMessage() : e.toString();
+                    HashMap<String, ALLNodes> objDict = generateObjectDict(resourceList, a1);
+                    return getPosition(objDict, objID);
+                } catch (Exception e) {
+                    workspace.invalidate();
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
+                }
             }
 
-        } else if ("gsn.REVEAL_ORIGIN".equals(cmd)) {
+        } else if ("gsn.QUERY_SUBTREE".equals(cmd)) {
+            String objID;
+            SubtreeQuery query;
             try {
+                objID = args.has("uuid") && !args.has("nodeId") ? args.getString("uuid") : args.getString("nodeId");
+                query = SubtreeQuery.fromArguments(args);
+            } catch (JSONException | IllegalArgumentException ex) {
+                return "Invalid subtree query " + ex.toString();
+            }
+            AssuranceGenerator a1 = (AssuranceGenerator) generator;
 
-                String objID = null;
+            String live = readLive(dirPath, access, liveResources -> {
                 try {
-                    objID = args.getString("nodeId");
-
-                } catch (JSONException ex) {
-                    return "Unable to get object path - nodeId " + ex.toString();
+                    HashMap<String, ALLNodes> objDict = generateObjectDict(liveResources, a1);
+                    return querySubtree(query, objDict, objID, null, cancelIndicator);
+                } catch (Exception e) {
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
                 }
+            });
+            if (live != null) {
+                return live;
+            }
 
-                if (objID == null) {
-                    return "Null Object Path ";
+            ModelWorkspace workspace = getModelWorkspace(dirPath);
+            synchronized (workspace) {
+                try {
+                    List<Resource> resourceList = getResourceList(workspace, cancelIndicator);
+                    HashMap<String, ALLNodes> objDict = generateObjectDict(resourceList, a1);
+                    return querySubtree(query, objDict, objID, workspace.getLocations(), cancelIndicator);
+                } catch (Exception e) {
+                    workspace.invalidate();
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
                 }
+            }
+        } else if ("gsn.SEARCH".equals(cmd)) {
+            String query;
+            try {
+                query = args.getString("query");
+            } catch (JSONException ex) {
+                return "Unable to get search query " + ex.toString();
+            }
+            int limit = args.optInt("limit", 50);
 
-                ResourceSet resourceSet = getResourceSet();
-                System.out.println(resourceSet.getLoadOptions().toString());
-                resourceSet.getLoadOptions().put(XtextResource.OPTION_RESOLVE_ALL, Boolean.TRUE);
-
-                List<Resource> resourceList = getResourceList(dirPath, resourceSet);
-                AssuranceGenerator a1 = (AssuranceGenerator) generator;
-                GeneratorContext gc = new GeneratorContext();
-                gc.setCancelIndicator(cancelIndicator);
+            // The index lives on the warm workspace, which is built when the models load; the resource set
+            // of the language server is not indexed, so searches see the files as saved.
+            ModelWorkspace workspace = getModelWorkspace(dirPath);
+            synchronized (workspace) {
+                try {
+                    List<Resource> resourceList = getResourceList(workspace, cancelIndicator);
+                    return search(workspace.getSearchIndex(), resourceList, query, limit);
+                } catch (Exception e) {
+                    workspace.invalidate();
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
+                }
+            }
+        } else if ("gsn.GET_VIEW".equals(cmd)) {
+            ModelWorkspace workspace = getModelWorkspace(dirPath);
+            ViewQuery query;
+            try {
+                query = getViewQuery(workspace.getDirectory(), args);
+            } catch (IOException | JSONException | IllegalArgumentException ex) {
+                return "Invalid view " + ex.getMessage();
+            }
+            String key = workspace.getDirectory().getPath() + " " + query.getKey();
 
-                HashMap<String, ALLNodes> objDict = generateObjectDict(resourceList, a1);
-                return getPosition(objDict, objID);
-            } catch (Exception e) {
-                return e.getMessage() != null ? e.getMessage() : e.toString();
+            // No cache is attached to the resource set of the language server, views of open models are
+            // evaluated every time.
+            String live = readLive(dirPath, access, liveResources -> {
+                try {
+                    return getView(liveResources, null, key, query, cancelIndicator);
+                } catch (Exception e) {
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
+                }
+            });
+            if (live != null) {
+                return live;
             }
 
+            synchronized (workspace) {
+                try {
+                    List<Resource> resourceList = getResourceList(workspace, cancelIndicator);
+                    ViewCache cache = ViewCache.install(workspace.getResourceSet());
+                    return getView(resourceList, cache, key, query, cancelIndicator);
+                } catch (Exception e) {
+                    workspace.invalidate();
+                    return e.getMessage() != null ? e.getMessage() : e.toString();
+                }
+            }
         }
         return "Bad Command";
     }
@@ -0,0 +1,52 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.util.List;
+
+/**
+ * One node of the model JSON, already serialized, together with the fields it is sorted and matched by.
+ */
+public final class GeneratedNode {
+
+    private final String id;
+
+    private final String uuid;
+
+    private final String json;
+
+    public GeneratedNode(String id, String uuid, String json) {
+        this.id = id;
+        this.uuid = uuid;
+        this.json = json;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * Joins the nodes into the JSON array sent to the client.
+     */
+    public static String toJSON(List<GeneratedNode> nodes) {
+        int length = 2;
+        for (GeneratedNode node : nodes) {
+            length += node.json.length() + 1;
+        }
+        StringBuilder sb = new StringBuilder(length);
+        sb.append('[');
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(nodes.get(i).json);
+        }
+        return sb.append(']').toString();
+    }
+}
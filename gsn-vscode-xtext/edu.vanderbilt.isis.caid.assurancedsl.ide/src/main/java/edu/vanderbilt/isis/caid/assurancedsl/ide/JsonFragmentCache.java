@@ -0,0 +1,223 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.nodemodel.ICompositeNode;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.service.OperationCanceledManager;
+import org.eclipse.xtext.util.CancelIndicator;
+
+import com.google.common.hash.Hashing;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.PhaseEvent;
+
+/**
+ * Caches the generated JSON nodes of every resource.
+ *
+ * A fragment is keyed by the hash of the resource text and the hashes of all resources it references,
+ * because the ids of referenced nodes end up in solvedBy/inContextOf. Fragments are kept sorted by id, so
+ * the complete output is a merge of the fragments instead of a sort of all nodes. Resources with
+ * in-memory changes (and resources referencing them) are always regenerated.
+ */
+public class JsonFragmentCache {
+
+    private static class Fragment {
+        String hash;
+        Map<URI, String> dependencyHashes;
+        List<GeneratedNode> nodes;
+    }
+
+    private final Map<URI, Fragment> fragments = new HashMap<URI, Fragment>();
+
+    private final OperationCanceledManager operationCanceledManager = new OperationCanceledManager();
+
+    private int hits;
+
+    private int misses;
+
+    /**
+     * Returns the nodes of all resources sorted by id, in the same order as a stable sort of the
+     * concatenated output of all resources.
+     */
+    public List<GeneratedNode> generate(List<Resource> resourceList, AssuranceGenerator a1) {
+        return generate(resourceList, a1, CancelIndicator.NullImpl);
+    }
+
+    /**
+     * Like {@link #generate(List, AssuranceGenerator)}, but throws an OperationCanceledError when the
+     * indicator is canceled before all fragments are there. The fragments generated so far are kept.
+     */
+    public synchronized List<GeneratedNode> generate(List<Resource> resourceList, AssuranceGenerator a1,
+            CancelIndicator cancelIndicator) {
+        Map<URI, Resource> byUri = new HashMap<URI, Resource>();
+        Map<URI, String> hashes = new HashMap<URI, String>();
+        for (Resource r : resourceList) {
+            byUri.put(r.getURI(), r);
+            hashes.put(r.getURI(), getTextHash(r));
+        }
+        prune(resourceList, byUri);
+
+        PhaseEvent generate = PhaseEvent.start("generateJSON");
+        int generated = 0;
+        List<List<GeneratedNode>> sorted = new ArrayList<List<GeneratedNode>>(resourceList.size());
+        for (Resource r : resourceList) {
+            operationCanceledManager.checkCanceled(cancelIndicator);
+            Fragment fragment = fragments.get(r.getURI());
+            if (fragment != null && isValid(fragment, r, byUri, hashes)) {
+                hits++;
+            } else {
+                misses++;
+                fragment = createFragment(r, a1, hashes);
+                generated += fragment.nodes.size();
+                if (fragment.hash != null && !r.isModified()) {
+                    fragments.put(r.getURI(), fragment);
+                } else {
+                    fragments.remove(r.getURI());
+                }
+            }
+            sorted.add(fragment.nodes);
+        }
+        generate.end(resourceList.size(), generated, -1);
+
+        PhaseEvent sort = PhaseEvent.start("sort");
+        List<GeneratedNode> result = merge(sorted, a1);
+        sort.end(resourceList.size(), result.size(), -1);
+        return result;
+    }
+
+    public synchronized void clear() {
+        fragments.clear();
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    private boolean isValid(Fragment fragment, Resource r, Map<URI, Resource> byUri, Map<URI, String> hashes) {
+        if (r.isModified() || fragment.hash == null || !fragment.hash.equals(hashes.get(r.getURI()))) {
+            return false;
+        }
+        for (Map.Entry<URI, String> dep : fragment.dependencyHashes.entrySet()) {
+            Resource target = byUri.get(dep.getKey());
+            if (target == null || target.isModified() || !dep.getValue().equals(hashes.get(dep.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Fragment createFragment(Resource r, AssuranceGenerator a1, Map<URI, String> hashes) {
+        List<GeneratedNode> nodes = new ArrayList<GeneratedNode>();
+        Iterator<EObject> it = r.getAllContents();
+        while (it.hasNext()) {
+            EObject obj = it.next();
+            if (obj instanceof ALLNodes) {
+                ALLNodes g = (ALLNodes) obj;
+                String json = a1.generateNodeJSON(g);
+                nodes.add(new GeneratedNode(a1.getNodeFQN(g), a1.getNodeUUID(a1.getNodeDetails(g)), json));
+            }
+        }
+        Collections.sort(nodes, (o1, o2) -> a1.compareNodeIds(o1.getId(), o2.getId()));
+
+        Fragment fragment = new Fragment();
+        fragment.nodes = nodes;
+        fragment.hash = hashes.get(r.getURI());
+        fragment.dependencyHashes = new HashMap<URI, String>();
+        Set<URI> dependencies = new HashSet<URI>();
+        if (ModelWorkspace.collectReferencedResources(r, dependencies)) {
+            // unresolved references - the output may change as soon as other files change
+            fragment.hash = null;
+        }
+        for (URI dep : dependencies) {
+            String hash = hashes.get(dep);
+            if (hash == null) {
+                fragment.hash = null;
+            } else {
+                fragment.dependencyHashes.put(dep, hash);
+            }
+        }
+        return fragment;
+    }
+
+    /**
+     * Forgets fragments of files that are gone from the directories of the given resources.
+     */
+    private void prune(List<Resource> resourceList, Map<URI, Resource> byUri) {
+        Set<URI> directories = new HashSet<URI>();
+        for (Resource r : resourceList) {
+            directories.add(r.getURI().trimSegments(1));
+        }
+        Iterator<URI> it = fragments.keySet().iterator();
+        while (it.hasNext()) {
+            URI uri = it.next();
+            if (!byUri.containsKey(uri) && directories.contains(uri.trimSegments(1))) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Hashes the current text of the resource. A partial reparse keeps the root node and only changes its
+     * text, so the hash is not remembered per node. The hash equals the content hash that
+     * {@link ModelWorkspace} computes for a file with the same text.
+     */
+    static String getTextHash(Resource r) {
+        if (!(r instanceof XtextResource) || ((XtextResource) r).getParseResult() == null) {
+            return null;
+        }
+        ICompositeNode root = ((XtextResource) r).getParseResult().getRootNode();
+        return Hashing.murmur3_128().hashString(root.getText(), StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Merges the sorted fragments. Equal ids keep the order of the resource list, as the stable sort of
+     * the concatenated list would.
+     */
+    private static List<GeneratedNode> merge(List<List<GeneratedNode>> sorted, AssuranceGenerator a1) {
+        PriorityQueue<int[]> heads = new PriorityQueue<int[]>((a, b) -> {
+            int c = a1.compareNodeIds(id(sorted, a), id(sorted, b));
+            return c != 0 ? c : Integer.compare(a[0], b[0]);
+        });
+        for (int i = 0; i < sorted.size(); i++) {
+            if (!sorted.get(i).isEmpty()) {
+                heads.add(new int[] { i, 0 });
+            }
+        }
+        int size = 0;
+        for (List<GeneratedNode> fragment : sorted) {
+            size += fragment.size();
+        }
+        List<GeneratedNode> result = new ArrayList<GeneratedNode>(size);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<GeneratedNode> fragment = sorted.get(head[0]);
+            result.add(fragment.get(head[1]));
+            if (++head[1] < fragment.size()) {
+                heads.add(head);
+            }
+        }
+        return result;
+    }
+
+    private static String id(List<List<GeneratedNode>> sorted, int[] head) {
+        return sorted.get(head[0]).get(head[1]).getId();
+    }
+}
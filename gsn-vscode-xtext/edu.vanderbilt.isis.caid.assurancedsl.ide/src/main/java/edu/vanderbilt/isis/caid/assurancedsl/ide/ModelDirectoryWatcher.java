@@ -0,0 +1,169 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Watches model directories for .gsn files that are created, changed or deleted by other programs, e.g. a
+ * git checkout or json2gsn, and reports them to a listener.
+ *
+ * All directories share one WatchService and one daemon thread. Events are coalesced: the listener is
+ * called once no further event arrived for the quiet period, so a burst such as a branch switch is reported
+ * as one change per directory. Under a steady stream of events the changes are reported at the latest
+ * after ten quiet periods. The quiet period is {@value #DEFAULT_QUIET_MILLIS} ms and can be set with
+ * the system property {@value #QUIET_PERIOD_PROPERTY}; watching is disabled if the system property
+ * {@value #ENABLED_PROPERTY} is false.
+ */
+public class ModelDirectoryWatcher implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ModelDirectoryWatcher.class);
+
+    public static final String ENABLED_PROPERTY = "gsn.watcher.enabled";
+
+    public static final String QUIET_PERIOD_PROPERTY = "gsn.watcher.quietMillis";
+
+    public static final int DEFAULT_QUIET_MILLIS = 300;
+
+    /**
+     * Receives the changes of a watched directory. The files are the .gsn files that events were reported
+     * for; if the WatchService lost events, overflow is true and any file may have changed.
+     */
+    public interface Listener {
+        void filesChanged(File directory, Set<File> files, boolean overflow);
+    }
+
+    private final Listener listener;
+
+    private final long quietMillis;
+
+    private final Map<WatchKey, File> directories = new HashMap<WatchKey, File>();
+
+    private WatchService watchService;
+
+    public ModelDirectoryWatcher(Listener listener) {
+        this(listener, Long.getLong(QUIET_PERIOD_PROPERTY, DEFAULT_QUIET_MILLIS));
+    }
+
+    public ModelDirectoryWatcher(Listener listener, long quietMillis) {
+        this.listener = listener;
+        this.quietMillis = Math.max(1, quietMillis);
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+    }
+
+    /**
+     * Starts watching the directory unless it is watched already. Returns false if it can not be watched.
+     */
+    public synchronized boolean watch(File directory) {
+        if (directories.containsValue(directory)) {
+            return true;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                WatchService service = watchService;
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("gsn-watcher").build()
+                        .newThread(() -> run(service)).start();
+            }
+            WatchKey key = directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            directories.put(key, directory);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            LOG.warn("Unable to watch " + directory, e);
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+        directories.clear();
+    }
+
+    private void run(WatchService service) {
+        Map<File, Set<File>> pending = new LinkedHashMap<File, Set<File>>();
+        Set<File> overflowed = new LinkedHashSet<File>();
+        long flushAt = 0;
+        try {
+            while (true) {
+                WatchKey key;
+                if (pending.isEmpty() && overflowed.isEmpty()) {
+                    key = service.take();
+                    flushAt = System.currentTimeMillis() + 10 * quietMillis;
+                } else {
+                    long timeout = Math.min(quietMillis, flushAt - System.currentTimeMillis());
+                    key = timeout > 0 ? service.poll(timeout, TimeUnit.MILLISECONDS) : null;
+                }
+                if (key == null) {
+                    flush(pending, overflowed);
+                    continue;
+                }
+                File directory;
+                synchronized (this) {
+                    directory = directories.get(key);
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (directory == null) {
+                        continue;
+                    }
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflowed.add(directory);
+                        continue;
+                    }
+                    Path name = (Path) event.context();
+                    if (name.toString().endsWith(".gsn")) {
+                        pending.computeIfAbsent(directory, d -> new LinkedHashSet<File>())
+                                .add(new File(directory, name.toString()));
+                    }
+                }
+                if (!key.reset()) {
+                    synchronized (this) {
+                        directories.remove(key);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void flush(Map<File, Set<File>> pending, Set<File> overflowed) {
+        Set<File> changed = new LinkedHashSet<File>(pending.keySet());
+        changed.addAll(overflowed);
+        for (File directory : changed) {
+            Set<File> files = pending.get(directory);
+            try {
+                listener.filesChanged(directory, files != null ? files : new LinkedHashSet<File>(),
+                        overflowed.contains(directory));
+            } catch (RuntimeException e) {
+                LOG.error("Unable to process the changes of " + directory, e);
+            }
+        }
+        pending.clear();
+        overflowed.clear();
+    }
+}
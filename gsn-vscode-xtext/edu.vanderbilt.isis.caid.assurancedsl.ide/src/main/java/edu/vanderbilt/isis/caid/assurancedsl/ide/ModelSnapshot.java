@@ -0,0 +1,112 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.vanderbilt.isis.caid.assurancedsl.generator.ModelJsonWriter;
+
+/**
+ * The model JSON last sent to the client for one model directory, with a version number.
+ *
+ * Every response that carries the model advances the version. Clients that asked for
+ * {@code "responseMode": "delta"} get only the nodes that were added, removed or changed since the
+ * version they hold. Nodes are matched by uuid, or by id if a node has no uuid. The snapshot is shared by
+ * every caller of the directory, so a delta is only computed against the model recorded here if the
+ * client holds exactly its version; after a full response to anyone, older versions get a reset.
+ */
+public class ModelSnapshot {
+
+    private long version;
+
+    private List<GeneratedNode> model;
+
+    private Map<String, GeneratedNode> index;
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Records a model that was sent in full and returns its version.
+     */
+    public synchronized long update(List<GeneratedNode> newModel) {
+        model = newModel;
+        index = null;
+        return ++version;
+    }
+
+    /**
+     * Records the new model and describes it relative to the previous one. If the client holds a
+     * different version than the one recorded here (or nothing was recorded yet), the delta is a reset
+     * that carries all nodes.
+     */
+    public synchronized String delta(List<GeneratedNode> newModel, Long clientVersion) {
+        StringBuilder result = new StringBuilder();
+        ModelJsonWriter w = new ModelJsonWriter(result);
+        boolean reset = model == null || (clientVersion != null && clientVersion.longValue() != version);
+        w.beginObject();
+        w.name("baseVersion").value(version);
+        if (reset) {
+            w.name("reset").value(true);
+            w.name("nodes").beginArray();
+            for (GeneratedNode node : newModel) {
+                w.rawValue(node.getJson());
+            }
+            w.endArray();
+            index = null;
+        } else {
+            Map<String, GeneratedNode> previous = getIndex();
+            Map<String, GeneratedNode> current = index(newModel);
+            w.name("added").beginArray();
+            for (Map.Entry<String, GeneratedNode> e : current.entrySet()) {
+                if (!previous.containsKey(e.getKey())) {
+                    w.rawValue(e.getValue().getJson());
+                }
+            }
+            w.endArray();
+            w.name("changed").beginArray();
+            for (Map.Entry<String, GeneratedNode> e : current.entrySet()) {
+                GeneratedNode old = previous.get(e.getKey());
+                if (old != null && !old.getJson().equals(e.getValue().getJson())) {
+                    w.rawValue(e.getValue().getJson());
+                }
+            }
+            w.endArray();
+            w.name("removed").beginArray();
+            for (Map.Entry<String, GeneratedNode> e : previous.entrySet()) {
+                if (!current.containsKey(e.getKey())) {
+                    w.beginObject();
+                    w.property("id", e.getValue().getId());
+                    w.property("uuid", e.getValue().getUuid());
+                    w.endObject();
+                }
+            }
+            w.endArray();
+            index = current;
+        }
+        model = newModel;
+        w.name("version").value(++version);
+        w.endObject();
+        return result.toString();
+    }
+
+    private Map<String, GeneratedNode> getIndex() {
+        if (index == null) {
+            index = index(model);
+        }
+        return index;
+    }
+
+    private static Map<String, GeneratedNode> index(List<GeneratedNode> nodes) {
+        Map<String, GeneratedNode> result = new HashMap<String, GeneratedNode>();
+        for (GeneratedNode node : nodes) {
+            String key = node.getUuid() == null ? "" : node.getUuid();
+            if (key.isEmpty() || result.containsKey(key)) {
+                key = "id:" + node.getId();
+            }
+            result.put(key, node);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,326 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.resource.persistence.ResourceStorageLoadable;
+import org.eclipse.xtext.resource.persistence.ResourceStorageWritable;
+import org.eclipse.xtext.resource.persistence.StorageAwareResource;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.AssurancePackage;
+
+/**
+ * Binary snapshots of the parsed and linked .gsn files of a model directory, kept in the folder
+ * {@value #DIRECTORY} beside the sources, so that a cold start loads the model instead of parsing it.
+ *
+ * A snapshot holds the Xtext resource storage of one file (the EMF binary serialization of the model and
+ * its node model) together with the content hash of the file, the grammar version and the content hashes
+ * of the files its references point into. It is only loaded if the file
+ * and the grammar are unchanged; if a referenced file changed since, the loaded resource has to be
+ * re-linked. Snapshots that can not be read are ignored and deleted.
+ *
+ * Beside each snapshot the cache keeps the {@link NodeLocationIndex node locations} of the file, which are
+ * valid under the same conditions.
+ *
+ * Snapshots are used unless the system property {@value #ENABLED_PROPERTY} is false.
+ */
+public class ModelStorageCache {
+
+    private static final Logger LOG = Logger.getLogger(ModelStorageCache.class);
+
+    public static final String DIRECTORY = ".gsn-cache";
+
+    public static final String ENABLED_PROPERTY = "gsn.modelCache.enabled";
+
+    private static final int MAGIC = 0x47534e43;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String GRAMMAR = "/edu/vanderbilt/isis/caid/assurancedsl/Assurance.xtextbin";
+
+    private static String grammarVersion;
+
+    private static ExecutorService executor;
+
+    /**
+     * A resource loaded from a snapshot.
+     */
+    public static class Loaded {
+
+        public final Resource resource;
+
+        /**
+         * Whether a file that the resource references changed since the snapshot was written.
+         */
+        public final boolean dependenciesChanged;
+
+        Loaded(Resource resource, boolean dependenciesChanged) {
+            this.resource = resource;
+            this.dependenciesChanged = dependenciesChanged;
+        }
+    }
+
+    /**
+     * Leaves out the resource description: the workspace computes descriptions from the contents when it
+     * needs them, and reading them back costs about as much as the rest of the snapshot.
+     */
+    private static class SnapshotWritable extends ResourceStorageWritable {
+
+        SnapshotWritable(OutputStream out) {
+            super(out, true);
+        }
+
+        @Override
+        protected void writeResourceDescription(StorageAwareResource resource, OutputStream out) {
+        }
+    }
+
+    private static class SnapshotLoadable extends ResourceStorageLoadable {
+
+        SnapshotLoadable(InputStream in) {
+            super(in, true);
+        }
+
+        @Override
+        protected void readResourceDescription(StorageAwareResource resource, InputStream in) {
+        }
+    }
+
+    private final File directory;
+
+    private final String grammar;
+
+    private ModelStorageCache(File directory, String grammar) {
+        this.directory = new File(directory, DIRECTORY);
+        this.grammar = grammar;
+    }
+
+    /**
+     * The cache of the model directory, or null if snapshots are disabled or the grammar version is not
+     * known.
+     */
+    public static ModelStorageCache forDirectory(File modelDirectory) {
+        if (!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))) {
+            return null;
+        }
+        String grammar = getGrammarVersion();
+        return grammar != null ? new ModelStorageCache(modelDirectory, grammar) : null;
+    }
+
+    /**
+     * Loads the snapshot of the file with the given content into a new resource of the resource set, or
+     * returns null if there is no valid snapshot. The hashes are the current content hashes of all files
+     * of the model directory.
+     */
+    public Loaded load(URI uri, String contentHash, Map<URI, String> hashes, ResourceSet rs) {
+        File file = getFile(uri);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !grammar.equals(in.readUTF())
+                    || !uri.toString().equals(in.readUTF()) || !contentHash.equals(in.readUTF())) {
+                return null;
+            }
+            boolean dependenciesChanged = false;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                URI dependency = URI.createURI(in.readUTF());
+                if (!in.readUTF().equals(hashes.get(dependency))) {
+                    dependenciesChanged = true;
+                }
+            }
+            Resource r = rs.createResource(uri);
+            if (!(r instanceof StorageAwareResource)) {
+                rs.getResources().remove(r);
+                return null;
+            }
+            StorageAwareResource resource = (StorageAwareResource) r;
+            resource.loadFromStorage(new SnapshotLoadable(in));
+            return new Loaded(resource, dependenciesChanged);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Ignoring model cache " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of a linked resource, replacing the previous one. The dependency hashes are the
+     * content hashes of the files that the references of the resource point into.
+     */
+    public void store(Resource resource, String contentHash, Map<URI, String> dependencyHashes) throws IOException {
+        if (!(resource instanceof StorageAwareResource)) {
+            return;
+        }
+        File file = getFile(resource.getURI());
+        Files.createDirectories(directory.toPath());
+        Path temp = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(grammar);
+                out.writeUTF(resource.getURI().toString());
+                out.writeUTF(contentHash);
+                Map<URI, String> sorted = new TreeMap<URI, String>((u1, u2) -> u1.toString().compareTo(u2.toString()));
+                sorted.putAll(dependencyHashes);
+                out.writeInt(sorted.size());
+                for (Map.Entry<URI, String> e : sorted.entrySet()) {
+                    out.writeUTF(e.getKey().toString());
+                    out.writeUTF(e.getValue());
+                }
+                new SnapshotWritable(out).writeResource((StorageAwareResource) resource);
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads the node locations of the file with the given content, or returns null if none were stored
+     * for it.
+     */
+    public List<NodeLocationIndex.Location> loadLocations(URI uri, String contentHash) {
+        File file = getLocationsFile(uri);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !grammar.equals(in.readUTF())
+                    || !uri.toString().equals(in.readUTF()) || !contentHash.equals(in.readUTF())) {
+                return null;
+            }
+            int count = in.readInt();
+            List<NodeLocationIndex.Location> locations = new ArrayList<NodeLocationIndex.Location>(count);
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                String uuid = in.readBoolean() ? in.readUTF() : null;
+                locations.add(new NodeLocationIndex.Location(uri, path, uuid, in.readInt(), in.readInt()));
+            }
+            return locations;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Ignoring model cache " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the node locations of the file with the given content, replacing the previous ones.
+     */
+    public void storeLocations(URI uri, String contentHash, List<NodeLocationIndex.Location> locations)
+            throws IOException {
+        File file = getLocationsFile(uri);
+        Files.createDirectories(directory.toPath());
+        Path temp = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(grammar);
+                out.writeUTF(uri.toString());
+                out.writeUTF(contentHash);
+                out.writeInt(locations.size());
+                for (NodeLocationIndex.Location location : locations) {
+                    out.writeUTF(location.path);
+                    out.writeBoolean(location.uuid != null);
+                    if (location.uuid != null) {
+                        out.writeUTF(location.uuid);
+                    }
+                    out.writeInt(location.offset);
+                    out.writeInt(location.line);
+                }
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Runs the task on the background thread that writes snapshots.
+     */
+    public void execute(Runnable task) {
+        getExecutor().execute(task);
+    }
+
+    /**
+     * Waits until the tasks handed to {@link #execute(Runnable)} so far have run. Only for tests, which
+     * delete their model directories afterwards.
+     */
+    static void awaitWrites() throws InterruptedException {
+        try {
+            getExecutor().submit(() -> {
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Deletes the snapshot and the node locations of a file that no longer exists.
+     */
+    public void remove(URI uri) {
+        getFile(uri).delete();
+        getLocationsFile(uri).delete();
+    }
+
+    private File getFile(URI uri) {
+        return new File(directory, uri.lastSegment() + ".bin");
+    }
+
+    private File getLocationsFile(URI uri) {
+        return new File(directory, uri.lastSegment() + ".loc");
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("gsn-model-cache").build());
+        }
+        return executor;
+    }
+
+    /**
+     * A hash of the binary grammar, which changes with every change of the language.
+     */
+    private static synchronized String getGrammarVersion() {
+        if (grammarVersion == null) {
+            try (InputStream in = AssurancePackage.class.getResourceAsStream(GRAMMAR)) {
+                if (in == null) {
+                    return null;
+                }
+                grammarVersion = Hashing.murmur3_128().hashBytes(ByteStreams.toByteArray(in)).toString();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return grammarVersion;
+    }
+}
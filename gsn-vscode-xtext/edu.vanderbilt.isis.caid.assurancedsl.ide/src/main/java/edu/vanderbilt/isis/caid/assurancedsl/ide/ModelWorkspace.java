@@ -0,0 +1,663 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.EcoreUtil2;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.resource.persistence.StorageAwareResource;
+import org.eclipse.xtext.service.OperationCanceledManager;
+import org.eclipse.xtext.util.CancelIndicator;
+
+import com.google.common.hash.Hashing;
+
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.NodePathCache;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.NodeReferenceIndex;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.NodeSearchIndex;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.PhaseEvent;
+
+/**
+ * Long-lived in-memory copy of all .gsn models in one model directory.
+ *
+ * Each file is stamped with its modification time, size and content hash. {@link #refresh()} only
+ * re-parses files whose content actually changed and only re-links the resources that reference
+ * them, so repeated commands on an unchanged model do not touch the parser at all. Changed files are
+ * parsed concurrently by the {@link ParallelResourceLoader} and linked together afterwards. The resource
+ * set carries a {@link NodeReferenceIndex} of the references between the nodes and a {@link NodePathCache}
+ * of the node ids.
+ *
+ * With a {@link ModelStorageCache}, changed files whose binary snapshot is still valid are loaded from
+ * it instead of being parsed, and snapshots of the files that had to be parsed are written in the
+ * background afterwards.
+ *
+ * With a {@link NodeLocationIndex}, the locations of the nodes of every loaded file are recorded, so that
+ * {@link #updateLocations()} can answer where a node is defined without loading the model.
+ *
+ * With a generator, the resource set also carries a {@link NodeSearchIndex} of the text of the nodes,
+ * which every refresh brings up to date with the files it loaded.
+ *
+ * Callers must hold the monitor of the workspace while they use the returned resources.
+ */
+public class ModelWorkspace {
+
+    private static final Logger LOG = Logger.getLogger(ModelWorkspace.class);
+
+    private static class Entry {
+        Resource resource;
+        long lastModified;
+        long length;
+        String contentHash;
+        Set<URI> dependencies = Collections.emptySet();
+        boolean hasUnresolved;
+        boolean linkPending;
+        boolean storePending;
+    }
+
+    private final File directory;
+
+    private final Supplier<ResourceSet> resourceSetFactory;
+
+    private final ParallelResourceLoader loader;
+
+    private final ModelStorageCache storage;
+
+    private final NodeLocationIndex locations;
+
+    private final AssuranceGenerator generator;
+
+    private final OperationCanceledManager operationCanceledManager = new OperationCanceledManager();
+
+    private ResourceSet resourceSet;
+
+    private NodeSearchIndex searchIndex;
+
+    private final Map<URI, Entry> entries = new HashMap<URI, Entry>();
+
+    private final ModelSnapshot snapshot = new ModelSnapshot();
+
+    private volatile long parsedCount;
+
+    private volatile long reusedCount;
+
+    private volatile long restoredCount;
+
+    private boolean storeScheduled;
+
+    /**
+     * The files marked as written by the server since the last refresh.
+     */
+    private final Set<URI> saved = new HashSet<URI>();
+
+    /**
+     * Per file written by the server, the content hashes the file had before, which other copies of the
+     * file (e.g. the documents of the language server) may still have.
+     */
+    private final Map<URI, Set<String>> overwritten = new HashMap<URI, Set<String>>();
+
+    /**
+     * The node path cache of the current resource set, kept here so that metrics can read its counters
+     * without taking the monitor of the workspace.
+     */
+    private volatile NodePathCache nodePaths;
+
+    private final AtomicLong nodePathHits = new AtomicLong();
+
+    private final AtomicLong nodePathMisses = new AtomicLong();
+
+    public ModelWorkspace(File directory, Supplier<ResourceSet> resourceSetFactory, ParallelResourceLoader loader) {
+        this(directory, resourceSetFactory, loader, null);
+    }
+
+    public ModelWorkspace(File directory, Supplier<ResourceSet> resourceSetFactory, ParallelResourceLoader loader,
+            ModelStorageCache storage) {
+        this(directory, resourceSetFactory, loader, storage, null);
+    }
+
+    public ModelWorkspace(File directory, Supplier<ResourceSet> resourceSetFactory, ParallelResourceLoader loader,
+            ModelStorageCache storage, NodeLocationIndex locations) {
+        this(directory, resourceSetFactory, loader, storage, locations, null);
+    }
+
+    public ModelWorkspace(File directory, Supplier<ResourceSet> resourceSetFactory, ParallelResourceLoader loader,
+            ModelStorageCache storage, NodeLocationIndex locations, AssuranceGenerator generator) {
+        this.directory = directory;
+        this.resourceSetFactory = resourceSetFactory;
+        this.loader = loader;
+        this.storage = storage;
+        this.locations = locations;
+        this.generator = generator;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * The model last sent to the client; unlike the loaded resources it survives {@link #invalidate()}.
+     */
+    public ModelSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The node locations of the model, or null if they are not indexed.
+     */
+    public NodeLocationIndex getLocations() {
+        return locations;
+    }
+
+    /**
+     * Brings the node locations up to date with the files on disk without loading the model. Returns
+     * false if that needs a {@link #refresh()} first, because a file changed and its locations are not
+     * in the model cache, or if the locations are not indexed at all.
+     */
+    public synchronized boolean updateLocations() throws IOException {
+        return locations != null && locations.update(listModelFiles(directory));
+    }
+
+    public synchronized ResourceSet getResourceSet() {
+        if (resourceSet == null) {
+            resourceSet = resourceSetFactory.get();
+            NodeReferenceIndex.install(resourceSet);
+            nodePaths = NodePathCache.install(resourceSet);
+            if (generator != null) {
+                searchIndex = NodeSearchIndex.install(resourceSet, generator);
+            }
+        }
+        return resourceSet;
+    }
+
+    /**
+     * The search index of the current resource set, or null if the workspace has no generator. It indexes
+     * the resources as of the last {@link #refresh()}, and changes made in memory since at the next search.
+     */
+    public synchronized NodeSearchIndex getSearchIndex() {
+        getResourceSet();
+        return searchIndex;
+    }
+
+    /**
+     * Brings the in-memory model up to date with the .gsn files on disk and returns the resources in
+     * directory listing order.
+     */
+    public List<Resource> refresh() throws IOException {
+        return refresh(CancelIndicator.NullImpl);
+    }
+
+    /**
+     * Like {@link #refresh()}, but gives up with an OperationCanceledError when the indicator is canceled
+     * while the files are read, parsed or linked. The workspace stays consistent: nothing is replaced
+     * before all changed files are parsed, and resources that were not linked yet are linked by the next
+     * refresh.
+     */
+    public synchronized List<Resource> refresh(CancelIndicator cancelIndicator) throws IOException {
+        ResourceSet rs = getResourceSet();
+        List<File> files = listModelFiles(directory);
+        Set<URI> present = new HashSet<URI>();
+        Set<URI> changed = new HashSet<URI>();
+        Map<URI, byte[]> contents = new LinkedHashMap<URI, byte[]>();
+        Map<URI, String> hashes = new HashMap<URI, String>();
+
+        for (File file : files) {
+            operationCanceledManager.checkCanceled(cancelIndicator);
+            URI uri = URI.createFileURI(file.getPath());
+            present.add(uri);
+            Entry entry = entries.get(uri);
+            if (entry != null && entry.lastModified == file.lastModified() && entry.length == file.length()) {
+                hashes.put(uri, entry.contentHash);
+                continue;
+            }
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            String hash = Hashing.murmur3_128().hashBytes(bytes).toString();
+            hashes.put(uri, hash);
+            if (entry == null || !hash.equals(entry.contentHash)) {
+                changed.add(uri);
+                contents.put(uri, bytes);
+            } else {
+                entry.lastModified = file.lastModified();
+                entry.length = file.length();
+            }
+        }
+
+        Set<URI> removed = new HashSet<URI>(entries.keySet());
+        removed.removeAll(present);
+        Set<URI> pending = new HashSet<URI>();
+        for (Map.Entry<URI, Entry> e : entries.entrySet()) {
+            if (e.getValue().linkPending && !changed.contains(e.getKey()) && !removed.contains(e.getKey())) {
+                pending.add(e.getKey());
+            }
+        }
+
+        if (changed.isEmpty() && removed.isEmpty() && pending.isEmpty()) {
+            reusedCount += present.size();
+            saved.clear();
+            return getResources(files);
+        }
+
+        // Phase one: load or parse all changed files in isolation, before anything is replaced.
+        Set<URI> restored = ConcurrentHashMap.newKeySet();
+        Set<URI> restoredStale = ConcurrentHashMap.newKeySet();
+        PhaseEvent parse = PhaseEvent.start("parse");
+        Map<URI, Resource> parsed = loader.parse(contents, uri -> {
+            ModelStorageCache.Loaded loaded = storage != null
+                    ? storage.load(uri, hashes.get(uri), hashes, resourceSetFactory.get())
+                    : null;
+            if (loaded == null) {
+                return null;
+            }
+            restored.add(uri);
+            if (loaded.dependenciesChanged) {
+                restoredStale.add(uri);
+            }
+            return loaded.resource;
+        }, cancelIndicator);
+        parse.end(contents.size() - restored.size(), -1, -1);
+        parsedCount += contents.size() - restored.size();
+        restoredCount += restored.size();
+        reusedCount += present.size() - changed.size();
+
+        // Resources that point into reloaded or removed files (or that could not resolve a reference
+        // before) must be re-linked against the new content.
+        Set<URI> relink = new HashSet<URI>();
+        for (Map.Entry<URI, Entry> e : entries.entrySet()) {
+            URI uri = e.getKey();
+            if (changed.contains(uri) || removed.contains(uri)) {
+                continue;
+            }
+            Entry entry = e.getValue();
+            if (entry.hasUnresolved || !Collections.disjoint(entry.dependencies, changed)
+                    || !Collections.disjoint(entry.dependencies, removed)) {
+                relink.add(uri);
+            }
+        }
+
+        for (URI uri : removed) {
+            unload(entries.remove(uri).resource);
+            if (storage != null) {
+                storage.remove(uri);
+            }
+        }
+
+        // Add the parsed files in listing order so that the resource set looks the same as after a
+        // sequential load.
+        for (URI uri : changed) {
+            Entry entry = entries.get(uri);
+            if (entry != null) {
+                unload(entry.resource);
+            }
+        }
+
+        for (File file : files) {
+            URI uri = URI.createFileURI(file.getPath());
+            if (!changed.contains(uri)) {
+                continue;
+            }
+            Entry entry = entries.get(uri);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(uri, entry);
+            }
+            Resource r = parsed.get(uri);
+            rs.getResources().add(r);
+            r.setTrackingModification(true);
+            entry.resource = r;
+            entry.lastModified = file.lastModified();
+            entry.length = file.length();
+            entry.contentHash = hashes.get(uri);
+            entry.storePending = !restored.contains(uri) || restoredStale.contains(uri);
+            if (locations != null) {
+                locations.put(uri, entry.contentHash, entry.lastModified, entry.length, r);
+            }
+        }
+        if (locations != null) {
+            locations.retain(present);
+        }
+
+        // Snapshots whose referenced files changed since were loaded with stale links.
+        relink.addAll(restoredStale);
+
+        PhaseEvent link = PhaseEvent.start("link");
+        for (URI uri : relink) {
+            Resource r = entries.get(uri).resource;
+            if (r instanceof StorageAwareResource) {
+                // Linking a restored resource again records unresolvable references like a parsed one.
+                ((StorageAwareResource) r).setIsLoadedFromStorage(false);
+            }
+            if (r instanceof XtextResource) {
+                boolean wasModified = r.isModified();
+                ((XtextResource) r).relink();
+                r.setModified(wasModified);
+            }
+        }
+
+        // Phase two: resolve the cross references of everything that was parsed or needs re-linking.
+        Set<Entry> toLink = new LinkedHashSet<Entry>();
+        for (Set<URI> uris : Arrays.asList(changed, relink, pending)) {
+            for (URI uri : uris) {
+                Entry entry = entries.get(uri);
+                entry.linkPending = true;
+                toLink.add(entry);
+            }
+        }
+        for (Entry entry : toLink) {
+            operationCanceledManager.checkCanceled(cancelIndicator);
+            link(entry);
+        }
+        link.end(toLink.size(), -1, -1);
+        saved.clear();
+        if (searchIndex != null) {
+            searchIndex.update();
+        }
+        scheduleStore();
+        return getResources(files);
+    }
+
+    /**
+     * Writes the snapshots of the files that were parsed or re-linked since their snapshot was written.
+     * The monitor of the workspace is taken for one file at a time, so commands are not held up for long;
+     * resources that are not linked yet, have unresolved references or were changed in memory are skipped.
+     * A snapshot records only the files that its references resolved into, so it could not tell when a
+     * missing target appears. The node locations computed since are written as well.
+     */
+    public void storeSnapshots() {
+        if (storage == null) {
+            return;
+        }
+        if (locations != null) {
+            locations.store();
+        }
+        List<URI> uris;
+        synchronized (this) {
+            storeScheduled = false;
+            uris = new ArrayList<URI>(entries.keySet());
+        }
+        for (URI uri : uris) {
+            synchronized (this) {
+                Entry entry = entries.get(uri);
+                if (entry == null || !entry.storePending || entry.linkPending || entry.hasUnresolved
+                        || entry.resource.isModified()) {
+                    continue;
+                }
+                Map<URI, String> dependencyHashes = new HashMap<URI, String>();
+                for (URI dependency : entry.dependencies) {
+                    Entry d = entries.get(dependency);
+                    if (d != null) {
+                        dependencyHashes.put(dependency, d.contentHash);
+                    }
+                }
+                entry.storePending = false;
+                try {
+                    storage.store(entry.resource, entry.contentHash, dependencyHashes);
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Unable to write the model cache of " + uri, e);
+                }
+            }
+        }
+    }
+
+    private void scheduleStore() {
+        if (storage == null || storeScheduled) {
+            return;
+        }
+        boolean pending = locations != null && locations.isStorePending();
+        for (Entry entry : entries.values()) {
+            pending |= entry.storePending;
+        }
+        if (pending) {
+            storeScheduled = true;
+            storage.execute(this::storeSnapshots);
+        }
+    }
+
+    /**
+     * Forgets the recorded stamp of a file, e.g. after a change of it was reported. The next
+     * {@link #refresh()} re-hashes it and reloads it only if the content differs from what was parsed.
+     */
+    public synchronized void markStale(URI uri) {
+        Entry entry = entries.get(uri);
+        if (entry != null) {
+            entry.lastModified = -1;
+            // The resource may differ from the file it was parsed from now.
+            entry.storePending = false;
+        }
+    }
+
+    /**
+     * Like {@link #markStale(URI)}, for a file that the server wrote itself; until the next refresh,
+     * {@link #markChanged(Set)} does not report it as changed by another program.
+     */
+    public synchronized void markSaved(URI uri) {
+        Entry entry = entries.get(uri);
+        if (entry != null && entry.contentHash != null) {
+            overwritten.computeIfAbsent(uri, k -> new HashSet<String>()).add(entry.contentHash);
+        }
+        markStale(uri);
+        saved.add(uri);
+    }
+
+    /**
+     * Whether a copy of the file with the given content hash is older than the last write of the server,
+     * because the file had that content before. A copy with any other content is taken to be newer, and
+     * the writes are forgotten.
+     */
+    public synchronized boolean isOverwritten(URI uri, String contentHash) {
+        Set<String> hashes = overwritten.get(uri);
+        if (hashes == null) {
+            return false;
+        }
+        if (hashes.contains(contentHash)) {
+            return true;
+        }
+        overwritten.remove(uri);
+        return false;
+    }
+
+    /**
+     * Marks files that changed on disk as stale and returns the ones whose change the server did not make
+     * itself: files that were added, removed or have other content than the one parsed. Nothing is parsed,
+     * that is left to the next {@link #refresh()}. Null files means that any file may have changed.
+     */
+    public synchronized Set<URI> markChanged(Set<File> files) {
+        Map<URI, File> candidates = new LinkedHashMap<URI, File>();
+        if (files == null) {
+            for (File file : listModelFiles(directory)) {
+                candidates.put(URI.createFileURI(file.getPath()), file);
+            }
+            for (URI uri : entries.keySet()) {
+                candidates.putIfAbsent(uri, new File(uri.toFileString()));
+            }
+        } else {
+            for (File file : files) {
+                candidates.put(URI.createFileURI(file.getPath()), file);
+            }
+        }
+        Set<URI> external = new LinkedHashSet<URI>();
+        for (Map.Entry<URI, File> candidate : candidates.entrySet()) {
+            URI uri = candidate.getKey();
+            File file = candidate.getValue();
+            Entry entry = entries.get(uri);
+            if (entry != null && entry.lastModified == file.lastModified() && entry.length == file.length()) {
+                continue;
+            }
+            markStale(uri);
+            if (saved.contains(uri) || entry == null && !file.isFile()) {
+                continue;
+            }
+            if (entry == null || entry.contentHash == null || !entry.contentHash.equals(hash(file))) {
+                external.add(uri);
+            }
+        }
+        return external;
+    }
+
+    /**
+     * The content hash of the file, or null if it can not be read.
+     */
+    private static String hash(File file) {
+        try {
+            return Hashing.murmur3_128().hashBytes(Files.readAllBytes(file.toPath())).toString();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops the whole in-memory model, e.g. when it no longer reflects what is on disk.
+     */
+    public synchronized void invalidate() {
+        if (resourceSet != null) {
+            NodePathCache cache = nodePaths;
+            nodePaths = null;
+            nodePathHits.addAndGet(cache.getHits());
+            nodePathMisses.addAndGet(cache.getMisses());
+            for (Entry entry : entries.values()) {
+                unload(entry.resource);
+            }
+            resourceSet.getResources().clear();
+        }
+        entries.clear();
+        resourceSet = null;
+        searchIndex = null;
+        // Nothing is parsed any more that a write or a scheduled store could refer to.
+        saved.clear();
+        storeScheduled = false;
+    }
+
+    /**
+     * The number of files parsed by all refreshes so far.
+     */
+    public long getParsedCount() {
+        return parsedCount;
+    }
+
+    /**
+     * The number of files that refreshes loaded from their snapshots instead of parsing them.
+     */
+    public long getRestoredCount() {
+        return restoredCount;
+    }
+
+    /**
+     * The number of files that refreshes found unchanged and kept as they were.
+     */
+    public long getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * The number of node ids that were found in the node path caches of this workspace.
+     */
+    public long getNodePathHits() {
+        NodePathCache cache = nodePaths;
+        return nodePathHits.get() + (cache != null ? cache.getHits() : 0);
+    }
+
+    /**
+     * The number of node ids that had to be computed.
+     */
+    public long getNodePathMisses() {
+        NodePathCache cache = nodePaths;
+        return nodePathMisses.get() + (cache != null ? cache.getMisses() : 0);
+    }
+
+    public synchronized Set<URI> getDependencies(URI uri) {
+        Entry entry = entries.get(uri);
+        return entry != null ? entry.dependencies : Collections.<URI>emptySet();
+    }
+
+    public static List<File> listModelFiles(File directory) {
+        List<File> files = new ArrayList<File>();
+        File[] listing = directory.listFiles();
+        if (listing == null) {
+            return files;
+        }
+        for (File file : listing) {
+            if (file.getName().endsWith(".gsn") && file.isFile()) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private List<Resource> getResources(List<File> files) {
+        List<Resource> resourceList = new ArrayList<Resource>(files.size());
+        for (File file : files) {
+            Entry entry = entries.get(URI.createFileURI(file.getPath()));
+            if (entry != null) {
+                resourceList.add(entry.resource);
+            }
+        }
+        return resourceList;
+    }
+
+    private void link(Entry entry) {
+        Resource r = entry.resource;
+        EcoreUtil2.resolveAll(r);
+        Set<URI> dependencies = new HashSet<URI>();
+        entry.hasUnresolved = collectReferencedResources(r, dependencies);
+        entry.dependencies = dependencies;
+        entry.linkPending = false;
+    }
+
+    /**
+     * Adds the URIs of all other resources that the cross references of the given resource point to.
+     * Proxies are not resolved; returns true if any reference is still an unresolved proxy.
+     */
+    public static boolean collectReferencedResources(Resource r, Set<URI> result) {
+        boolean hasUnresolved = false;
+        TreeIterator<EObject> it = r.getAllContents();
+        while (it.hasNext()) {
+            EObject obj = it.next();
+            for (EReference ref : obj.eClass().getEAllReferences()) {
+                if (ref.isContainment() || ref.isContainer() || !obj.eIsSet(ref)) {
+                    continue;
+                }
+                Object value = obj.eGet(ref, false);
+                Iterator<?> targets = value instanceof List<?> ? ((List<?>) value).iterator()
+                        : Collections.singleton(value).iterator();
+                while (targets.hasNext()) {
+                    EObject target = (EObject) targets.next();
+                    if (target.eIsProxy()) {
+                        hasUnresolved = true;
+                    } else if (target.eResource() != null && target.eResource() != r) {
+                        result.add(target.eResource().getURI());
+                    }
+                }
+            }
+        }
+        return hasUnresolved;
+    }
+
+    private void unload(Resource r) {
+        if (r == null) {
+            return;
+        }
+        r.unload();
+        if (resourceSet != null) {
+            resourceSet.getResources().remove(r);
+        }
+    }
+}
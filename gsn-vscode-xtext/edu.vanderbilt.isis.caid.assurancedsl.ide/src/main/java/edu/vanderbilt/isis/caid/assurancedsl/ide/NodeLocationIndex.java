@@ -0,0 +1,266 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.nodemodel.ICompositeNode;
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+
+import com.google.common.hash.Hashing;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.BaseNode;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+
+/**
+ * Where the nodes of a model directory are defined: for every node id and uuid, the file, offset and line
+ * of the node.
+ *
+ * The index keeps one table per file, computed when the file is parsed or loaded from its snapshot and
+ * tagged with the content hash of the file. Node ids only depend on the file that defines the node, so a
+ * table stays valid as long as its file is unchanged. With a {@link ModelStorageCache} the tables are also
+ * written beside the snapshots, and {@link #update(List)} picks them up for files that were not loaded in
+ * this session, so a lookup does not need the parser at all.
+ */
+public class NodeLocationIndex {
+
+    private static final Logger LOG = Logger.getLogger(NodeLocationIndex.class);
+
+    /**
+     * The location of a node.
+     */
+    public static class Location {
+
+        public final URI file;
+
+        public final String path;
+
+        /**
+         * The uuid of the node, or null if it has none yet.
+         */
+        public final String uuid;
+
+        public final int offset;
+
+        public final int line;
+
+        public Location(URI file, String path, String uuid, int offset, int line) {
+            this.file = file;
+            this.path = path;
+            this.uuid = uuid;
+            this.offset = offset;
+            this.line = line;
+        }
+    }
+
+    private static class Table {
+        String contentHash;
+        long lastModified;
+        long length;
+        List<Location> locations;
+        boolean storePending;
+    }
+
+    private final ModelStorageCache storage;
+
+    private final AssuranceGenerator generator;
+
+    private final Map<URI, Table> tables = new HashMap<URI, Table>();
+
+    private final Map<String, Location> byPath = new HashMap<String, Location>();
+
+    private final Map<String, Location> byUuid = new HashMap<String, Location>();
+
+    private long restoredCount;
+
+    public NodeLocationIndex(ModelStorageCache storage, AssuranceGenerator generator) {
+        this.storage = storage;
+        this.generator = generator;
+    }
+
+    /**
+     * Returns the location of the node with the given id, or else of the node with the given uuid; null
+     * if neither is known.
+     */
+    public synchronized Location find(String idOrUuid) {
+        Location location = byPath.get(idOrUuid);
+        return location != null ? location : byUuid.get(idOrUuid);
+    }
+
+    /**
+     * Brings the index up to date with the given .gsn files without parsing them: tables of files that were
+     * removed are dropped, and files that changed since their table was computed are hashed and their
+     * table is taken from the model cache. Returns false if a file has no table for its current content;
+     * the index is complete again once that file was {@link #put(URI, String, long, long, Resource) put}.
+     */
+    public synchronized boolean update(List<File> files) throws IOException {
+        Set<URI> present = new HashSet<URI>();
+        boolean complete = true;
+        for (File file : files) {
+            URI uri = URI.createFileURI(file.getPath());
+            present.add(uri);
+            Table table = tables.get(uri);
+            if (table != null && table.lastModified == file.lastModified() && table.length == file.length()) {
+                continue;
+            }
+            long lastModified = file.lastModified();
+            long length = file.length();
+            String hash = Hashing.murmur3_128().hashBytes(Files.readAllBytes(file.toPath())).toString();
+            if (table != null && hash.equals(table.contentHash)) {
+                table.lastModified = lastModified;
+                table.length = length;
+                continue;
+            }
+            List<Location> locations = storage != null ? storage.loadLocations(uri, hash) : null;
+            if (locations == null) {
+                complete = false;
+                continue;
+            }
+            Table restored = new Table();
+            restored.contentHash = hash;
+            restored.lastModified = lastModified;
+            restored.length = length;
+            restored.locations = locations;
+            replace(uri, restored);
+            restoredCount++;
+        }
+        retain(present);
+        return complete;
+    }
+
+    /**
+     * Records the locations of the nodes of a resource that was loaded from the file with the given
+     * content and stamp. Nothing is computed if the table of the file is for that content already.
+     */
+    public synchronized void put(URI uri, String contentHash, long lastModified, long length, Resource resource) {
+        Table table = tables.get(uri);
+        if (table != null && contentHash.equals(table.contentHash)) {
+            table.lastModified = lastModified;
+            table.length = length;
+            return;
+        }
+        table = new Table();
+        table.contentHash = contentHash;
+        table.lastModified = lastModified;
+        table.length = length;
+        table.locations = computeLocations(uri, resource);
+        table.storePending = storage != null;
+        replace(uri, table);
+    }
+
+    /**
+     * Drops the tables of all files but the given ones.
+     */
+    public synchronized void retain(Collection<URI> files) {
+        for (URI uri : new ArrayList<URI>(tables.keySet())) {
+            if (!files.contains(uri)) {
+                replace(uri, null);
+            }
+        }
+    }
+
+    /**
+     * Whether tables were computed that are not written to the model cache yet.
+     */
+    public synchronized boolean isStorePending() {
+        for (Table table : tables.values()) {
+            if (table.storePending) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the tables that were computed since they were last written.
+     */
+    public void store() {
+        if (storage == null) {
+            return;
+        }
+        Map<URI, Table> pending = new HashMap<URI, Table>();
+        synchronized (this) {
+            for (Map.Entry<URI, Table> e : tables.entrySet()) {
+                if (e.getValue().storePending) {
+                    e.getValue().storePending = false;
+                    pending.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+        for (Map.Entry<URI, Table> e : pending.entrySet()) {
+            try {
+                storage.storeLocations(e.getKey(), e.getValue().contentHash, e.getValue().locations);
+            } catch (IOException | RuntimeException ex) {
+                LOG.warn("Unable to write the node locations of " + e.getKey(), ex);
+            }
+        }
+    }
+
+    /**
+     * The number of tables that were read from the model cache.
+     */
+    public synchronized long getRestoredCount() {
+        return restoredCount;
+    }
+
+    private void replace(URI uri, Table table) {
+        Table old = table != null ? tables.put(uri, table) : tables.remove(uri);
+        if (old != null) {
+            for (Location location : old.locations) {
+                byPath.remove(location.path, location);
+                if (location.uuid != null) {
+                    byUuid.remove(location.uuid, location);
+                }
+            }
+        }
+        if (table != null) {
+            for (Location location : table.locations) {
+                byPath.put(location.path, location);
+                if (location.uuid != null) {
+                    byUuid.put(location.uuid, location);
+                }
+            }
+        }
+    }
+
+    private List<Location> computeLocations(URI uri, Resource resource) {
+        List<Location> locations = new ArrayList<Location>();
+        TreeIterator<EObject> it = resource.getAllContents();
+        while (it.hasNext()) {
+            EObject obj = it.next();
+            if (!(obj instanceof ALLNodes)) {
+                continue;
+            }
+            String path = generator.getNodeFQN(obj);
+            ICompositeNode node = NodeModelUtils.getNode(obj);
+            if (path != null && node != null) {
+                locations.add(new Location(uri, path, getUuid(generator, obj), node.getOffset(), node.getStartLine()));
+            }
+        }
+        return Collections.unmodifiableList(locations);
+    }
+
+    /**
+     * The uuid of the node as written in the file; unlike the generator, this does not assign one.
+     */
+    static String getUuid(AssuranceGenerator generator, EObject obj) {
+        EList<BaseNode> details = generator.getNodeDetails(obj);
+        String uuid = details != null ? generator.getNodeUUID(details) : "";
+        return !uuid.isEmpty() ? uuid : null;
+    }
+}
@@ -0,0 +1,141 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.service.OperationCanceledManager;
+import org.eclipse.xtext.util.CancelIndicator;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Parses .gsn files concurrently on a bounded thread pool.
+ *
+ * This is the first phase of loading a model directory: every file is parsed into its own resource set,
+ * so the parsers do not share any state and cross references stay unresolved proxies. The caller moves
+ * the resources into its resource set and links them in a single pass afterwards.
+ *
+ * The number of threads defaults to the number of available processors and can be set with the system
+ * property {@value #THREADS_PROPERTY}; with one thread all files are parsed on the calling thread.
+ */
+public class ParallelResourceLoader {
+
+    public static final String THREADS_PROPERTY = "gsn.loader.threads";
+
+    private final Supplier<ResourceSet> resourceSetFactory;
+
+    private final int threads;
+
+    private ExecutorService executor;
+
+    private final OperationCanceledManager operationCanceledManager = new OperationCanceledManager();
+
+    public ParallelResourceLoader(Supplier<ResourceSet> resourceSetFactory) {
+        this(resourceSetFactory, Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public ParallelResourceLoader(Supplier<ResourceSet> resourceSetFactory, int threads) {
+        this.resourceSetFactory = resourceSetFactory;
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Parses the given file contents and returns the resulting resources in the iteration order of the
+     * map. The resources still belong to private resource sets and are not linked.
+     */
+    public Map<URI, Resource> parse(Map<URI, byte[]> contents) throws IOException {
+        return parse(contents, CancelIndicator.NullImpl);
+    }
+
+    /**
+     * Like {@link #parse(Map)}, but throws an OperationCanceledError as soon as the indicator is canceled;
+     * files that did not start parsing yet are skipped then.
+     */
+    public Map<URI, Resource> parse(Map<URI, byte[]> contents, CancelIndicator cancelIndicator) throws IOException {
+        return parse(contents, uri -> null, cancelIndicator);
+    }
+
+    /**
+     * Like {@link #parse(Map, CancelIndicator)}, but first asks the restore function for each file and
+     * only parses the files for which it returns null. The function is called on the pool threads.
+     */
+    public Map<URI, Resource> parse(Map<URI, byte[]> contents, Function<URI, Resource> restore,
+            CancelIndicator cancelIndicator) throws IOException {
+        Map<URI, Resource> result = new LinkedHashMap<URI, Resource>();
+        if (threads == 1 || contents.size() < 2) {
+            for (Map.Entry<URI, byte[]> e : contents.entrySet()) {
+                operationCanceledManager.checkCanceled(cancelIndicator);
+                result.put(e.getKey(), load(e.getKey(), e.getValue(), restore));
+            }
+            return result;
+        }
+
+        List<Future<Resource>> futures = new ArrayList<Future<Resource>>(contents.size());
+        for (Map.Entry<URI, byte[]> e : contents.entrySet()) {
+            URI uri = e.getKey();
+            byte[] bytes = e.getValue();
+            futures.add(getExecutor().submit(
+                    (Callable<Resource>) () -> cancelIndicator.isCanceled() ? null : load(uri, bytes, restore)));
+        }
+        int i = 0;
+        for (URI uri : contents.keySet()) {
+            Future<Resource> future = futures.get(i++);
+            try {
+                Resource r = future.get();
+                operationCanceledManager.checkCanceled(cancelIndicator);
+                result.put(uri, r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while parsing " + uri, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException("Unable to parse " + uri, cause);
+            }
+        }
+        return result;
+    }
+
+    private Resource load(URI uri, byte[] bytes, Function<URI, Resource> restore) throws IOException {
+        Resource r = restore.apply(uri);
+        return r != null ? r : parse(uri, bytes);
+    }
+
+    private Resource parse(URI uri, byte[] bytes) throws IOException {
+        ResourceSet rs = resourceSetFactory.get();
+        Resource r = rs.createResource(uri);
+        r.load(new ByteArrayInputStream(bytes), rs.getLoadOptions());
+        return r;
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads,
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("gsn-loader-%d").build());
+        }
+        return executor;
+    }
+}
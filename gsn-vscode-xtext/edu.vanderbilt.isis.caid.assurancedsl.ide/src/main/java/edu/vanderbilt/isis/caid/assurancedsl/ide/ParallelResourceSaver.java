@@ -0,0 +1,238 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.formatting2.regionaccess.ITextReplacement;
+import org.eclipse.xtext.ide.serializer.ITextDocumentChange;
+import org.eclipse.xtext.resource.XtextResource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes the resources of a model directory that changed in memory back to their files.
+ *
+ * Only resources that are modified, or that reference a modified resource (their text holds the names
+ * of the referenced nodes), are serialized. The serializer resolves names through caches of the resource
+ * set that it fills as it goes, so all resources are serialized on the calling thread; the files are then
+ * written concurrently on a bounded thread pool. Every file is written to a temporary file next to it and
+ * then renamed over the original, so a crash never leaves a half-written model. Files whose content would
+ * not change are not touched.
+ *
+ * Changes recorded by a change serializer are written as text edits of the files instead, see
+ * {@link #write(List)}.
+ *
+ * The number of threads defaults to the number of available processors and can be set with the system
+ * property {@value #THREADS_PROPERTY}; with one thread all files are written on the calling thread.
+ */
+public class ParallelResourceSaver {
+
+    public static final String THREADS_PROPERTY = "gsn.saver.threads";
+
+    private final int threads;
+
+    private ExecutorService executor;
+
+    public ParallelResourceSaver() {
+        this(Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public ParallelResourceSaver(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the resources that have to be saved, in the order of the given list: the modified ones and
+     * the ones with cross references into a modified resource. Resources that do not track modifications
+     * are always included.
+     */
+    public static List<Resource> getDirtyResources(List<Resource> resourceList) {
+        Set<URI> modified = new HashSet<URI>();
+        for (Resource r : resourceList) {
+            if (!r.isTrackingModification() || r.isModified()) {
+                modified.add(r.getURI());
+            }
+        }
+        List<Resource> result = new ArrayList<Resource>();
+        if (modified.isEmpty()) {
+            return result;
+        }
+        for (Resource r : resourceList) {
+            if (modified.contains(r.getURI())) {
+                result.add(r);
+                continue;
+            }
+            Set<URI> referenced = new HashSet<URI>();
+            ModelWorkspace.collectReferencedResources(r, referenced);
+            referenced.retainAll(modified);
+            if (!referenced.isEmpty()) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Serializes the given resources and writes those whose content differs from their file. Returns
+     * the URIs of the files that were written. All resources are left unmodified afterwards.
+     *
+     * Nothing is written if any of the resources fails to serialize.
+     */
+    public List<URI> save(List<Resource> resources, Map<?, ?> options) throws IOException {
+        List<byte[]> contents = new ArrayList<byte[]>(resources.size());
+        for (Resource r : resources) {
+            contents.add(serialize(r, options));
+        }
+
+        List<Boolean> changed = new ArrayList<Boolean>(resources.size());
+        if (threads == 1 || resources.size() < 2) {
+            for (int i = 0; i < resources.size(); i++) {
+                changed.add(write(getPath(resources.get(i)), contents.get(i)));
+            }
+        } else {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(resources.size());
+            for (int i = 0; i < resources.size(); i++) {
+                Path file = getPath(resources.get(i));
+                byte[] content = contents.get(i);
+                futures.add(getExecutor().submit((Callable<Boolean>) () -> write(file, content)));
+            }
+            for (int i = 0; i < resources.size(); i++) {
+                changed.add(get(futures.get(i), resources.get(i).getURI()));
+            }
+        }
+
+        List<URI> written = new ArrayList<URI>();
+        for (int i = 0; i < resources.size(); i++) {
+            Resource r = resources.get(i);
+            if (changed.get(i)) {
+                written.add(r.getURI());
+            }
+            r.setModified(false);
+        }
+        return written;
+    }
+
+    /**
+     * Applies the text edits that a change serializer computed to the documents they were computed for
+     * and writes the results. Returns the URIs of the files that were written.
+     */
+    public List<URI> write(List<ITextDocumentChange> changes) throws IOException {
+        List<URI> written = new ArrayList<URI>();
+        for (ITextDocumentChange change : changes) {
+            List<ITextReplacement> replacements = new ArrayList<ITextReplacement>(change.getReplacements());
+            if (replacements.isEmpty()) {
+                continue;
+            }
+            XtextResource r = change.getResource();
+            StringBuilder text = new StringBuilder(r.getParseResult().getRootNode().getText());
+            replacements.sort((a, b) -> Integer.compare(b.getOffset(), a.getOffset()));
+            for (ITextReplacement replacement : replacements) {
+                text.replace(replacement.getOffset(), replacement.getEndOffset(), replacement.getReplacementText());
+            }
+            URI uri = change.getNewURI() != null ? change.getNewURI() : r.getURI();
+            if (write(new File(uri.toFileString()).toPath(), text.toString().getBytes(r.getEncoding()))) {
+                written.add(uri);
+            }
+        }
+        return written;
+    }
+
+    private static Path getPath(Resource r) {
+        return new File(r.getURI().toFileString()).toPath();
+    }
+
+    private static byte[] serialize(Resource r, Map<?, ?> options) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        r.save(out, options);
+        return out.toByteArray();
+    }
+
+    /**
+     * Replaces the file with the given content by way of a temporary file in the same directory.
+     * Returns false if the file already has this content.
+     */
+    private static boolean write(Path file, byte[] content) throws IOException {
+        if (Files.isRegularFile(file) && Files.size(file) == content.length
+                && Arrays.equals(Files.readAllBytes(file), content)) {
+            return false;
+        }
+        replace(file, out -> out.write(content));
+        return true;
+    }
+
+    /**
+     * Writes the content to a temporary file in the same directory as the file and renames it over the
+     * file once it is complete. If the content cannot be written, the file is left as it was.
+     */
+    static void replace(Path file, Content content) throws IOException {
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), "." + file.getFileName(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                content.writeTo(out);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * The content of a file written by {@link ParallelResourceSaver#replace(Path, Content)}.
+     */
+    interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static <T> T get(Future<T> future, URI uri) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while saving " + uri, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Unable to save " + uri, cause);
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads,
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("gsn-saver-%d").build());
+        }
+        return executor;
+    }
+}
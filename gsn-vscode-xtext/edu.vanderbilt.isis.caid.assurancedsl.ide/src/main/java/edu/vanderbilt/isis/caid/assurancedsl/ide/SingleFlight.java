@@ -0,0 +1,134 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.eclipse.xtext.service.OperationCanceledManager;
+import org.eclipse.xtext.util.CancelIndicator;
+
+/**
+ * Coalesces concurrent calls with the same key into one computation.
+ *
+ * The first caller of a key runs the computation; callers that arrive while it runs wait for it and get
+ * the same result (or exception). The computation is only canceled when every waiting caller is
+ * canceled; a canceled caller stops waiting with an OperationCanceledError while the others keep
+ * waiting. Calls that arrive after the computation finished start a new one.
+ */
+public class SingleFlight<K, V> {
+
+    private static final long POLL_MILLIS = 20;
+
+    private class Call {
+
+        final CompletableFuture<V> result = new CompletableFuture<V>();
+
+        final List<CancelIndicator> callers = new ArrayList<CancelIndicator>();
+
+        boolean isCanceled() {
+            synchronized (SingleFlight.this) {
+                for (CancelIndicator caller : callers) {
+                    if (!caller.isCanceled()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    private final Map<K, Call> calls = new HashMap<K, Call>();
+
+    private final OperationCanceledManager operationCanceledManager = new OperationCanceledManager();
+
+    private long joined;
+
+    private long computed;
+
+    /**
+     * Returns the result of the computation for the key, computed by this call or by a concurrent one.
+     * The computation gets an indicator that is canceled once all callers are.
+     */
+    public V execute(K key, CancelIndicator cancelIndicator, Function<CancelIndicator, V> computation) {
+        Call call;
+        boolean first;
+        synchronized (this) {
+            call = calls.get(key);
+            first = call == null;
+            if (first) {
+                computed++;
+                call = new Call();
+                calls.put(key, call);
+            } else {
+                joined++;
+            }
+            call.callers.add(cancelIndicator);
+        }
+        return first ? compute(key, call, computation) : await(call, cancelIndicator);
+    }
+
+    /**
+     * The number of calls that were served by the computation of another call.
+     */
+    public synchronized long getJoined() {
+        return joined;
+    }
+
+    /**
+     * The number of computations that were started.
+     */
+    public synchronized long getComputed() {
+        return computed;
+    }
+
+    private V compute(K key, Call call, Function<CancelIndicator, V> computation) {
+        V value;
+        try {
+            value = computation.apply(call::isCanceled);
+        } catch (RuntimeException | Error e) {
+            finish(key);
+            call.result.completeExceptionally(e);
+            throw e;
+        }
+        finish(key);
+        call.result.complete(value);
+        return value;
+    }
+
+    private synchronized void finish(K key) {
+        calls.remove(key);
+    }
+
+    private V await(Call call, CancelIndicator cancelIndicator) {
+        while (true) {
+            try {
+                return call.result.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (cancelIndicator.isCanceled()) {
+                    synchronized (this) {
+                        call.callers.remove(cancelIndicator);
+                    }
+                    operationCanceledManager.throwOperationCanceledException();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                operationCanceledManager.throwOperationCanceledException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.xtext.service.OperationCanceledManager;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+
+/**
+ * A gsn.QUERY_SUBTREE query: the nodes reachable from one node over solvedBy and inContextOf edges, so
+ * that the graph can be expanded step by step instead of loading the whole model.
+ *
+ * The arguments are
+ * <ul>
+ * <li>{@code depth}: how many edges to follow from the root; unlimited by default, 0 returns the root
+ * only,</li>
+ * <li>{@code edges}: the kinds of edges to follow, {@code ["solvedBy", "inContextOf"]} by default,</li>
+ * <li>{@code limit} and {@code offset}: at most {@code limit} children are followed from every node,
+ * starting at child {@code offset} for the root and at the first child below it.</li>
+ * </ul>
+ *
+ * Nodes are visited breadth first and each node is returned once, at the depth it is first reached. The
+ * response is {@code {"nodes": [...], "more": {"<id>": n}}}: the nodes in the format of the model JSON,
+ * and for every node whose children were cut off by the limit, the number of children left out. Only the
+ * visited nodes are generated.
+ */
+public class SubtreeQuery {
+
+    public static final String SOLVED_BY = "solvedBy";
+
+    public static final String IN_CONTEXT_OF = "inContextOf";
+
+    private final int depth;
+
+    private final boolean solvedBy;
+
+    private final boolean inContextOf;
+
+    private final int offset;
+
+    private final int limit;
+
+    private final OperationCanceledManager operationCanceledManager = new OperationCanceledManager();
+
+    public SubtreeQuery(int depth, boolean solvedBy, boolean inContextOf, int offset, int limit) {
+        this.depth = depth;
+        this.solvedBy = solvedBy;
+        this.inContextOf = inContextOf;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Reads the query from the command arguments; throws an IllegalArgumentException if they are not
+     * valid.
+     */
+    public static SubtreeQuery fromArguments(JSONObject args) {
+        int depth = args.optInt("depth", -1);
+        int offset = args.optInt("offset", 0);
+        int limit = args.optInt("limit", -1);
+        if (offset < 0) {
+            throw new IllegalArgumentException("Invalid offset " + offset);
+        }
+        boolean solvedBy = true;
+        boolean inContextOf = true;
+        JSONArray edges = args.optJSONArray("edges");
+        if (edges != null) {
+            solvedBy = false;
+            inContextOf = false;
+            for (int i = 0; i < edges.length(); i++) {
+                String edge = edges.optString(i);
+                if (SOLVED_BY.equals(edge)) {
+                    solvedBy = true;
+                } else if (IN_CONTEXT_OF.equals(edge)) {
+                    inContextOf = true;
+                } else {
+                    throw new IllegalArgumentException("Unknown edge type " + edge);
+                }
+            }
+        }
+        return new SubtreeQuery(depth, solvedBy, inContextOf, offset, limit);
+    }
+
+    /**
+     * Runs the query from the root; the dictionary maps the ids of all nodes of the model to the nodes.
+     */
+    public String run(ALLNodes root, Map<String, ALLNodes> objDict, AssuranceGenerator a1,
+            CancelIndicator cancelIndicator) {
+        StringBuilder nodes = new StringBuilder();
+        JSONObject more = new JSONObject();
+        Set<ALLNodes> visited = new HashSet<ALLNodes>();
+        Deque<ALLNodes> queue = new ArrayDeque<ALLNodes>();
+        Deque<Integer> depths = new ArrayDeque<Integer>();
+        visited.add(root);
+        queue.add(root);
+        depths.add(0);
+        while (!queue.isEmpty()) {
+            operationCanceledManager.checkCanceled(cancelIndicator);
+            ALLNodes node = queue.poll();
+            int d = depths.poll();
+            nodes.append(nodes.length() == 0 ? "" : ",").append(a1.generateNodeJSON(node));
+            if (depth >= 0 && d >= depth) {
+                continue;
+            }
+            List<String> children = new ArrayList<String>();
+            if (solvedBy) {
+                children.addAll(a1.getNodeSolvedBy(node));
+            }
+            if (inContextOf) {
+                children.addAll(a1.getNodeInContextOf(node));
+            }
+            int from = Math.min(node == root ? offset : 0, children.size());
+            int to = limit < 0 ? children.size() : (int) Math.min((long) from + limit, children.size());
+            if (to < children.size()) {
+                more.put(a1.getNodeFQN(node), children.size() - to);
+            }
+            for (String id : children.subList(from, to)) {
+                ALLNodes child = objDict.get(id);
+                if (child != null && visited.add(child)) {
+                    queue.add(child);
+                    depths.add(d + 1);
+                }
+            }
+        }
+        return "{\"nodes\":[" + nodes + "],\"more\":" + more + "}";
+    }
+}
@@ -0,0 +1,162 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+
+/**
+ * Caches the results of views over the resources of a resource set until a change could alter them.
+ *
+ * The cache is a content adapter on the resource set. A change of the text of a node (summary, info,
+ * artifacts, uuid or status) only drops the results that show the node. Changes of labels, names or edges
+ * and added or removed nodes or resources may change what any view shows, so they drop all results.
+ */
+public class ViewCache extends EContentAdapter {
+
+    private static final int MAX_SIZE = 32;
+
+    /**
+     * The containment features whose changes may change which nodes a view shows.
+     */
+    private static final Set<String> STRUCTURAL = new HashSet<String>(
+            Arrays.asList("details", "nodedetails", "labels"));
+
+    private final Map<String, ViewQuery.Result> results = new LinkedHashMap<String, ViewQuery.Result>(16, 0.75f,
+            true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ViewQuery.Result> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private long changeCount;
+
+    /**
+     * Returns the cache of the resource set, attaching a new one if it has none yet.
+     */
+    public static ViewCache install(ResourceSet resourceSet) {
+        ViewCache cache = find(resourceSet);
+        if (cache == null) {
+            cache = new ViewCache();
+            resourceSet.eAdapters().add(cache);
+        }
+        return cache;
+    }
+
+    /**
+     * The cache that the object (a resource set, resource or model object) is part of, or null.
+     */
+    public static ViewCache find(Notifier target) {
+        if (target == null) {
+            return null;
+        }
+        for (Adapter adapter : target.eAdapters()) {
+            if (adapter instanceof ViewCache) {
+                return (ViewCache) adapter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The cached result for the key, or null.
+     */
+    public synchronized ViewQuery.Result get(String key) {
+        return results.get(key);
+    }
+
+    /**
+     * The number of changes so far; a result computed from the model as of this count is only cached if
+     * nothing changed in the meantime.
+     */
+    public synchronized long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Caches the result unless the model changed since the given {@link #getChangeCount() change count}.
+     */
+    public synchronized void put(String key, ViewQuery.Result result, long changeCount) {
+        if (changeCount == this.changeCount) {
+            results.put(key, result);
+        }
+    }
+
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    @Override
+    public synchronized void notifyChanged(Notification notification) {
+        super.notifyChanged(notification);
+        // Resolving a reference, e.g. while the JSON of a node is generated, does not change the model.
+        if (notification.isTouch() || notification.getEventType() == Notification.RESOLVE) {
+            return;
+        }
+        Object notifier = notification.getNotifier();
+        Object feature = notification.getFeature();
+        if (notifier instanceof Resource) {
+            if (notification.getFeatureID(Resource.class) == Resource.RESOURCE__CONTENTS) {
+                changed(null);
+            }
+        } else if (notifier instanceof ResourceSet) {
+            if (notification.getFeatureID(ResourceSet.class) == ResourceSet.RESOURCE_SET__RESOURCES) {
+                changed(null);
+            }
+        } else if (notifier instanceof EObject) {
+            ALLNodes node = null;
+            if (isText(feature)) {
+                for (EObject obj = (EObject) notifier; obj != null && node == null; obj = obj.eContainer()) {
+                    if (obj instanceof ALLNodes) {
+                        node = (ALLNodes) obj;
+                    }
+                }
+            }
+            changed(node);
+        }
+    }
+
+    @Override
+    protected boolean resolve() {
+        return false;
+    }
+
+    /**
+     * Drops the results that show the node, or all results if the node is null.
+     */
+    private void changed(ALLNodes node) {
+        changeCount++;
+        if (node == null) {
+            results.clear();
+        } else {
+            results.values().removeIf(result -> result.nodes.contains(node));
+        }
+    }
+
+    private static boolean isText(Object feature) {
+        if (feature instanceof EAttribute) {
+            return !"name".equals(((EAttribute) feature).getName());
+        }
+        if (feature instanceof EReference) {
+            EReference reference = (EReference) feature;
+            return reference.isContainment() && !STRUCTURAL.contains(reference.getName());
+        }
+        return false;
+    }
+}
@@ -0,0 +1,330 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.xtext.service.OperationCanceledManager;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.BaseNode;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+
+/**
+ * A gsn.GET_VIEW query: a view of the graph editor (see views.json), evaluated on the server so that only the
+ * nodes it shows are sent to the client.
+ *
+ * The view expression has the syntax of the view editor: alternatives separated by {@code ||}, each a list
+ * of labels separated by {@code &&}, each of which may be negated by a leading {@code !}. A group name
+ * (see labels.json) stands for any label of the group or of its sub-groups, and {@code *} for any defined
+ * label. A node matches if one alternative holds for its labels; an empty expression matches every node.
+ * With {@code includeSubtrees} the nodes solving a match, transitively, and the context nodes of all of
+ * them are shown too; with {@code includeParents} the nodes a match solves, transitively, or for context
+ * nodes the nodes they are the context of and the nodes those solve.
+ */
+public class ViewQuery {
+
+    public static final String OR = "||";
+
+    public static final String AND = "&&";
+
+    public static final String NOT = "!";
+
+    public static final String UNIVERSE = "*";
+
+    private static final Set<String> CONTEXT_TYPES = new HashSet<String>(
+            Arrays.asList("Assumption", "Context", "Justification"));
+
+    /**
+     * One label of an alternative; a group is replaced by its labels.
+     */
+    private static class Term {
+        String label;
+        Set<String> labels;
+        boolean negated;
+    }
+
+    /**
+     * The nodes a view shows and the response sent to the client.
+     */
+    public static class Result {
+
+        public final Set<ALLNodes> nodes;
+
+        public final String json;
+
+        Result(Set<ALLNodes> nodes, String json) {
+            this.nodes = nodes;
+            this.json = json;
+        }
+    }
+
+    private final List<List<Term>> expression = new ArrayList<List<Term>>();
+
+    private final boolean includeSubtrees;
+
+    private final boolean includeParents;
+
+    private final OperationCanceledManager operationCanceledManager = new OperationCanceledManager();
+
+    /**
+     * Parses the expression; the label data are the label and group definitions of labels.json. Throws an
+     * IllegalArgumentException with the message of the view editor if the expression is not valid.
+     */
+    public ViewQuery(String expression, boolean includeSubtrees, boolean includeParents, JSONArray labelData) {
+        this.includeSubtrees = includeSubtrees;
+        this.includeParents = includeParents;
+        if (expression == null || expression.isEmpty()) {
+            return;
+        }
+        Map<String, Set<String>> groups = resolveGroupMembers(labelData);
+        for (String alternative : expression.split(Pattern.quote(OR), -1)) {
+            if (alternative.isEmpty()) {
+                throw new IllegalArgumentException("Sub-expressions cannot be empty!");
+            }
+            List<Term> terms = new ArrayList<Term>();
+            for (String part : alternative.split(Pattern.quote(AND), -1)) {
+                String label = part.trim();
+                if (label.isEmpty() || label.equals(NOT)) {
+                    throw new IllegalArgumentException("Sub-expressions cannot be empty!");
+                }
+                Term term = new Term();
+                if (label.startsWith(NOT)) {
+                    term.negated = true;
+                    label = label.substring(NOT.length()).trim();
+                }
+                if (label.contains(NOT)) {
+                    throw new IllegalArgumentException(
+                            "Negate-operator (" + NOT + ") can only be used before a label.");
+                }
+                term.label = label;
+                term.labels = groups.get(label);
+                terms.add(term);
+            }
+            this.expression.add(terms);
+        }
+    }
+
+    /**
+     * Reads the query from a view of views.json.
+     */
+    public static ViewQuery fromView(JSONObject view, JSONArray labelData) {
+        return new ViewQuery(view.optString("expression", ""), view.optBoolean("includeSubtrees"),
+                view.optBoolean("includeParents"), labelData);
+    }
+
+    /**
+     * A key that is equal for queries that show the same nodes of the same model, with groups replaced by
+     * their labels.
+     */
+    public String getKey() {
+        JSONArray alternatives = new JSONArray();
+        for (List<Term> terms : expression) {
+            JSONArray and = new JSONArray();
+            for (Term term : terms) {
+                and.put(new JSONArray().put(term.negated).put(term.label)
+                        .put(term.labels != null ? new JSONArray(new TreeSet<String>(term.labels)) : null));
+            }
+            alternatives.put(and);
+        }
+        return new JSONArray().put(alternatives).put(includeSubtrees).put(includeParents).toString();
+    }
+
+    /**
+     * Whether the labels of a node satisfy the expression.
+     */
+    public boolean matches(List<String> labels) {
+        if (expression.isEmpty()) {
+            return true;
+        }
+        for (List<Term> terms : expression) {
+            boolean all = true;
+            for (Term term : terms) {
+                boolean found = term.labels != null ? !Collections.disjoint(term.labels, labels)
+                        : labels.contains(term.label);
+                if (found == term.negated) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the query over the nodes of the dictionary, which maps the ids of all nodes of the model to the
+     * nodes. The response is {@code {"nodes": [...], "matches": [...]}}: the shown nodes in the format and
+     * order of the model JSON, and the ids of the nodes that matched the expression.
+     */
+    public Result run(Map<String, ALLNodes> objDict, AssuranceGenerator a1, CancelIndicator cancelIndicator) {
+        Set<ALLNodes> matches = new HashSet<ALLNodes>();
+        for (ALLNodes node : objDict.values()) {
+            operationCanceledManager.checkCanceled(cancelIndicator);
+            EList<BaseNode> details = a1.getNodeDetails(node);
+            List<String> labels = details != null ? a1.dumpNodeLabels(details) : Collections.<String>emptyList();
+            if (matches(labels)) {
+                matches.add(node);
+            }
+        }
+        Set<ALLNodes> nodes = new HashSet<ALLNodes>(matches);
+        if (includeSubtrees && !expression.isEmpty()) {
+            addSubtrees(matches, nodes, objDict, a1);
+        }
+        if (includeParents && !expression.isEmpty()) {
+            addParents(matches, nodes, objDict, a1, cancelIndicator);
+        }
+
+        List<ALLNodes> sorted = sort(nodes, a1);
+        StringBuilder json = new StringBuilder("{\"nodes\":[");
+        for (int i = 0; i < sorted.size(); i++) {
+            operationCanceledManager.checkCanceled(cancelIndicator);
+            json.append(i > 0 ? "," : "").append(a1.generateNodeJSON(sorted.get(i)));
+        }
+        JSONArray ids = new JSONArray();
+        for (ALLNodes node : sort(matches, a1)) {
+            ids.put(a1.getNodeFQN(node));
+        }
+        json.append("],\"matches\":").append(ids).append('}');
+        return new Result(Collections.unmodifiableSet(nodes), json.toString());
+    }
+
+    private void addSubtrees(Set<ALLNodes> matches, Set<ALLNodes> nodes, Map<String, ALLNodes> objDict,
+            AssuranceGenerator a1) {
+        Set<ALLNodes> expanded = new HashSet<ALLNodes>();
+        Deque<ALLNodes> stack = new ArrayDeque<ALLNodes>(matches);
+        while (!stack.isEmpty()) {
+            ALLNodes node = stack.pop();
+            if (!expanded.add(node)) {
+                continue;
+            }
+            for (String id : a1.getNodeInContextOf(node)) {
+                ALLNodes context = objDict.get(id);
+                if (context != null) {
+                    nodes.add(context);
+                }
+            }
+            for (String id : a1.getNodeSolvedBy(node)) {
+                ALLNodes child = objDict.get(id);
+                if (child != null) {
+                    nodes.add(child);
+                    stack.push(child);
+                }
+            }
+        }
+    }
+
+    private void addParents(Set<ALLNodes> matches, Set<ALLNodes> nodes, Map<String, ALLNodes> objDict,
+            AssuranceGenerator a1, CancelIndicator cancelIndicator) {
+        Map<ALLNodes, List<ALLNodes>> solvedByParents = new HashMap<ALLNodes, List<ALLNodes>>();
+        Map<ALLNodes, List<ALLNodes>> contextParents = new HashMap<ALLNodes, List<ALLNodes>>();
+        for (ALLNodes node : objDict.values()) {
+            operationCanceledManager.checkCanceled(cancelIndicator);
+            addEdges(node, a1.getNodeSolvedBy(node), solvedByParents, objDict);
+            addEdges(node, a1.getNodeInContextOf(node), contextParents, objDict);
+        }
+        Set<ALLNodes> ascended = new HashSet<ALLNodes>();
+        Deque<ALLNodes> stack = new ArrayDeque<ALLNodes>();
+        for (ALLNodes match : matches) {
+            if (CONTEXT_TYPES.contains(a1.getNodeType(match))) {
+                for (ALLNodes parent : contextParents.getOrDefault(match, Collections.<ALLNodes>emptyList())) {
+                    nodes.add(parent);
+                    stack.push(parent);
+                }
+            } else {
+                stack.push(match);
+            }
+        }
+        while (!stack.isEmpty()) {
+            ALLNodes node = stack.pop();
+            if (!ascended.add(node)) {
+                continue;
+            }
+            for (ALLNodes parent : solvedByParents.getOrDefault(node, Collections.<ALLNodes>emptyList())) {
+                nodes.add(parent);
+                stack.push(parent);
+            }
+        }
+    }
+
+    private static void addEdges(ALLNodes parent, List<String> ids, Map<ALLNodes, List<ALLNodes>> parents,
+            Map<String, ALLNodes> objDict) {
+        for (String id : ids) {
+            ALLNodes child = objDict.get(id);
+            if (child != null) {
+                parents.computeIfAbsent(child, k -> new ArrayList<ALLNodes>(1)).add(parent);
+            }
+        }
+    }
+
+    private static List<ALLNodes> sort(Set<ALLNodes> nodes, AssuranceGenerator a1) {
+        Map<ALLNodes, String> ids = new HashMap<ALLNodes, String>();
+        for (ALLNodes node : nodes) {
+            ids.put(node, a1.getNodeFQN(node));
+        }
+        List<ALLNodes> sorted = new ArrayList<ALLNodes>(nodes);
+        sorted.sort((n1, n2) -> a1.compareNodeIds(ids.get(n1), ids.get(n2)));
+        return sorted;
+    }
+
+    /**
+     * The labels of every group, including the labels of its sub-groups, as in the view editor; {@code *}
+     * is the group of all labels.
+     */
+    static Map<String, Set<String>> resolveGroupMembers(JSONArray labelData) {
+        Map<String, Set<String>> groupToLabels = new LinkedHashMap<String, Set<String>>();
+        Set<String> universe = new LinkedHashSet<String>();
+        groupToLabels.put(UNIVERSE, universe);
+        Map<String, JSONObject> groups = new LinkedHashMap<String, JSONObject>();
+        for (int i = 0; labelData != null && i < labelData.length(); i++) {
+            JSONObject labelInfo = labelData.optJSONObject(i);
+            if (labelInfo == null) {
+                continue;
+            }
+            String name = labelInfo.optString("name");
+            if (labelInfo.optBoolean("isGroup")) {
+                groupToLabels.put(name, new LinkedHashSet<String>(members(labelInfo)));
+                groups.put(name, labelInfo);
+            } else {
+                universe.add(name);
+            }
+        }
+        for (JSONObject group : groups.values()) {
+            List<String> members = members(group);
+            Set<String> visited = new HashSet<String>();
+            String parent = group.optString("parent", null);
+            while (parent != null && visited.add(parent) && groupToLabels.containsKey(parent)) {
+                groupToLabels.get(parent).addAll(members);
+                JSONObject parentGroup = groups.get(parent);
+                parent = parentGroup != null ? parentGroup.optString("parent", null) : null;
+            }
+        }
+        return groupToLabels;
+    }
+
+    private static List<String> members(JSONObject group) {
+        List<String> members = new ArrayList<String>();
+        JSONArray array = group.optJSONArray("members");
+        for (int i = 0; array != null && i < array.length(); i++) {
+            members.add(array.optString(i));
+        }
+        return members;
+    }
+}
@@ -0,0 +1,372 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.eclipse.lsp4j.ClientCapabilities;
+import org.eclipse.lsp4j.DidChangeWatchedFilesParams;
+import org.eclipse.lsp4j.ExecuteCommandCapabilities;
+import org.eclipse.lsp4j.ExecuteCommandParams;
+import org.eclipse.lsp4j.FileChangeType;
+import org.eclipse.lsp4j.FileEvent;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.InitializedParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.WorkspaceClientCapabilities;
+import org.eclipse.lsp4j.WorkspaceFolder;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.eclipse.xtext.ide.server.LanguageServerImpl;
+import org.eclipse.xtext.ide.server.ServerModule;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.inject.Guice;
+
+/**
+ * Measures what the VS Code user waits for: the round trip of workspace/executeCommand through lsp4j,
+ * against a LanguageServerImpl with the Assurance language that runs in the same JVM and talks JSON-RPC
+ * over pipes.
+ *
+ * A scenario is a list of steps, each a command with its arguments (the model directory is filled in) and
+ * a repeat count; the string "${i}" in an argument is replaced by the repetition. Without a scenario
+ * file, a burst of GET_MODEL_JSON, of summary edits of one goal and of REVEAL_ORIGIN over the first nodes
+ * is run. The scenario runs on a copy of the model directory, once to warm up and once measured. Like the
+ * VS Code client, the harness reports the files written by MODEL_UPDATE to the server.
+ *
+ * The p50 and p99 latency and the response size of every command are printed and can be written to a
+ * baseline file. Given a baseline, the harness fails with exit code 1 if a command got slower or its
+ * responses got larger than the baseline by more than the tolerance (default 0.5, i.e. 50%).
+ *
+ * Usage: CommandLatencyBenchmark modelDir [--scenario file] [--repeat n] [--baseline file]
+ * [--write-baseline file] [--tolerance t]
+ */
+public class CommandLatencyBenchmark {
+
+    static class Step {
+
+        final String command;
+
+        final JSONObject arguments;
+
+        final int repeat;
+
+        Step(String command, JSONObject arguments, int repeat) {
+            this.command = command;
+            this.arguments = arguments;
+            this.repeat = repeat;
+        }
+    }
+
+    static class Stats {
+
+        final List<Long> times = new ArrayList<Long>();
+
+        final List<Integer> sizes = new ArrayList<Integer>();
+
+        double percentile(double p) {
+            List<Long> sorted = new ArrayList<Long>(times);
+            Collections.sort(sorted);
+            int rank = (int) Math.ceil(p * sorted.size());
+            return sorted.get(Math.max(0, rank - 1)) / 1e6;
+        }
+
+        double meanSize() {
+            long sum = 0;
+            for (int size : sizes) {
+                sum += size;
+            }
+            return sizes.isEmpty() ? 0 : (double) sum / sizes.size();
+        }
+    }
+
+    /**
+     * The client side of the connection, which ignores everything the server sends on its own.
+     */
+    static class BenchmarkClient implements LanguageClient {
+
+        @Override
+        public void telemetryEvent(Object object) {
+        }
+
+        @Override
+        public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+        }
+
+        @Override
+        public void showMessage(MessageParams messageParams) {
+        }
+
+        @Override
+        public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void logMessage(MessageParams message) {
+        }
+    }
+
+    private final File modelDir;
+
+    private LanguageServer server;
+
+    CommandLatencyBenchmark(File modelDir) {
+        this.modelDir = modelDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: CommandLatencyBenchmark modelDir [--scenario file] [--repeat n] "
+                    + "[--baseline file] [--write-baseline file] [--tolerance t]");
+            System.exit(2);
+        }
+        Map<String, String> options = new HashMap<String, String>();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        int repeat = Integer.parseInt(options.getOrDefault("--repeat", "20"));
+        double tolerance = Double.parseDouble(options.getOrDefault("--tolerance", "0.5"));
+
+        Path copy = Files.createTempDirectory("gsn-latency-");
+        copyDirectory(new File(args[0]).getAbsoluteFile().toPath(), copy);
+        int status = 2;
+        try {
+            CommandLatencyBenchmark benchmark = new CommandLatencyBenchmark(copy.toFile());
+            benchmark.start();
+            List<Step> steps = options.containsKey("--scenario")
+                    ? readScenario(new File(options.get("--scenario")))
+                    : benchmark.defaultScenario(repeat);
+
+            benchmark.run(steps);
+            Map<String, Stats> stats = benchmark.run(steps);
+            report(stats);
+
+            if (options.containsKey("--write-baseline")) {
+                writeBaseline(stats, new File(options.get("--write-baseline")));
+            }
+            status = 0;
+            if (options.containsKey("--baseline")) {
+                status = compare(stats, new File(options.get("--baseline")), tolerance) ? 0 : 1;
+            }
+        } finally {
+            deleteDirectory(copy);
+            // the lsp4j threads would keep the JVM alive
+            System.exit(status);
+        }
+    }
+
+    void start() throws Exception {
+        Pipe toServer = Pipe.open();
+        Pipe toClient = Pipe.open();
+        LanguageServerImpl languageServer = Guice.createInjector(new ServerModule())
+                .getInstance(LanguageServerImpl.class);
+        Launcher<LanguageClient> serverLauncher = Launcher.createLauncher(languageServer, LanguageClient.class,
+                Channels.newInputStream(toServer.source()), Channels.newOutputStream(toClient.sink()));
+        languageServer.connect(serverLauncher.getRemoteProxy());
+        serverLauncher.startListening();
+
+        Launcher<LanguageServer> clientLauncher = LSPLauncher.createClientLauncher(new BenchmarkClient(),
+                Channels.newInputStream(toClient.source()), Channels.newOutputStream(toServer.sink()));
+        clientLauncher.startListening();
+        server = clientLauncher.getRemoteProxy();
+
+        String rootUri = modelDir.toURI().toString();
+        InitializeParams params = new InitializeParams();
+        params.setWorkspaceFolders(Collections.singletonList(new WorkspaceFolder(rootUri, modelDir.getName())));
+        WorkspaceClientCapabilities workspace = new WorkspaceClientCapabilities();
+        workspace.setExecuteCommand(new ExecuteCommandCapabilities(false));
+        ClientCapabilities capabilities = new ClientCapabilities();
+        capabilities.setWorkspace(workspace);
+        params.setCapabilities(capabilities);
+        server.initialize(params).get(5, TimeUnit.MINUTES);
+        server.initialized(new InitializedParams());
+    }
+
+    /**
+     * A burst of each command the graph view sends, on nodes taken from the model.
+     */
+    List<Step> defaultScenario(int repeat) throws Exception {
+        JSONArray nodes = new JSONArray(toText(execute("gsn.GET_MODEL_JSON", new JSONObject())));
+        String goal = null;
+        for (int i = 0; i < nodes.length() && goal == null; i++) {
+            if ("Goal".equals(nodes.getJSONObject(i).getString("type"))) {
+                goal = nodes.getJSONObject(i).getString("id");
+            }
+        }
+        List<Step> steps = new ArrayList<Step>();
+        steps.add(new Step("gsn.GET_MODEL_JSON", new JSONObject(), repeat));
+        if (goal != null) {
+            JSONObject edit = new JSONObject().put("cmd", "onAttributeChange").put("nodeId", goal)
+                    .put("attr", "summary").put("newValue", "Edited by the latency benchmark ${i}");
+            steps.add(new Step("gsn.MODEL_UPDATE", new JSONObject().put("commandList", new JSONArray().put(edit)),
+                    repeat));
+        }
+        for (int i = 0; i < Math.min(repeat, nodes.length()); i++) {
+            steps.add(new Step("gsn.REVEAL_ORIGIN",
+                    new JSONObject().put("nodeId", nodes.getJSONObject(i).getString("id")), 1));
+        }
+        return steps;
+    }
+
+    Map<String, Stats> run(List<Step> steps) throws Exception {
+        Map<String, Stats> stats = new LinkedHashMap<String, Stats>();
+        for (Step step : steps) {
+            for (int i = 0; i < step.repeat; i++) {
+                JSONObject arguments = new JSONObject(step.arguments.toString().replace("${i}", String.valueOf(i)));
+                Map<Path, Long> stamps = step.command.equals("gsn.MODEL_UPDATE") ? getStamps() : null;
+
+                long start = System.nanoTime();
+                Object result = execute(step.command, arguments);
+                long elapsed = System.nanoTime() - start;
+
+                Stats s = stats.computeIfAbsent(step.command, k -> new Stats());
+                s.times.add(elapsed);
+                s.sizes.add(result != null ? result.toString().getBytes(StandardCharsets.UTF_8).length : 0);
+                if (stamps != null) {
+                    notifyChangedFiles(stamps);
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Sends the arguments as a JSON object, as postCommandToLSP of the extension does.
+     */
+    private Object execute(String command, JSONObject arguments) throws Exception {
+        arguments.put("modelDir", modelDir.getPath());
+        ExecuteCommandParams params = new ExecuteCommandParams(command,
+                Collections.<Object>singletonList(JsonParser.parseString(arguments.toString())));
+        return server.getWorkspaceService().executeCommand(params).get(5, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Returns the string a command answered with, which arrives as a JSON string.
+     */
+    private static String toText(Object result) {
+        return result instanceof JsonPrimitive ? ((JsonPrimitive) result).getAsString() : String.valueOf(result);
+    }
+
+    private Map<Path, Long> getStamps() throws IOException {
+        Map<Path, Long> stamps = new HashMap<Path, Long>();
+        for (File file : ModelWorkspace.listModelFiles(modelDir)) {
+            stamps.put(file.toPath(), file.lastModified() ^ file.length());
+        }
+        return stamps;
+    }
+
+    private void notifyChangedFiles(Map<Path, Long> before) throws IOException {
+        List<FileEvent> events = new ArrayList<FileEvent>();
+        for (Map.Entry<Path, Long> e : getStamps().entrySet()) {
+            if (!e.getValue().equals(before.get(e.getKey()))) {
+                events.add(new FileEvent(e.getKey().toUri().toString(), FileChangeType.Changed));
+            }
+        }
+        if (!events.isEmpty()) {
+            server.getWorkspaceService().didChangeWatchedFiles(new DidChangeWatchedFilesParams(events));
+        }
+    }
+
+    static List<Step> readScenario(File file) throws IOException {
+        JSONArray array = new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8))
+                .getJSONArray("steps");
+        List<Step> steps = new ArrayList<Step>();
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject step = array.getJSONObject(i);
+            steps.add(new Step(step.getString("command"), step.optJSONObject("arguments") != null
+                    ? step.getJSONObject("arguments") : new JSONObject(), step.optInt("repeat", 1)));
+        }
+        return steps;
+    }
+
+    static void report(Map<String, Stats> stats) {
+        System.out.println(String.format("%-22s %6s %10s %10s %10s %12s", "command", "count", "p50[ms]", "p99[ms]",
+                "max[ms]", "size[bytes]"));
+        for (Map.Entry<String, Stats> e : stats.entrySet()) {
+            Stats s = e.getValue();
+            System.out.println(String.format("%-22s %6d %10.2f %10.2f %10.2f %12.0f", e.getKey(), s.times.size(),
+                    s.percentile(0.5), s.percentile(0.99), s.percentile(1.0), s.meanSize()));
+        }
+    }
+
+    static void writeBaseline(Map<String, Stats> stats, File file) throws IOException {
+        JSONObject baseline = new JSONObject();
+        for (Map.Entry<String, Stats> e : stats.entrySet()) {
+            Stats s = e.getValue();
+            baseline.put(e.getKey(), new JSONObject().put("p50", s.percentile(0.5)).put("p99", s.percentile(0.99))
+                    .put("size", s.meanSize()));
+        }
+        Files.write(file.toPath(), baseline.toString(4).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns false and prints the regressions if any command is slower or answers with more data than
+     * the baseline allows.
+     */
+    static boolean compare(Map<String, Stats> stats, File file, double tolerance) throws IOException {
+        JSONObject baseline = new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        boolean ok = true;
+        for (Map.Entry<String, Stats> e : stats.entrySet()) {
+            JSONObject base = baseline.optJSONObject(e.getKey());
+            if (base == null) {
+                continue;
+            }
+            Stats s = e.getValue();
+            ok &= check(e.getKey() + " p50", s.percentile(0.5), base.getDouble("p50"), tolerance);
+            ok &= check(e.getKey() + " p99", s.percentile(0.99), base.getDouble("p99"), tolerance);
+            ok &= check(e.getKey() + " size", s.meanSize(), base.getDouble("size"), tolerance);
+        }
+        System.out.println(ok ? "no regression against " + file : "regression against " + file);
+        return ok;
+    }
+
+    private static boolean check(String name, double value, double base, double tolerance) {
+        if (value > base * (1 + tolerance)) {
+            System.out.println(String.format("  %s: %.2f, baseline %.2f", name, value, base));
+            return false;
+        }
+        return true;
+    }
+
+    private static void copyDirectory(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path p : (Iterable<Path>) paths::iterator) {
+                Path t = target.resolve(source.relativize(p).toString());
+                if (Files.isDirectory(p)) {
+                    Files.createDirectories(t);
+                } else {
+                    Files.copy(p, t);
+                }
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
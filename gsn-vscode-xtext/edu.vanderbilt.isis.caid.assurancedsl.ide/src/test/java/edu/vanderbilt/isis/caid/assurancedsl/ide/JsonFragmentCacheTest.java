@@ -0,0 +1,36 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.resource.XtextResource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class JsonFragmentCacheTest {
+
+    @Test
+    public void editsOfAnOpenDocumentAreGenerated() throws Exception {
+        String text = "GOALS a\n{\n    goal A\n    {\n        uuid:\"7d1c2c6e-3f1b-4a55-9c1e-6b0f3d2a9e01\";\n"
+                + "        summary:'''Goal A''';\n    }\n}\n";
+        ResourceSet rs = TestCommands.getCommandService().getResourceSet();
+        XtextResource r = (XtextResource) rs.createResource(URI.createFileURI("/models/a.gsn"));
+        r.load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), Collections.emptyMap());
+        // Like the documents of the language server, the resource does not track modifications.
+        Assertions.assertFalse(r.isTrackingModification());
+
+        JsonFragmentCache cache = new JsonFragmentCache();
+        String before = GeneratedNode.toJSON(cache.generate(Arrays.asList(r), TestCommands.getGenerator()));
+        Assertions.assertTrue(before.contains("Goal A"), before);
+
+        // An edit of the document reparses the changed region in place.
+        r.update(text.indexOf("Goal A") + 5, 1, "B");
+        String after = GeneratedNode.toJSON(cache.generate(Arrays.asList(r), TestCommands.getGenerator()));
+        Assertions.assertTrue(after.contains("Goal B"), after);
+        Assertions.assertEquals(2, cache.getMisses());
+    }
+}
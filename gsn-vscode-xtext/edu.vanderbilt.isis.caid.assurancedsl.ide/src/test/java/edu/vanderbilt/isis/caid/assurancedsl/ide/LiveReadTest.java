@@ -0,0 +1,142 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import static edu.vanderbilt.isis.caid.assurancedsl.ide.TestCommands.execute;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.InitializeResult;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.xtext.ide.server.ILanguageServerAccess;
+import org.eclipse.xtext.ide.server.UriExtensions;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LiveReadTest {
+
+    /**
+     * The workspace of a language server that has loaded the model files into one resource set.
+     */
+    private static class Workspace implements ILanguageServerAccess {
+
+        final ResourceSet resourceSet = TestCommands.getCommandService().getResourceSet();
+
+        final UriExtensions uriExtensions = new UriExtensions();
+
+        void load(File dir) {
+            for (File file : ModelWorkspace.listModelFiles(dir)) {
+                resourceSet.getResource(getUri(file), true);
+            }
+        }
+
+        /**
+         * The URI of the file as the language server writes it.
+         */
+        URI getUri(File file) {
+            return uriExtensions.toUri(uriExtensions.toUriString(URI.createFileURI(file.getPath())));
+        }
+
+        @Override
+        public <T> CompletableFuture<T> doRead(String uri, Function<Context, T> function) {
+            return CompletableFuture.completedFuture(doSyncRead(uri, function));
+        }
+
+        @Override
+        public <T> T doSyncRead(String uri, Function<Context, T> function) {
+            Resource resource = resourceSet.getResource(uriExtensions.toUri(uri), false);
+            if (resource == null) {
+                throw new IllegalArgumentException("No project for " + uri);
+            }
+            return function.apply(new Context(resource, null, false, CancelIndicator.NullImpl));
+        }
+
+        @Override
+        public <T> CompletableFuture<T> doReadIndex(Function<? super IndexContext, ? extends T> function) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addBuildListener(IBuildListener listener) {
+        }
+
+        @Override
+        public LanguageClient getLanguageClient() {
+            return null;
+        }
+
+        @Override
+        public ResourceSet newLiveScopeResourceSet(URI uri) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InitializeParams getInitializeParams() {
+            return null;
+        }
+
+        @Override
+        public InitializeResult getInitializeResult() {
+            return null;
+        }
+    }
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void readsFollowTheWritesOfTheServer() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 2, 2);
+        Workspace server = new Workspace();
+        server.load(dir);
+
+        // An unsaved edit in the language server is read from there.
+        XtextResource m1 = (XtextResource) server.resourceSet.getResource(server.getUri(new File(dir, "m1.gsn")),
+                false);
+        String text = m1.getParseResult().getRootNode().getText();
+        int g0 = text.indexOf("goal G0") + "goal ".length();
+        m1.update(g0, 2, "Unsaved");
+        Assertions.assertTrue(getModel(dir, server).contains("m1/Root/Decompose/Unsaved"));
+        m1.update(g0, "Unsaved".length(), "G0");
+
+        // The language server has not seen the rename on disk yet, so the workspace answers.
+        JSONObject rename = new JSONObject().put("cmd", "onAttributeChange").put("nodeId", "m0/Root/Decompose/G0")
+                .put("attr", "name").put("newValue", "Renamed");
+        execute(dir, "gsn.MODEL_UPDATE", new JSONObject().put("commandList", new JSONArray().put(rename)));
+        long live = getLiveCount(dir);
+        String model = getModel(dir, server);
+        Assertions.assertTrue(model.contains("m0/Root/Decompose/Renamed"), model);
+        Assertions.assertEquals(live, getLiveCount(dir));
+        String origin = execute(dir, "gsn.REVEAL_ORIGIN",
+                new JSONObject().put("nodeId", "m0/Root/Decompose/Renamed"), server);
+        Assertions.assertTrue(origin.contains("m0.gsn"), origin);
+
+        // Once it has reloaded the written files, reads are served by the language server again.
+        for (Resource r : server.resourceSet.getResources()) {
+            r.unload();
+            r.load(null);
+        }
+        Assertions.assertEquals(model, getModel(dir, server));
+        Assertions.assertEquals(live + 1, getLiveCount(dir));
+    }
+
+    private static String getModel(File dir, Workspace server) {
+        return execute(dir, "gsn.GET_MODEL_JSON", new JSONObject(), server);
+    }
+
+    private static long getLiveCount(File dir) {
+        JSONObject metrics = new JSONObject(execute(dir, "gsn.GET_METRICS", new JSONObject()));
+        return metrics.getJSONObject("counters").optLong("commands.gsn.GET_MODEL_JSON.live");
+    }
+}
@@ -0,0 +1,48 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ModelSnapshotTest {
+
+    @Test
+    public void deltasFollowTheClientVersion() {
+        ModelSnapshot snapshot = new ModelSnapshot();
+        JSONObject first = new JSONObject(snapshot.delta(model("A", "1"), null));
+        Assertions.assertTrue(first.getBoolean("reset"));
+        long version = first.getLong("version");
+
+        JSONObject next = new JSONObject(snapshot.delta(model("A", "2"), version));
+        Assertions.assertFalse(next.has("reset"));
+        Assertions.assertEquals(version, next.getLong("baseVersion"));
+        Assertions.assertEquals(1, next.getJSONArray("changed").length());
+        Assertions.assertEquals("2", next.getJSONArray("changed").getJSONObject(0).getString("summary"));
+        Assertions.assertEquals(version + 1, next.getLong("version"));
+    }
+
+    @Test
+    public void fullResponseToAnotherClientResetsTheNextDelta() {
+        ModelSnapshot snapshot = new ModelSnapshot();
+        long version = new JSONObject(snapshot.delta(model("A", "1"), null)).getLong("version");
+
+        // A second caller of the same directory, e.g. another webview, gets the model in full.
+        long other = snapshot.update(model("A", "2"));
+        Assertions.assertNotEquals(version, other);
+        Assertions.assertEquals(other, snapshot.getVersion());
+
+        // The first client never saw that model, so it gets all nodes rather than a delta against it.
+        JSONObject next = new JSONObject(snapshot.delta(model("A", "3"), version));
+        Assertions.assertTrue(next.getBoolean("reset"));
+        Assertions.assertEquals("3", next.getJSONArray("nodes").getJSONObject(0).getString("summary"));
+        Assertions.assertEquals(other + 1, next.getLong("version"));
+    }
+
+    private static List<GeneratedNode> model(String id, String summary) {
+        String json = new JSONObject().put("id", id).put("uuid", "u" + id).put("summary", summary).toString();
+        return Arrays.asList(new GeneratedNode(id, "u" + id, json));
+    }
+}
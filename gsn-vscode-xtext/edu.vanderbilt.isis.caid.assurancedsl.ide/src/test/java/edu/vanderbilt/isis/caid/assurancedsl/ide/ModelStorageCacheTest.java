@@ -0,0 +1,80 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.generator.IGenerator2;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.inject.Injector;
+
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+
+public class ModelStorageCacheTest {
+
+    private static CommandService commandService;
+
+    private static AssuranceGenerator generator;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    public static void setup() {
+        Injector injector = new AssuranceIdeSetup().createInjectorAndDoEMFRegistration();
+        commandService = injector.getInstance(CommandService.class);
+        generator = (AssuranceGenerator) injector.getInstance(IGenerator2.class);
+    }
+
+    @Test
+    public void restoredModelMatchesParsedModel() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 20, 10);
+        int files = ModelWorkspace.listModelFiles(dir).size();
+
+        ModelWorkspace parsed = newWorkspace(dir, false);
+        String expected = toJSON(parsed);
+        parsed.invalidate();
+
+        ModelWorkspace first = newWorkspace(dir, true);
+        Assertions.assertEquals(expected, toJSON(first));
+        Assertions.assertEquals(files, first.getParsedCount());
+        first.storeSnapshots();
+        first.invalidate();
+
+        ModelWorkspace restored = newWorkspace(dir, true);
+        Assertions.assertEquals(expected, toJSON(restored));
+        Assertions.assertEquals(files, restored.getRestoredCount());
+        Assertions.assertEquals(0, restored.getParsedCount());
+        restored.invalidate();
+
+        // A changed file is parsed again; the files referring to it are restored and re-linked.
+        File changed = ModelWorkspace.listModelFiles(dir).get(0);
+        Files.write(changed.toPath(), "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        ModelWorkspace partly = newWorkspace(dir, true);
+        Assertions.assertEquals(expected, toJSON(partly));
+        Assertions.assertEquals(files - 1, partly.getRestoredCount());
+        Assertions.assertEquals(1, partly.getParsedCount());
+        partly.invalidate();
+    }
+
+    private static ModelWorkspace newWorkspace(File dir, boolean cached) {
+        ParallelResourceLoader loader = new ParallelResourceLoader(commandService::getResourceSet);
+        return new ModelWorkspace(dir, commandService::getResourceSet, loader,
+                cached ? ModelStorageCache.forDirectory(dir) : null);
+    }
+
+    private static String toJSON(ModelWorkspace workspace) throws Exception {
+        List<Resource> resources = workspace.refresh();
+        return GeneratedNode
+                .toJSON(commandService.generateJSONOutput(resources, generator, workspace.getResourceSet()));
+    }
+}
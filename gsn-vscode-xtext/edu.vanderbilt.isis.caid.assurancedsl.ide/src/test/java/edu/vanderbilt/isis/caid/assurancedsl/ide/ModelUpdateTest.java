@@ -0,0 +1,103 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import static edu.vanderbilt.isis.caid.assurancedsl.ide.TestCommands.execute;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+
+public class ModelUpdateTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void failedCommandRollsBackTheBatch() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 3, 2);
+        String model = execute(dir, "gsn.GET_MODEL_JSON", new JSONObject());
+        Map<String, String> files = readFiles(dir);
+        Map<String, ALLNodes> objDict = getObjectDict(dir);
+
+        // The rename and the summary edit succeed, the third command does not find its node.
+        JSONArray commandList = new JSONArray()
+                .put(change("m0/Root/Decompose/G0", "name", "Renamed"))
+                .put(change("m0/Root/Decompose/Renamed/Sn0", "summary", "Edited summary"))
+                .put(change("m0/Missing", "summary", "Not applied"));
+        String result = execute(dir, "gsn.MODEL_UPDATE", new JSONObject().put("commandList", commandList));
+        Assertions.assertTrue(result.startsWith("Node not found"), result);
+
+        Assertions.assertEquals(model, execute(dir, "gsn.GET_MODEL_JSON", new JSONObject()));
+        Assertions.assertEquals(objDict, getObjectDict(dir));
+        Assertions.assertEquals(files, readFiles(dir));
+        for (Resource r : TestCommands.getCommandService().getModelWorkspace(dir.getPath()).getResourceSet()
+                .getResources()) {
+            Assertions.assertFalse(r.isModified(), r.getURI().toString());
+        }
+
+        // The same batch without the failing command applies as a whole.
+        commandList.remove(2);
+        JSONArray updated = new JSONArray(
+                execute(dir, "gsn.MODEL_UPDATE", new JSONObject().put("commandList", commandList)));
+        Assertions.assertTrue(TestCommands.ids(updated).contains("m0/Root/Decompose/Renamed/Sn0"));
+        Assertions.assertFalse(TestCommands.ids(updated).contains("m0/Root/Decompose/G0"));
+        Assertions.assertTrue(readFiles(dir).get("m0.gsn").contains("Edited summary"));
+    }
+
+    @Test
+    public void attributeChangeKeepsTheRestOfTheFile() throws Exception {
+        File dir = tempDir.toFile();
+        File file = new File(dir, "a.gsn");
+        String text = "// Hand-written, with comments and its own layout.\n"
+                + "GOALS a {\n"
+                + "  goal A { uuid:\"7d1c2c6e-3f1b-4a55-9c1e-6b0f3d2a9e01\";\n"
+                + "      summary:'''Old summary''';   /* kept */\n"
+                + "    solvedBy: solution Sn\n"
+                + "    {\n"
+                + "\tuuid:\"0b4d5f0e-8a61-4c3b-9d1a-2f7e6c5b4a39\"; // trailing comment\n"
+                + "\tsummary:'''Evidence''';\n"
+                + "    }\n"
+                + "  }\n"
+                + "}\n";
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        execute(dir, "gsn.GET_MODEL_JSON", new JSONObject());
+
+        JSONArray commandList = new JSONArray().put(change("a/A", "summary", "New summary"));
+        execute(dir, "gsn.MODEL_UPDATE", new JSONObject().put("commandList", commandList));
+        Assertions.assertEquals(text.replace("Old summary", "New summary"), readFiles(dir).get("a.gsn"));
+    }
+
+    private static JSONObject change(String nodeId, String attr, String newValue) {
+        return new JSONObject().put("cmd", "onAttributeChange").put("nodeId", nodeId).put("attr", attr)
+                .put("newValue", newValue);
+    }
+
+    private static Map<String, ALLNodes> getObjectDict(File dir) throws Exception {
+        CommandService commandService = TestCommands.getCommandService();
+        ModelWorkspace workspace = commandService.getModelWorkspace(dir.getPath());
+        synchronized (workspace) {
+            return new HashMap<String, ALLNodes>(
+                    commandService.generateObjectDict(workspace.refresh(), TestCommands.getGenerator()));
+        }
+    }
+
+    private static Map<String, String> readFiles(File dir) throws Exception {
+        Map<String, String> files = new HashMap<String, String>();
+        for (File file : ModelWorkspace.listModelFiles(dir)) {
+            files.put(file.getName(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,132 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import static edu.vanderbilt.isis.caid.assurancedsl.ide.TestCommands.execute;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ModelWorkspaceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void readsLeaveTheWorkspaceUnchanged() throws Exception {
+        File dir = tempDir.toFile();
+        File edited = new File(dir, "a.gsn");
+        File other = new File(dir, "b.gsn");
+        write(edited, "GOALS a\n{\n    goal A\n    {\n        uuid:\"7d1c2c6e-3f1b-4a55-9c1e-6b0f3d2a9e01\";\n"
+                + "        summary:'''Goal A''';\n    }\n}\n");
+        // Without its uuid, which the grammar requires, as while the file is being typed.
+        write(other, "GOALS b\n{\n    goal B\n    {\n        summary:'''Goal B''';\n    }\n}\n");
+        String otherText = read(other);
+
+        JSONArray model = new JSONArray(execute(dir, "gsn.GET_MODEL_JSON", new JSONObject()));
+        Assertions.assertEquals(2, model.length());
+        Assertions.assertEquals("", model.getJSONObject(1).getString("uuid"));
+        ModelWorkspace workspace = TestCommands.getCommandService().getModelWorkspace(dir.getPath());
+        for (Resource r : workspace.getResourceSet().getResources()) {
+            Assertions.assertFalse(r.isModified(), r.getURI().toString());
+        }
+
+        // Only the edited file is written, and only the new node gets a uuid.
+        JSONObject add = new JSONObject().put("cmd", "onNewChildNode").put("nodeId", "a/A")
+                .put("childType", "Solution").put("childName", "Sn");
+        JSONArray updated = new JSONArray(execute(dir, "gsn.MODEL_UPDATE",
+                new JSONObject().put("commandList", new JSONArray().put(add))));
+        Assertions.assertEquals("a/A/Sn", updated.getJSONObject(1).getString("id"));
+        String uuid = updated.getJSONObject(1).getString("uuid");
+        Assertions.assertFalse(uuid.isEmpty());
+        Assertions.assertTrue(read(edited).contains(uuid));
+        Assertions.assertEquals(otherText, read(other));
+        Assertions.assertEquals("", updated.getJSONObject(2).getString("uuid"));
+    }
+
+    @Test
+    public void watcherOnlyMarksChangedFiles() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 3, 2);
+        CommandService commandService = TestCommands.getCommandService();
+        ModelWorkspace workspace = new ModelWorkspace(dir, commandService::getResourceSet,
+                new ParallelResourceLoader(commandService::getResourceSet));
+        workspace.refresh();
+        long parsed = workspace.getParsedCount();
+
+        BlockingQueue<Set<URI>> changes = new LinkedBlockingQueue<Set<URI>>();
+        try (ModelDirectoryWatcher watcher = new ModelDirectoryWatcher(
+                (directory, files, overflow) -> changes.add(workspace.markChanged(overflow ? null : files)), 50)) {
+            Assertions.assertTrue(watcher.watch(dir));
+            File saved = new File(dir, "m0.gsn");
+            File edited = new File(dir, "m1.gsn");
+            File touched = new File(dir, "ctx.gsn");
+            File deleted = new File(dir, "m2.gsn");
+            workspace.markSaved(URI.createFileURI(saved.getPath()));
+            write(saved, read(saved).replace("goal G0", "goal Saved"));
+            write(edited, read(edited).replace("goal G0", "goal Edited"));
+            write(touched, read(touched));
+            Files.delete(deleted.toPath());
+
+            Set<URI> reported = new HashSet<URI>();
+            while (!reported.contains(URI.createFileURI(deleted.getPath()))) {
+                Set<URI> next = changes.poll(10, TimeUnit.SECONDS);
+                Assertions.assertNotNull(next, "no change reported for " + reported);
+                reported.addAll(next);
+            }
+            Assertions.assertEquals(new HashSet<URI>(Arrays.asList(URI.createFileURI(edited.getPath()),
+                    URI.createFileURI(deleted.getPath()))), reported);
+            Assertions.assertEquals(parsed, workspace.getParsedCount());
+        }
+
+        // The next refresh parses what changed.
+        List<Resource> resources = workspace.refresh();
+        Assertions.assertEquals(3, resources.size());
+        Assertions.assertEquals(parsed + 2, workspace.getParsedCount());
+        workspace.invalidate();
+    }
+
+    @Test
+    public void invalidateForgetsTheWrites() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 2, 1);
+        CommandService commandService = TestCommands.getCommandService();
+        ModelWorkspace workspace = new ModelWorkspace(dir, commandService::getResourceSet,
+                new ParallelResourceLoader(commandService::getResourceSet));
+        workspace.refresh();
+        File file = new File(dir, "m0.gsn");
+        URI uri = URI.createFileURI(file.getPath());
+        workspace.markSaved(uri);
+        Assertions.assertTrue(workspace.markChanged(Collections.singleton(file)).isEmpty());
+
+        // After an invalidate, a change can no longer be told apart from the write.
+        workspace.invalidate();
+        Assertions.assertEquals(Collections.singleton(uri), workspace.markChanged(Collections.singleton(file)));
+        Assertions.assertEquals(3, workspace.refresh().size());
+        workspace.invalidate();
+    }
+
+    private static void write(File file, String text) throws Exception {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,114 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import static edu.vanderbilt.isis.caid.assurancedsl.ide.TestCommands.execute;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.nodemodel.ICompositeNode;
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+
+public class NodeLocationIndexTest {
+
+    private static CommandService commandService;
+
+    private static AssuranceGenerator generator;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    public static void setup() {
+        commandService = TestCommands.getCommandService();
+        generator = TestCommands.getGenerator();
+    }
+
+    @Test
+    public void locationsAreRestoredWithoutParsing() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 20, 10);
+
+        ModelWorkspace loaded = newWorkspace(dir);
+        List<Resource> resources = loaded.refresh();
+        Map<String, String> expected = new HashMap<String, String>();
+        for (Map.Entry<String, ALLNodes> e : commandService.generateObjectDict(resources, generator).entrySet()) {
+            ICompositeNode node = NodeModelUtils.getNode(e.getValue());
+            expected.put(e.getKey(), e.getValue().eResource().getURI() + ":" + node.getStartLine());
+        }
+        Assertions.assertFalse(expected.isEmpty());
+        Assertions.assertTrue(loaded.updateLocations());
+        Assertions.assertEquals(expected, locate(loaded, expected));
+        loaded.storeSnapshots();
+        loaded.invalidate();
+
+        ModelWorkspace cold = newWorkspace(dir);
+        Assertions.assertTrue(cold.updateLocations());
+        Assertions.assertEquals(expected, locate(cold, expected));
+        Assertions.assertEquals(0, cold.getParsedCount());
+        Assertions.assertEquals(0, cold.getRestoredCount());
+
+        // A changed file has to be loaded before its locations are known again.
+        File changed = ModelWorkspace.listModelFiles(dir).get(0);
+        Files.write(changed.toPath(), "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Assertions.assertFalse(cold.updateLocations());
+        cold.refresh();
+        Assertions.assertTrue(cold.updateLocations());
+        Assertions.assertEquals(expected, locate(cold, expected));
+        cold.invalidate();
+    }
+
+    @Test
+    public void nodesChangedInMemoryAreFoundInTheModel() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 2, 2);
+        JSONObject expected = new JSONObject(
+                execute(dir, "gsn.REVEAL_ORIGIN", new JSONObject().put("nodeId", "m0/Root/Decompose/G1")));
+
+        // The files are unchanged, so the index is complete, but it does not know the new uuid.
+        ModelWorkspace workspace = commandService.getModelWorkspace(dir.getPath());
+        synchronized (workspace) {
+            ALLNodes node = commandService.generateObjectDict(workspace.refresh(), generator)
+                    .get("m0/Root/Decompose/G1");
+            generator.getNodeDetails(node).get(0).getUuid().setInfo("changed-in-memory");
+            Assertions.assertTrue(workspace.updateLocations());
+        }
+        JSONObject position = new JSONObject(
+                execute(dir, "gsn.REVEAL_ORIGIN", new JSONObject().put("uuid", "changed-in-memory")));
+        Assertions.assertEquals(expected.getString("filePath"), position.getString("filePath"));
+        Assertions.assertEquals(expected.getInt("lineNumber"), position.getInt("lineNumber"));
+        workspace.invalidate();
+    }
+
+    private static Map<String, String> locate(ModelWorkspace workspace, Map<String, String> ids) {
+        Map<String, String> result = new HashMap<String, String>();
+        for (String id : ids.keySet()) {
+            NodeLocationIndex.Location location = workspace.getLocations().find(id);
+            if (location != null) {
+                result.put(id, location.file + ":" + location.line);
+            }
+        }
+        return result;
+    }
+
+    private static ModelWorkspace newWorkspace(File dir) {
+        ParallelResourceLoader loader = new ParallelResourceLoader(commandService::getResourceSet);
+        ModelStorageCache storage = ModelStorageCache.forDirectory(dir);
+        return new ModelWorkspace(dir, commandService::getResourceSet, loader, storage,
+                new NodeLocationIndex(storage, generator));
+    }
+}
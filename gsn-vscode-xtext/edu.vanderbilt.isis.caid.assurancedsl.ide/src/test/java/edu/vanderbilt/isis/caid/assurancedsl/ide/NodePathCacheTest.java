@@ -0,0 +1,115 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.NodePathCache;
+
+public class NodePathCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final CommandService commandService = TestCommands.getCommandService();
+
+    private final AssuranceGenerator generator = TestCommands.getGenerator();
+
+    private ModelWorkspace workspace;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        SyntheticModels.write(tempDir.toFile(), 3, 2);
+        workspace = new ModelWorkspace(tempDir.toFile(), commandService::getResourceSet,
+                new ParallelResourceLoader(commandService::getResourceSet));
+    }
+
+    @Test
+    public void renameEvictsTheSubtree() throws Exception {
+        List<Resource> resources = workspace.refresh();
+        NodePathCache cache = NodePathCache.find(workspace.getResourceSet());
+        Map<String, ALLNodes> objDict = commandService.generateObjectDict(resources, generator);
+        Assertions.assertTrue(cache.isDictionary(objDict));
+        ALLNodes strategy = objDict.get("m0/Root/Decompose");
+        ALLNodes solution = objDict.get("m0/Root/Decompose/G1/Sn1");
+
+        strategy.eSet(strategy.eClass().getEStructuralFeature("name"), "Split");
+        long misses = cache.getMisses();
+        Assertions.assertSame(objDict, generator.getObjectDictionary(cache));
+        // The strategy, its two goals and their solutions get new paths, nothing else.
+        Assertions.assertEquals(misses + 5, cache.getMisses());
+        Assertions.assertSame(solution, objDict.get("m0/Root/Split/G1/Sn1"));
+        Assertions.assertEquals("m0/Root/Split/G1/Sn1", generator.getNodeFQN(solution));
+        Assertions.assertFalse(objDict.containsKey("m0/Root/Decompose"));
+        Assertions.assertFalse(objDict.containsKey("m0/Root/Decompose/G1/Sn1"));
+        Assertions.assertEquals(uncached(resources).keySet(), objDict.keySet());
+        workspace.invalidate();
+    }
+
+    @Test
+    public void followsResourcesLeavingAndJoiningTheResourceSet() throws Exception {
+        List<Resource> resources = workspace.refresh();
+        ResourceSet resourceSet = workspace.getResourceSet();
+        Map<String, ALLNodes> objDict = commandService.generateObjectDict(resources, generator);
+        Assertions.assertTrue(objDict.containsKey("m2/Root/Decompose/G0"));
+
+        URI uri = URI.createFileURI(new File(tempDir.toFile(), "m2.gsn").getPath());
+        Resource m2 = resourceSet.getResource(uri, false);
+        m2.unload();
+        resourceSet.getResources().remove(m2);
+        NodePathCache cache = NodePathCache.find(resourceSet);
+        generator.getObjectDictionary(cache);
+        Assertions.assertFalse(objDict.containsKey("m2/Root/Decompose/G0"));
+        Assertions.assertTrue(objDict.containsKey("m1/Root/Decompose/G0"));
+
+        Resource loaded = resourceSet.getResource(uri, true);
+        generator.getObjectDictionary(cache);
+        Assertions.assertSame(loaded, objDict.get("m2/Root/Decompose/G0").eResource());
+        Assertions.assertEquals(uncached(resourceSet.getResources()).keySet(), objDict.keySet());
+        workspace.invalidate();
+    }
+
+    @Test
+    public void invalidateStartsOver() throws Exception {
+        Map<String, ALLNodes> before = new HashMap<String, ALLNodes>(
+                commandService.generateObjectDict(workspace.refresh(), generator));
+        ResourceSet resourceSet = workspace.getResourceSet();
+        NodePathCache cache = NodePathCache.find(resourceSet);
+        workspace.invalidate();
+
+        List<Resource> resources = workspace.refresh();
+        Assertions.assertNotSame(resourceSet, workspace.getResourceSet());
+        Map<String, ALLNodes> after = commandService.generateObjectDict(resources, generator);
+        Assertions.assertNotSame(cache, NodePathCache.find(workspace.getResourceSet()));
+        Assertions.assertTrue(NodePathCache.find(workspace.getResourceSet()).isDictionary(after));
+        Assertions.assertEquals(before.keySet(), after.keySet());
+        for (Map.Entry<String, ALLNodes> e : after.entrySet()) {
+            Assertions.assertNotSame(before.get(e.getKey()), e.getValue(), e.getKey());
+            Assertions.assertSame(workspace.getResourceSet(), e.getValue().eResource().getResourceSet());
+        }
+        workspace.invalidate();
+    }
+
+    /**
+     * The object dictionary computed from scratch, without the cache.
+     */
+    private Map<String, ALLNodes> uncached(List<Resource> resources) {
+        HashMap<String, ALLNodes> objDict = new HashMap<String, ALLNodes>();
+        for (Resource r : resources) {
+            objDict = generator.getObjectDictionary(r, objDict);
+        }
+        return objDict;
+    }
+}
@@ -0,0 +1,101 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import static edu.vanderbilt.isis.caid.assurancedsl.ide.TestCommands.execute;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.generator.NodeReferenceIndex;
+
+public class NodeReferenceIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void deleteRemovesTheReferrers() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 3, 2);
+        execute(dir, "gsn.GET_MODEL_JSON", new JSONObject());
+        CommandService commandService = TestCommands.getCommandService();
+        ModelWorkspace workspace = commandService.getModelWorkspace(dir.getPath());
+        synchronized (workspace) {
+            Map<String, ALLNodes> objDict = commandService.generateObjectDict(workspace.refresh(),
+                    TestCommands.getGenerator());
+            NodeReferenceIndex index = NodeReferenceIndex.find(workspace.getResourceSet());
+            index.resolveProxies();
+
+            // m1 reuses a solution of m0.
+            List<EObject> referrers = index.getReferrers(objDict.get("m0/Root/Decompose/G0/Sn0"));
+            Assertions.assertEquals(1, referrers.size());
+            Resource m1 = referrers.get(0).eResource();
+            Assertions.assertEquals(uri(dir, "m1.gsn"), m1.getURI());
+            Assertions.assertEquals(Collections.singleton(m1),
+                    index.getReferringResources(objDict.get("m0/Root/Decompose/G0")));
+            // References to the nodes of a subtree are references to the subtree.
+            Assertions.assertTrue(index.getSubtreeReferrers(objDict.get("m0/Root")).contains(referrers.get(0)));
+            Assertions.assertTrue(index.getReferringResources(objDict.get("m2/Root/Decompose")).isEmpty());
+        }
+
+        JSONObject delete = new JSONObject().put("cmd", "onDeleteNode").put("nodeId", "m0/Root/Decompose/G0");
+        JSONArray updated = new JSONArray(execute(dir, "gsn.MODEL_UPDATE",
+                new JSONObject().put("commandList", new JSONArray().put(delete))));
+        Assertions.assertFalse(TestCommands.ids(updated).contains("m0/Root/Decompose/G0/Sn0"));
+        Assertions.assertFalse(read(new File(dir, "m1.gsn")).contains("ref_solution"));
+        Assertions.assertFalse(read(new File(dir, "m0.gsn")).contains("goal G0"));
+        Assertions.assertTrue(read(new File(dir, "m0.gsn")).contains("ref_goal: m1.Root;"));
+    }
+
+    @Test
+    public void followsResourcesLeavingAndJoiningTheResourceSet() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 3, 2);
+        CommandService commandService = TestCommands.getCommandService();
+        ModelWorkspace workspace = new ModelWorkspace(dir, commandService::getResourceSet,
+                new ParallelResourceLoader(commandService::getResourceSet));
+        List<Resource> resources = workspace.refresh();
+        ResourceSet resourceSet = workspace.getResourceSet();
+        NodeReferenceIndex index = NodeReferenceIndex.find(resourceSet);
+        index.resolveProxies();
+        ALLNodes solution = commandService.generateObjectDict(resources, TestCommands.getGenerator())
+                .get("m0/Root/Decompose/G0/Sn0");
+        Assertions.assertEquals(1, index.getReferrers(solution).size());
+
+        Resource m1 = resourceSet.getResource(uri(dir, "m1.gsn"), false);
+        m1.unload();
+        resourceSet.getResources().remove(m1);
+        Assertions.assertTrue(index.getReferrers(solution).isEmpty());
+
+        // A loaded resource is indexed with its unresolved references, which resolve to the same node.
+        Resource loaded = resourceSet.getResource(uri(dir, "m1.gsn"), true);
+        index.resolveProxies();
+        List<EObject> referrers = index.getReferrers(solution);
+        Assertions.assertEquals(1, referrers.size());
+        Assertions.assertSame(loaded, referrers.get(0).eResource());
+        workspace.invalidate();
+    }
+
+    private static URI uri(File dir, String name) {
+        return URI.createFileURI(new File(dir, name).getPath());
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
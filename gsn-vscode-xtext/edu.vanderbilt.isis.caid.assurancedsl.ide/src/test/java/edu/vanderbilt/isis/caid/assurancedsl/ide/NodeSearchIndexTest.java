@@ -0,0 +1,62 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import static edu.vanderbilt.isis.caid.assurancedsl.ide.TestCommands.execute;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NodeSearchIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void searchRanksAndFollowsEdits() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 3, 4);
+
+        // Every term has to match; the solutions also match in their artifact, and equal scores are ordered
+        // by id.
+        JSONObject hazard = search(dir, new JSONObject().put("query", "Hazard 1-2"));
+        Assertions.assertEquals(Arrays.asList("m1/Root/Decompose/G2/Sn2", "m2/Root/Decompose/G1/Sn1",
+                "m1/Root/Decompose/G2", "m2/Root/Decompose/G1"), ids(hazard));
+
+        JSONObject limited = search(dir, new JSONObject().put("query", "mitig").put("limit", 5));
+        Assertions.assertEquals(12, limited.getInt("total"));
+        Assertions.assertEquals(5, limited.getJSONArray("results").length());
+
+        JSONObject label = search(dir, new JSONObject().put("query", "l1"));
+        Assertions.assertEquals(Arrays.asList("m1/Root"), ids(label));
+        JSONObject highlight = label.getJSONArray("results").getJSONObject(0).getJSONArray("highlights")
+                .getJSONObject(0);
+        Assertions.assertEquals("labels", highlight.getString("field"));
+        Assertions.assertEquals("[[0,2]]", highlight.getJSONArray("ranges").toString());
+
+        // Renaming a node changes the ids of its subtree.
+        JSONObject rename = new JSONObject().put("cmd", "onAttributeChange").put("nodeId", "m0/Root/Decompose/G0")
+                .put("attr", "name").put("newValue", "Renamed");
+        execute(dir, "gsn.MODEL_UPDATE", new JSONObject().put("commandList", new JSONArray().put(rename)));
+        Assertions.assertEquals(Arrays.asList("m0/Root/Decompose/Renamed/Sn0", "m1/Root/Decompose/G0/Sn0",
+                "m2/Root/Decompose/G0/Sn0"), ids(search(dir, new JSONObject().put("query", "sn0 example"))));
+        Assertions.assertEquals(Arrays.asList("m1/Root/Decompose/G0", "m2/Root/Decompose/G0"),
+                ids(search(dir, new JSONObject().put("query", "g0"))));
+
+        Assertions.assertTrue(execute(dir, "gsn.SEARCH", new JSONObject()).startsWith("Unable"));
+    }
+
+    private static JSONObject search(File dir, JSONObject args) {
+        return new JSONObject(execute(dir, "gsn.SEARCH", args));
+    }
+
+    private static List<String> ids(JSONObject result) {
+        return TestCommands.ids(result.getJSONArray("results"));
+    }
+}
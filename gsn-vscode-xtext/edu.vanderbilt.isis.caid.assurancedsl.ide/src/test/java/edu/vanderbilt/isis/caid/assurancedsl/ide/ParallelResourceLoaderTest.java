@@ -0,0 +1,68 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.generator.IGenerator2;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.inject.Injector;
+
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+
+public class ParallelResourceLoaderTest {
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8 };
+
+    private static CommandService commandService;
+
+    private static AssuranceGenerator generator;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    public static void setup() {
+        Injector injector = new AssuranceIdeSetup().createInjectorAndDoEMFRegistration();
+        commandService = injector.getInstance(CommandService.class);
+        generator = (AssuranceGenerator) injector.getInstance(IGenerator2.class);
+    }
+
+    @Test
+    public void parallelLoadMatchesSequentialLoad() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 60, 20);
+
+        String expected = null;
+        for (int threads : THREAD_COUNTS) {
+            ParallelResourceLoader loader = new ParallelResourceLoader(commandService::getResourceSet, threads);
+            ModelWorkspace workspace = new ModelWorkspace(dir, commandService::getResourceSet, loader);
+
+            long start = System.nanoTime();
+            List<Resource> resources = workspace.refresh();
+            long elapsed = System.nanoTime() - start;
+            System.out.println(String.format("load of %d files with %d thread(s): %d[ms]", resources.size(),
+                    threads, elapsed / 1000000));
+
+            for (Resource r : resources) {
+                Assertions.assertTrue(r.getErrors().isEmpty(), r.getURI() + ": " + r.getErrors());
+                Assertions.assertTrue(EcoreUtil.UnresolvedProxyCrossReferencer.find(r).isEmpty(),
+                        r.getURI() + " has unresolved references");
+            }
+            String json = GeneratedNode
+                    .toJSON(commandService.generateJSONOutput(resources, generator, workspace.getResourceSet()));
+            if (expected == null) {
+                expected = json;
+            } else {
+                Assertions.assertEquals(expected, json, "output with " + threads + " threads");
+            }
+            workspace.invalidate();
+        }
+    }
+}
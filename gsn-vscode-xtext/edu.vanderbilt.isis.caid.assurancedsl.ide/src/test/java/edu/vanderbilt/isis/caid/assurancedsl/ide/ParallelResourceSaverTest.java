@@ -0,0 +1,120 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.resource.SaveOptions;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+
+public class ParallelResourceSaverTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void savesOnlyWhatChanged() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 3, 2);
+        CommandService commandService = TestCommands.getCommandService();
+        ModelWorkspace workspace = new ModelWorkspace(dir, commandService::getResourceSet,
+                new ParallelResourceLoader(commandService::getResourceSet));
+        List<Resource> resources = workspace.refresh();
+        Map<String, String> files = readFiles(dir);
+        Assertions.assertTrue(ParallelResourceSaver.getDirtyResources(resources).isEmpty());
+
+        // m1 references the root of m2, so its text may change with m2; ctx and m0 do not reference m2.
+        ALLNodes goal = commandService.generateObjectDict(resources, TestCommands.getGenerator())
+                .get("m2/Root/Decompose/G1");
+        goal.eSet(goal.eClass().getEStructuralFeature("name"), "Renamed");
+        List<Resource> dirty = ParallelResourceSaver.getDirtyResources(resources);
+        Assertions.assertEquals(new HashSet<URI>(Arrays.asList(uri(dir, "m1.gsn"), uri(dir, "m2.gsn"))),
+                uris(dirty));
+
+        Path m2 = new File(dir, "m2.gsn").toPath();
+        Object inode = getInode(m2);
+        ParallelResourceSaver saver = new ParallelResourceSaver(4);
+        Map<?, ?> options = SaveOptions.newBuilder().getOptions().toOptionsMap();
+        Assertions.assertEquals(Arrays.asList(uri(dir, "m2.gsn")), saver.save(dirty, options));
+        for (Resource r : resources) {
+            Assertions.assertFalse(r.isModified(), r.getURI().toString());
+        }
+
+        // Only the renamed goal differs, and the file was replaced by a rename of a temporary file.
+        Map<String, String> saved = readFiles(dir);
+        Assertions.assertEquals(files.keySet(), saved.keySet());
+        for (String name : files.keySet()) {
+            String expected = files.get(name);
+            if (name.equals("m2.gsn")) {
+                expected = expected.replace("goal G1", "goal Renamed");
+            }
+            Assertions.assertEquals(expected, saved.get(name), name);
+        }
+        if (inode != null) {
+            Assertions.assertNotEquals(inode, getInode(m2));
+        }
+
+        // Identical content is not written again.
+        long lastModified = m2.toFile().lastModified();
+        Assertions.assertEquals(Arrays.asList(), saver.save(dirty, options));
+        Assertions.assertEquals(lastModified, m2.toFile().lastModified());
+        workspace.invalidate();
+    }
+
+    @Test
+    public void failedWriteKeepsTheFile() throws Exception {
+        Path file = tempDir.resolve("model.json");
+        Files.write(file, "[]".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertThrows(IOException.class, () -> ParallelResourceSaver.replace(file, out -> {
+            out.write("[{".getBytes(StandardCharsets.UTF_8));
+            throw new IOException("generator failed");
+        }));
+        Assertions.assertEquals("[]", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Assertions.assertArrayEquals(new String[] { "model.json" }, tempDir.toFile().list());
+
+        ParallelResourceSaver.replace(file, out -> out.write("[{}]".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals("[{}]", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Assertions.assertArrayEquals(new String[] { "model.json" }, tempDir.toFile().list());
+    }
+
+    private static Object getInode(Path file) throws Exception {
+        if (!file.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+            return null;
+        }
+        return Files.getAttribute(file, "unix:ino");
+    }
+
+    private static URI uri(File dir, String name) {
+        return URI.createFileURI(new File(dir, name).getPath());
+    }
+
+    private static Set<URI> uris(List<Resource> resources) {
+        Set<URI> uris = new HashSet<URI>();
+        for (Resource r : resources) {
+            uris.add(r.getURI());
+        }
+        return uris;
+    }
+
+    private static Map<String, String> readFiles(File dir) throws Exception {
+        Map<String, String> files = new HashMap<String, String>();
+        for (File file : ModelWorkspace.listModelFiles(dir)) {
+            files.put(file.getName(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+        return files;
+    }
+}
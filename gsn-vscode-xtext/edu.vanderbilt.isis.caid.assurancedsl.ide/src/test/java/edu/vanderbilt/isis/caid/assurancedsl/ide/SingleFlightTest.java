@@ -0,0 +1,135 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.xtext.service.OperationCanceledManager;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void identicalKeysShareOneComputation() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<String, String>();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> flight.execute("a", CancelIndicator.NullImpl, c -> {
+                await(release);
+                return "result";
+            })));
+        }
+        while (flight.getJoined() < 3) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        for (Future<String> result : results) {
+            Assertions.assertEquals("result", result.get(10, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, flight.getComputed());
+        Assertions.assertEquals(3, flight.getJoined());
+
+        // A call after the computation finished computes again.
+        Assertions.assertEquals("again", flight.execute("a", CancelIndicator.NullImpl, c -> "again"));
+        Assertions.assertEquals(2, flight.getComputed());
+    }
+
+    @Test
+    public void distinctKeysComputeConcurrently() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<String, String>();
+        // Each computation waits for the other one to start, so they can only finish together.
+        CountDownLatch started = new CountDownLatch(2);
+        Future<String> a = executor.submit(() -> flight.execute("a", CancelIndicator.NullImpl, c -> {
+            started.countDown();
+            await(started);
+            return "a";
+        }));
+        Future<String> b = executor.submit(() -> flight.execute("b", CancelIndicator.NullImpl, c -> {
+            started.countDown();
+            await(started);
+            return "b";
+        }));
+        Assertions.assertEquals("a", a.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals("b", b.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, flight.getComputed());
+        Assertions.assertEquals(0, flight.getJoined());
+    }
+
+    @Test
+    public void computationIsCanceledOnlyWhenAllCallersAre() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<String, String>();
+        AtomicBoolean firstCanceled = new AtomicBoolean();
+        AtomicBoolean secondCanceled = new AtomicBoolean();
+        AtomicBoolean thirdCanceled = new AtomicBoolean();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch checked = new CountDownLatch(1);
+        CountDownLatch observed = new CountDownLatch(1);
+        AtomicBoolean canceledEarly = new AtomicBoolean();
+        Future<String> first = executor.submit(() -> flight.execute("a", firstCanceled::get, c -> {
+            running.countDown();
+            await(checked);
+            canceledEarly.set(c.isCanceled());
+            observed.countDown();
+            while (!c.isCanceled()) {
+                Thread.yield();
+            }
+            new OperationCanceledManager().throwOperationCanceledException();
+            return "not canceled";
+        }));
+        running.await(10, TimeUnit.SECONDS);
+        Future<String> second = executor.submit(() -> flight.execute("a", secondCanceled::get, c -> "computed"));
+        Future<String> third = executor.submit(() -> flight.execute("a", thirdCanceled::get, c -> "computed"));
+        while (flight.getJoined() < 2) {
+            Thread.sleep(1);
+        }
+
+        // A canceled waiter stops waiting, the computation goes on for the others.
+        secondCanceled.set(true);
+        assertCanceled(second);
+        firstCanceled.set(true);
+        checked.countDown();
+        await(observed);
+        Assertions.assertFalse(third.isDone());
+
+        thirdCanceled.set(true);
+        assertCanceled(third);
+        assertCanceled(first);
+        Assertions.assertFalse(canceledEarly.get());
+        Assertions.assertEquals(1, flight.getComputed());
+    }
+
+    private static void assertCanceled(Future<String> result) throws Exception {
+        try {
+            result.get(10, TimeUnit.SECONDS);
+            Assertions.fail("not canceled");
+        } catch (ExecutionException e) {
+            Assertions.assertTrue(new OperationCanceledManager().isOperationCanceledException(e.getCause()),
+                    e.getCause().toString());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import static edu.vanderbilt.isis.caid.assurancedsl.ide.TestCommands.execute;
+import static edu.vanderbilt.isis.caid.assurancedsl.ide.TestCommands.idSet;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SubtreeQueryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void subtreeFollowsEdgesWithinLimits() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 3, 4);
+
+        // Every module: Root, Decompose, 4 goals with a solution each, and its context.
+        JSONObject all = query(dir, new JSONObject().put("nodeId", "m0/Root"));
+        Assertions.assertEquals(33, all.getJSONArray("nodes").length());
+        Assertions.assertEquals(0, all.getJSONObject("more").length());
+
+        JSONObject children = query(dir, new JSONObject().put("nodeId", "m0/Root").put("depth", 1));
+        Assertions.assertEquals(idSet("m0/Root", "m0/Root/Decompose", "ctx/C0"), ids(children));
+
+        String uuid = children.getJSONArray("nodes").getJSONObject(0).getString("uuid");
+        JSONObject solved = query(dir, new JSONObject().put("uuid", uuid).put("depth", 1)
+                .put("edges", new JSONArray().put(SubtreeQuery.SOLVED_BY)));
+        Assertions.assertEquals(idSet("m0/Root", "m0/Root/Decompose"), ids(solved));
+
+        // Decompose has the four goals and the root of the next module as children.
+        JSONObject first = query(dir, new JSONObject().put("nodeId", "m0/Root/Decompose").put("depth", 1)
+                .put("limit", 2));
+        Assertions.assertEquals(idSet("m0/Root/Decompose", "m0/Root/Decompose/G0", "m0/Root/Decompose/G1"),
+                ids(first));
+        Assertions.assertEquals(3, first.getJSONObject("more").getInt("m0/Root/Decompose"));
+        JSONObject last = query(dir, new JSONObject().put("nodeId", "m0/Root/Decompose").put("depth", 1)
+                .put("limit", 2).put("offset", 4));
+        Assertions.assertEquals(idSet("m0/Root/Decompose", "m1/Root"), ids(last));
+        Assertions.assertEquals(0, last.getJSONObject("more").length());
+
+        Assertions.assertTrue(execute(dir, "gsn.QUERY_SUBTREE", new JSONObject().put("nodeId", "m0/Missing"))
+                .startsWith("Could not"));
+    }
+
+    private static JSONObject query(File dir, JSONObject args) {
+        return new JSONObject(execute(dir, "gsn.QUERY_SUBTREE", args));
+    }
+
+    private static Set<String> ids(JSONObject result) {
+        return idSet(result.getJSONArray("nodes"));
+    }
+}
@@ -0,0 +1,89 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+
+/**
+ * Writes synthetic assurance models of a given size for tests and benchmarks.
+ *
+ * Every file holds one goal tree with {@code goalsPerFile} solved sub-goals and references the root goal
+ * of the next file, a solution of the previous file and a context in a shared contexts file, so linking
+ * has real cross-file work to do. UUIDs are derived from the node path and the output is deterministic.
+ */
+public final class SyntheticModels {
+
+    private SyntheticModels() {
+    }
+
+    public static void write(File dir, int files, int goalsPerFile) throws IOException {
+        dir.mkdirs();
+        StringBuilder contexts = new StringBuilder();
+        contexts.append("CONTEXTS ctx\n{\n");
+        for (int i = 0; i < files; i++) {
+            contexts.append("    context C").append(i).append("\n    {\n");
+            contexts.append("        uuid:\"").append(uuid("ctx.C" + i)).append("\";\n");
+            contexts.append("        summary:'''Context of module ").append(i).append("''';\n");
+            contexts.append("    }\n");
+        }
+        contexts.append("}\n");
+        writeFile(new File(dir, "ctx.gsn"), contexts);
+
+        for (int i = 0; i < files; i++) {
+            writeFile(new File(dir, "m" + i + ".gsn"), module(i, files, goalsPerFile));
+        }
+    }
+
+    private static StringBuilder module(int i, int files, int goalsPerFile) {
+        String ns = "m" + i;
+        StringBuilder b = new StringBuilder();
+        b.append("GOALS ").append(ns).append("\n{\n");
+        b.append("    goal Root\n    {\n");
+        b.append("        uuid:\"").append(uuid(ns + ".Root")).append("\";\n");
+        b.append("        summary:'''Module ").append(i).append(" is acceptably safe''';\n");
+        b.append("        label:L").append(i % 5).append(";\n");
+        b.append("        strategy Decompose\n        {\n");
+        b.append("            uuid:\"").append(uuid(ns + ".Root.Decompose")).append("\";\n");
+        b.append("            info:'''Argument over all sub-goals of module ").append(i).append("''';\n");
+        for (int j = 0; j < goalsPerFile; j++) {
+            String goal = ns + ".Root.Decompose.G" + j;
+            b.append("            goal G").append(j).append("\n            {\n");
+            b.append("                uuid:\"").append(uuid(goal)).append("\";\n");
+            b.append("                summary:'''Hazard ").append(i).append('-').append(j)
+                    .append(" has been mitigated''';\n");
+            b.append("                solution Sn").append(j).append("\n                {\n");
+            b.append("                    uuid:\"").append(uuid(goal + ".Sn" + j)).append("\";\n");
+            b.append("                    summary:'''Evidence for hazard ").append(i).append('-').append(j)
+                    .append("''';\n");
+            b.append("                    artifact:\"http://example.org/artifacts/").append(ns).append('/')
+                    .append(j).append(".zip\";\n");
+            b.append("                    status:").append(j % 2 == 0 ? "Approved" : "NotReviewed").append(";\n");
+            b.append("                }\n            }\n");
+        }
+        if (i + 1 < files) {
+            b.append("            ref_goal: m").append(i + 1).append(".Root;\n");
+        }
+        b.append("        }\n");
+        b.append("        ref_context: ctx.C").append(i).append(";\n");
+        b.append("    }\n");
+        if (i > 0 && goalsPerFile > 0) {
+            b.append("    goal Reuse\n    {\n");
+            b.append("        uuid:\"").append(uuid(ns + ".Reuse")).append("\";\n");
+            b.append("        summary:'''Reuses evidence of module ").append(i - 1).append("''';\n");
+            b.append("        ref_solution: m").append(i - 1).append(".Root.Decompose.G0.Sn0;\n");
+            b.append("    }\n");
+        }
+        b.append("}\n");
+        return b;
+    }
+
+    private static String uuid(String path) {
+        return UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static void writeFile(File file, CharSequence content) throws IOException {
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,88 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.lsp4j.ExecuteCommandParams;
+import org.eclipse.xtext.ide.server.ILanguageServerAccess;
+import org.eclipse.xtext.generator.IGenerator2;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.google.inject.Injector;
+
+import edu.vanderbilt.isis.caid.assurancedsl.generator.AssuranceGenerator;
+
+/**
+ * Runs gsn commands against model directories for tests, the way the extension sends them. Without a
+ * language server, every command works on the warm workspace of the directory.
+ */
+public final class TestCommands {
+
+    private static Injector injector;
+
+    private TestCommands() {
+    }
+
+    private static synchronized Injector getInjector() {
+        if (injector == null) {
+            injector = new AssuranceIdeSetup().createInjectorAndDoEMFRegistration();
+        }
+        return injector;
+    }
+
+    public static CommandService getCommandService() {
+        return getInjector().getInstance(CommandService.class);
+    }
+
+    public static AssuranceGenerator getGenerator() {
+        return (AssuranceGenerator) getInjector().getInstance(IGenerator2.class);
+    }
+
+    /**
+     * Runs the command with the arguments and the model directory, and returns the result as text. The
+     * snapshots the command scheduled are written before this returns, so the directory can be deleted.
+     */
+    public static String execute(File dir, String cmd, JSONObject args) {
+        return execute(dir, cmd, args, null);
+    }
+
+    /**
+     * Like {@link #execute(File, String, JSONObject)}, as sent through the given language server.
+     */
+    public static String execute(File dir, String cmd, JSONObject args, ILanguageServerAccess access) {
+        args.put("modelDir", dir.getPath());
+        ExecuteCommandParams params = new ExecuteCommandParams(cmd, Arrays.<Object>asList(args.toString()));
+        Object result = getCommandService().execute(params, access, CancelIndicator.NullImpl);
+        try {
+            ModelStorageCache.awaitWrites();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return String.valueOf(result);
+    }
+
+    /**
+     * The {@code "id"} of every object of the array, in order.
+     */
+    public static List<String> ids(JSONArray objects) {
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < objects.length(); i++) {
+            ids.add(objects.getJSONObject(i).getString("id"));
+        }
+        return ids;
+    }
+
+    public static Set<String> idSet(JSONArray objects) {
+        return new LinkedHashSet<String>(ids(objects));
+    }
+
+    public static Set<String> idSet(String... ids) {
+        return new LinkedHashSet<String>(Arrays.asList(ids));
+    }
+}
@@ -0,0 +1,82 @@
+package edu.vanderbilt.isis.caid.assurancedsl.ide;
+
+import static edu.vanderbilt.isis.caid.assurancedsl.ide.TestCommands.execute;
+import static edu.vanderbilt.isis.caid.assurancedsl.ide.TestCommands.idSet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ViewQueryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void viewShowsMatchesAndFollowsEdits() throws Exception {
+        File dir = tempDir.toFile();
+        SyntheticModels.write(dir, 3, 2);
+        File state = new File(dir, CommandService.STATE_DIRECTORY);
+        state.mkdirs();
+        JSONArray labels = new JSONArray().put(new JSONObject().put("name", "L1"))
+                .put(new JSONObject().put("name", "L2")).put(new JSONObject().put("name", "G")
+                        .put("isGroup", true).put("members", new JSONArray().put("L1").put("L2")));
+        JSONArray views = new JSONArray().put(new JSONObject().put("id", "v1").put("expression", "G && !L1")
+                .put("includeSubtrees", false).put("includeParents", true));
+        Files.write(new File(state, "labels.json").toPath(), labels.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(state, "views.json").toPath(), views.toString().getBytes(StandardCharsets.UTF_8));
+
+        // The root of module 2 is solved by the strategy of module 1, and so on up to the root of module 0.
+        JSONObject parents = query(dir, new JSONObject().put("viewId", "v1"));
+        Assertions.assertEquals(idSet("m0/Root", "m0/Root/Decompose", "m1/Root", "m1/Root/Decompose", "m2/Root"),
+                ids(parents));
+        Assertions.assertEquals("[\"m2/Root\"]", parents.getJSONArray("matches").toString());
+
+        JSONObject view = new JSONObject().put("expression", "L2").put("includeSubtrees", true);
+        JSONObject subtree = query(dir, new JSONObject().put("view", view));
+        Assertions.assertEquals(idSet("ctx/C2", "m2/Root", "m2/Root/Decompose", "m2/Root/Decompose/G0",
+                "m2/Root/Decompose/G0/Sn0", "m2/Root/Decompose/G1", "m2/Root/Decompose/G1/Sn1"), ids(subtree));
+        // The first result of the view was cached, the model JSON generated for it changed nothing.
+        long cached = getCachedCount(dir);
+        Assertions.assertEquals(subtree.toString(), query(dir, new JSONObject().put("view", view)).toString());
+        Assertions.assertEquals(cached + 1, getCachedCount(dir));
+
+        // Editing the text of a shown node and the labels of another one are both reflected.
+        JSONObject summary = new JSONObject().put("cmd", "onAttributeChange").put("nodeId", "m2/Root/Decompose/G0")
+                .put("attr", "summary").put("newValue", "Edited summary");
+        execute(dir, "gsn.MODEL_UPDATE", new JSONObject().put("commandList", new JSONArray().put(summary)));
+        Assertions.assertTrue(execute(dir, "gsn.GET_VIEW", new JSONObject().put("view", view))
+                .contains("Edited summary"));
+        JSONObject label = new JSONObject().put("cmd", "onAttributeChange").put("nodeId", "m0/Root")
+                .put("attr", "labels").put("newValue", new JSONArray().put("L2"));
+        execute(dir, "gsn.MODEL_UPDATE", new JSONObject().put("commandList", new JSONArray().put(label)));
+        Assertions.assertEquals(new JSONArray().put("m0/Root").put("m2/Root").toString(),
+                query(dir, new JSONObject().put("view", view)).getJSONArray("matches").toString());
+
+        Assertions.assertTrue(execute(dir, "gsn.GET_VIEW",
+                new JSONObject().put("view", new JSONObject().put("expression", "L1 ||"))).startsWith("Invalid view"));
+        Assertions.assertTrue(execute(dir, "gsn.GET_VIEW", new JSONObject().put("viewId", "missing"))
+                .startsWith("Invalid view"));
+    }
+
+    private static JSONObject query(File dir, JSONObject args) {
+        return new JSONObject(execute(dir, "gsn.GET_VIEW", args));
+    }
+
+    private static long getCachedCount(File dir) {
+        JSONObject metrics = new JSONObject(execute(dir, "gsn.GET_METRICS", new JSONObject()));
+        return metrics.getJSONObject("counters").optLong("commands.gsn.GET_VIEW.cached");
+    }
+
+    private static Set<String> ids(JSONObject result) {
+        return idSet(result.getJSONArray("nodes"));
+    }
+}
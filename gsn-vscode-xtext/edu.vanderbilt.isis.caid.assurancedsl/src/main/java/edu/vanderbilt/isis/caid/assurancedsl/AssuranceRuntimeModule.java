@@ -4,9 +4,13 @@
 package edu.vanderbilt.isis.caid.assurancedsl;
 
 import org.eclipse.xtext.formatting2.IFormatter2;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.resource.persistence.StorageAwareResource;
+import org.eclipse.xtext.scoping.IGlobalScopeProvider;
 import org.eclipse.xtext.service.SingletonBinding;
 
 import edu.vanderbilt.isis.caid.assurancedsl.formatting2.AssuranceFormatter;
+import edu.vanderbilt.isis.caid.assurancedsl.scoping.AssuranceGlobalScopeProvider;
 import edu.vanderbilt.isis.caid.assurancedsl.validation.AssuranceValidator;
 
 /**
@@ -19,6 +23,20 @@ public class AssuranceRuntimeModule extends AbstractAssuranceRuntimeModule {
         return AssuranceFormatter.class;
     }
 
+    @Override
+    public Class<? extends IGlobalScopeProvider> bindIGlobalScopeProvider() {
+        return AssuranceGlobalScopeProvider.class;
+    }
+
+    /**
+     * Resources that can be written to and loaded from a binary snapshot, see the model cache of the
+     * language server.
+     */
+    @Override
+    public Class<? extends XtextResource> bindXtextResource() {
+        return StorageAwareResource.class;
+    }
+
     
     @SingletonBinding(eager=true)
 	public Class<? extends AssuranceValidator> bindAssuranceValidator() {
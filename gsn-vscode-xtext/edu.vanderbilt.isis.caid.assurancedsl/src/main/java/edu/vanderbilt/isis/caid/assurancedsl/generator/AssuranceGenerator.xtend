@@ -38,13 +38,10 @@ import java.util.UUID
 import edu.vanderbilt.isis.caid.assurancedsl.assurance.SolutionStatus
 import org.eclipse.xtext.naming.IQualifiedNameProvider
 import org.eclipse.emf.ecore.util.EcoreUtil
-import org.json.JSONObject
-import org.json.JSONArray
 import org.eclipse.xtext.naming.QualifiedName
 import org.eclipse.emf.common.util.EList
 import java.util.List
 import java.util.ArrayList
-import java.util.Collections
 import java.util.HashMap
 
 
@@ -64,28 +61,15 @@ class AssuranceGenerator extends AbstractGenerator {
 
     
 
-	def JSONArray JsonObjectSort(JSONArray jsonArray) 
+	/**
+	 * Order of the nodes in the model JSON: by id, ignoring case.
+	 */
+	def int compareNodeIds(String id1, String id2)
 	{
-	    var sortedArr = new JSONArray()
-    	var listJsonObj = new ArrayList()
-		
-		for (i:0..jsonArray.size()-1) {
-        	listJsonObj.add(jsonArray.getJSONObject(i))
-		}
-
-		Collections.sort(listJsonObj)[o1, o2 | 
-		    o1.get("id").toString().compareToIgnoreCase(o2.get("id").toString())
-		]
-
-		for (i:0..jsonArray.size()-1) {
-        	sortedArr.put(listJsonObj.get(i))
-    	}
-    	
-        return sortedArr
+		return id1.compareToIgnoreCase(id2)
 	}
 
 	
-	
 
 	def String getNodeType(EObject obj1) {
 		switch (obj1.eClass().getClassifierID()) {
@@ -124,11 +108,23 @@ class AssuranceGenerator extends AbstractGenerator {
 	}
 
 	def String modSeparator(QualifiedName obj1) {
-		return obj1.toString().replaceAll("\\.","/")
+		return obj1.toString("/")
 		
 	}
 
+	/**
+	 * The id of a node in the model JSON; taken from the NodePathCache of the resource set if it has one.
+	 */
 	def String getNodeFQN(EObject obj1) {
+		val cache = NodePathCache.find(obj1)
+		if (cache !== null)
+		{
+			return cache.getPath(obj1, [computeNodeFQN])
+		}
+		return computeNodeFQN(obj1)
+	}
+
+	def String computeNodeFQN(EObject obj1) {
 		switch (obj1.eClass().getClassifierID()) {
 			case AssurancePackage.ASSUMPTION_NODE:
 				return (obj1 as AssumptionNode).getFullyQualifiedName().modSeparator()
@@ -184,6 +180,23 @@ class AssuranceGenerator extends AbstractGenerator {
 
 	}
 
+	/**
+	 * The UUID of the node as written in the model, or an empty string if it has none. Unlike
+	 * dumpNodeUUID this never changes the model, so it is safe on resources that are only read.
+	 */
+	def String getNodeUUID(EList<BaseNode> details)
+	{
+		if (details.length !== 0)
+		{
+			var UUIDType uuid = details.get(0).getUuid()
+			if (uuid !== null && uuid.getInfo() !== null)
+			{
+				return uuid.getInfo()
+			}
+		}
+		return ''
+	}
+
 	def String dumpNodeUUID(EList<BaseNode> details)
 	{
 		var ret = new String('')
@@ -236,40 +249,27 @@ class AssuranceGenerator extends AbstractGenerator {
 		return ret
 	}
 
-	def fillDetails(EList<BaseNode> g, JSONObject obj)
-	{
-		obj.put("uuid", dumpNodeUUID(g))
-		obj.put("info", dumpNodeInfo(g))
-        obj.put("summary", dumpNodeSummary(g))
-        obj.put("artifacts", dumpNodeArtifacts(g))
-        obj.put("labels", dumpNodeLabels(g))
-		return obj
-	}
-
-	
-
-	def getNodeDetail(EObject obj1, JSONObject obj){
+	def EList<BaseNode> getNodeDetails(EObject obj1){
 
 		switch (obj1.eClass().getClassifierID()) {
 			case AssurancePackage.ASSUMPTION_NODE:
-				return (obj1 as AssumptionNode).getDetails().fillDetails(obj)
+				return (obj1 as AssumptionNode).getDetails()
 			case AssurancePackage.CONTEXT_NODE:
-				return (obj1 as ContextNode).getDetails().fillDetails(obj)
+				return (obj1 as ContextNode).getDetails()
 			case AssurancePackage.GOAL_NODE:
-				return (obj1 as GoalNode).getDetails().fillDetails(obj)
+				return (obj1 as GoalNode).getDetails()
 			case AssurancePackage.JUSTIFICATION_NODE:
-				return (obj1 as JustificationNode).getDetails().fillDetails(obj)
+				return (obj1 as JustificationNode).getDetails()
 			case AssurancePackage.SOLUTION_NODE:
-				return (obj1 as SolutionNode).getDetails().fillDetails(obj)
+				return (obj1 as SolutionNode).getDetails()
 			case AssurancePackage.STRATEGY_NODE:
-				return (obj1 as StrategyNode).getDetails().fillDetails(obj)
+				return (obj1 as StrategyNode).getDetails()
 
 		}
-		return obj
+		return null
 	}
 
 	
-	
 
 	def String getSolvedBy(EObject obj1)
 	{
@@ -361,57 +361,122 @@ class AssuranceGenerator extends AbstractGenerator {
 		return list
 	}
 
-	def JSONArray generateNodes(Resource resource, JSONArray ret)
-    {
-		
-        for (ALLNodes g: resource.allContents.toIterable.filter(ALLNodes))
-        {
-            var obj = new JSONObject()
-			obj.put("type",getNodeType(g))
-			obj.put("name",getNodeName(g))
-			obj.put("id",getNodeFQN(g))
-			obj = g.getNodeDetail(obj)
-			if (g instanceof GoalNode) {
-				obj.put("solvedBy", getGoalNodeSolvedBy(g.getNodedetails()))
-				obj.put("inContextOf", getGoalNodeInContextOf(g.getNodedetails()))
-			}
-			if (g instanceof StrategyNode) {
-				obj.put("solvedBy", getStrategyNodeSolvedBy(g.getNodedetails()))
-				obj.put("inContextOf", getStrategyNodeInContextOf(g.getNodedetails()))
-			}
-            if (g instanceof SolutionNode) {
-				obj.put("status", g.getStatus().getName())
-				
-			}
-			if (obj.toString() !== "{}")
-				ret.put(obj)
-        }
-        return ret
-        
-    }
+	/**
+	 * The ids in the solvedBy list of the node; empty for nodes that are not goals or strategies.
+	 */
+	def List<String> getNodeSolvedBy(ALLNodes g)
+	{
+		if (g instanceof GoalNode) {
+			return getGoalNodeSolvedBy(g.getNodedetails())
+		}
+		if (g instanceof StrategyNode) {
+			return getStrategyNodeSolvedBy(g.getNodedetails())
+		}
+		return newArrayList
+	}
 
-	def JSONArray generateJSON(Resource r)
+	/**
+	 * The ids in the inContextOf list of the node; empty for nodes that are not goals or strategies.
+	 */
+	def List<String> getNodeInContextOf(ALLNodes g)
 	{
-		var JSONArray jsoninfo = new JSONArray
+		if (g instanceof GoalNode) {
+			return getGoalNodeInContextOf(g.getNodedetails())
+		}
+		if (g instanceof StrategyNode) {
+			return getStrategyNodeInContextOf(g.getNodedetails())
+		}
+		return newArrayList
+	}
 
-		jsoninfo = generateNodes(r, jsoninfo)
-		
-		return jsoninfo
-       
+	/**
+	 * Writes one node of the model JSON straight from the EMF model.
+	 */
+	def void writeNode(ALLNodes g, ModelJsonWriter w)
+	{
+		var details = getNodeDetails(g)
+		w.beginObject()
+		w.property("type", getNodeType(g))
+		w.property("name", getNodeName(g))
+		w.property("id", getNodeFQN(g))
+		w.property("uuid", getNodeUUID(details))
+		w.property("info", dumpNodeInfo(details))
+		w.property("summary", dumpNodeSummary(details))
+		w.property("artifacts", dumpNodeArtifacts(details))
+		w.property("labels", dumpNodeLabels(details))
+		if (g instanceof GoalNode) {
+			w.property("solvedBy", getGoalNodeSolvedBy(g.getNodedetails()))
+			w.property("inContextOf", getGoalNodeInContextOf(g.getNodedetails()))
+		}
+		if (g instanceof StrategyNode) {
+			w.property("solvedBy", getStrategyNodeSolvedBy(g.getNodedetails()))
+			w.property("inContextOf", getStrategyNodeInContextOf(g.getNodedetails()))
+		}
+		if (g instanceof SolutionNode) {
+			w.property("status", g.getStatus().getName())
+		}
+		w.endObject()
+	}
+
+	def void writeNodes(Resource resource, ModelJsonWriter w)
+	{
+		val event = PhaseEvent.start("generateJSON")
+		var nodes = 0
+		for (ALLNodes g: resource.allContents.toIterable.filter(ALLNodes))
+		{
+			writeNode(g, w)
+			nodes++
+		}
+		event.end(1, nodes, -1)
+	}
+
+	def String generateNodeJSON(ALLNodes g)
+	{
+		var sb = new StringBuilder(512)
+		writeNode(g, new ModelJsonWriter(sb))
+		return sb.toString()
+	}
 
+	/**
+	 * Gives every node without a UUID a new random one (in memory only).
+	 */
+	def void assignUUIDs(Resource resource)
+	{
+		val event = PhaseEvent.start("assignUUIDs")
+		var nodes = 0
+		for (ALLNodes g: resource.allContents.toIterable.filter(ALLNodes))
+		{
+			dumpNodeUUID(getNodeDetails(g))
+			nodes++
+		}
+		event.end(1, nodes, -1)
 	}
 
 	def  HashMap<String, ALLNodes>  getObjectDictionary(Resource resource, HashMap<String, ALLNodes> ret )
 	{
-		
+		val event = PhaseEvent.start("objectDict")
+		var nodes = 0
 		for (ALLNodes g: resource.allContents.toIterable.filter(ALLNodes))
         {
             var String id  = getNodeFQN(g)
 			ret.put(id, g)
+			nodes++
         }
+        event.end(1, nodes, -1)
         return ret
 	}
 
+	/**
+	 * The object dictionary of all nodes of the resource set of the cache, kept current by the cache.
+	 */
+	def HashMap<String, ALLNodes> getObjectDictionary(NodePathCache cache)
+	{
+		val event = PhaseEvent.start("objectDict")
+		val ret = cache.getDictionary([computeNodeFQN])
+		event.end(-1, ret.size, -1)
+		return ret
+	}
+
 	def void OnNameChange(ALLNodes obj1, String newValue) {
 
 		switch (obj1.eClass().getClassifierID()) {
@@ -707,6 +772,11 @@ class AssuranceGenerator extends AbstractGenerator {
 	def String removeGoalReference(ALLNodes node, ALLNodes childNode)
 	{
 		var String message = ""
+		val referenceIndex = NodeReferenceIndex.find(node)
+		if (referenceIndex !== null)
+		{
+			return if (referenceIndex.removeReference(node, childNode)) message else "Unable to delete goal child node"
+		}
 		var List<GoalDetails> gdlist = (node as GoalNode).getNodedetails()
 		var int index =-1
 		var int count = -1
@@ -766,6 +836,11 @@ class AssuranceGenerator extends AbstractGenerator {
 	{
 
 		var String message = ""
+		val referenceIndex = NodeReferenceIndex.find(node)
+		if (referenceIndex !== null)
+		{
+			return if (referenceIndex.removeReference(node, childNode)) message else "Unable to delete strategy child node"
+		}
 		var List<StrategyDetails> gdlist = (node as StrategyNode).getNodedetails()
 		var int index =-1
 		var int count = -1
@@ -856,10 +931,26 @@ class AssuranceGenerator extends AbstractGenerator {
 		return message
 	}
 
+	/**
+	 * Removes the node together with the references to it (and to the nodes it contains) from other
+	 * nodes, so that no reference is left without a target. Without a NodeReferenceIndex on the resource
+	 * set the references are only unset, as by EcoreUtil.delete.
+	 */
 	def String onDeleteNode(ALLNodes node)
 	{
 		var String message = ""
-		EcoreUtil.delete(node)
+		val index = NodeReferenceIndex.find(node)
+		if (index !== null)
+		{
+			for (EObject ref : index.getSubtreeReferrers(node))
+			{
+				EcoreUtil.remove(ref)
+			}
+			EcoreUtil.remove(node)
+		}
+		else {
+			EcoreUtil.delete(node)
+		}
 
 
 		return message
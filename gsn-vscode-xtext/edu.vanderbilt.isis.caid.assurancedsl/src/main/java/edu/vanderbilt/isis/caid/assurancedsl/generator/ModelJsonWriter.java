@@ -0,0 +1,214 @@
+package edu.vanderbilt.isis.caid.assurancedsl.generator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Minimal streaming JSON writer for the model export.
+ *
+ * Values are written straight to the target as they are produced, so no document tree is built in
+ * memory. With a positive indent the output is pretty-printed with one value per line.
+ */
+public class ModelJsonWriter {
+
+    private final Appendable out;
+
+    private final int indent;
+
+    /** One entry per open array/object: true until the first value was written. */
+    private final Deque<Boolean> first = new ArrayDeque<Boolean>();
+
+    private boolean afterName;
+
+    public ModelJsonWriter(Appendable out) {
+        this(out, 0);
+    }
+
+    public ModelJsonWriter(Appendable out, int indent) {
+        this.out = out;
+        this.indent = indent;
+    }
+
+    public ModelJsonWriter beginArray() {
+        beforeValue();
+        append('[');
+        first.push(Boolean.TRUE);
+        return this;
+    }
+
+    public ModelJsonWriter endArray() {
+        return close(']');
+    }
+
+    public ModelJsonWriter beginObject() {
+        beforeValue();
+        append('{');
+        first.push(Boolean.TRUE);
+        return this;
+    }
+
+    public ModelJsonWriter endObject() {
+        return close('}');
+    }
+
+    public ModelJsonWriter name(String name) {
+        beforeValue();
+        string(name);
+        append(indent > 0 ? ": " : ":");
+        afterName = true;
+        return this;
+    }
+
+    public ModelJsonWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            append("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    public ModelJsonWriter value(boolean value) {
+        beforeValue();
+        append(value ? "true" : "false");
+        return this;
+    }
+
+    public ModelJsonWriter value(long value) {
+        beforeValue();
+        append(Long.toString(value));
+        return this;
+    }
+
+    public ModelJsonWriter value(List<String> values) {
+        beginArray();
+        for (String v : values) {
+            value(v);
+        }
+        return endArray();
+    }
+
+    /**
+     * Writes an already serialized JSON value as it is; it is not re-indented.
+     */
+    public ModelJsonWriter rawValue(CharSequence json) {
+        beforeValue();
+        append(json);
+        return this;
+    }
+
+    public ModelJsonWriter property(String name, String value) {
+        return name(name).value(value);
+    }
+
+    public ModelJsonWriter property(String name, List<String> values) {
+        return name(name).value(values);
+    }
+
+    private ModelJsonWriter close(char c) {
+        boolean empty = first.pop();
+        if (!empty) {
+            newline();
+        }
+        append(c);
+        return this;
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (!first.isEmpty()) {
+            if (!first.peek()) {
+                append(',');
+            } else {
+                first.pop();
+                first.push(Boolean.FALSE);
+            }
+            newline();
+        }
+    }
+
+    private void newline() {
+        if (indent > 0) {
+            append('\n');
+            for (int i = 0; i < indent * first.size(); i++) {
+                append(' ');
+            }
+        }
+    }
+
+    private void string(String s) {
+        append('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String escaped = null;
+            switch (c) {
+                case '"':
+                    escaped = "\\\"";
+                    break;
+                case '\\':
+                    escaped = "\\\\";
+                    break;
+                case '\n':
+                    escaped = "\\n";
+                    break;
+                case '\r':
+                    escaped = "\\r";
+                    break;
+                case '\t':
+                    escaped = "\\t";
+                    break;
+                case '\b':
+                    escaped = "\\b";
+                    break;
+                case '\f':
+                    escaped = "\\f";
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        escaped = String.format("\\u%04x", (int) c);
+                    }
+            }
+            if (escaped != null) {
+                append(s, start, i);
+                append(escaped);
+                start = i + 1;
+            }
+        }
+        append(s, start, s.length());
+        append('"');
+    }
+
+    private void append(char c) {
+        try {
+            out.append(c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(CharSequence s) {
+        try {
+            out.append(s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(CharSequence s, int start, int end) {
+        if (start < end) {
+            try {
+                out.append(s, start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package edu.vanderbilt.isis.caid.assurancedsl.generator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+
+/**
+ * Caches the path of every node of a resource set (its fully qualified name with '/' as separator, the
+ * id of the node in the model JSON) and the object dictionary from paths to nodes.
+ *
+ * The cache is a content adapter on the resource set. A path stays cached until the name of the node or
+ * of one of its ancestors changes or the node is moved or removed; then the paths of that subtree are
+ * dropped, and the dictionary picks up the new paths the next time it is read. Nodes of resources that
+ * are added to the resource set are added to the dictionary the same way.
+ */
+public class NodePathCache extends EContentAdapter {
+
+    private final ResourceSet resourceSet;
+
+    private final Map<EObject, String> paths = new HashMap<EObject, String>();
+
+    private final HashMap<String, ALLNodes> dictionary = new HashMap<String, ALLNodes>();
+
+    /**
+     * The roots of the subtrees whose nodes are not in the dictionary with their current paths.
+     */
+    private final Set<EObject> pending = new LinkedHashSet<EObject>();
+
+    private boolean complete;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the cache of the resource set, attaching a new one if it has none yet.
+     */
+    public static NodePathCache install(ResourceSet resourceSet) {
+        NodePathCache cache = find(resourceSet);
+        if (cache == null) {
+            cache = new NodePathCache(resourceSet);
+            resourceSet.eAdapters().add(cache);
+        }
+        return cache;
+    }
+
+    /**
+     * The cache that the object (a resource set, resource or model object) is part of, or null.
+     */
+    public static NodePathCache find(Notifier target) {
+        if (target == null) {
+            return null;
+        }
+        for (Adapter adapter : target.eAdapters()) {
+            if (adapter instanceof NodePathCache) {
+                return (NodePathCache) adapter;
+            }
+        }
+        return null;
+    }
+
+    private NodePathCache(ResourceSet resourceSet) {
+        this.resourceSet = resourceSet;
+    }
+
+    /**
+     * Returns the cached path of the node, computing it with the given function if it is not cached.
+     */
+    public String getPath(EObject node, Function<EObject, String> pathOf) {
+        String path = paths.get(node);
+        if (path != null) {
+            hits.incrementAndGet();
+            return path;
+        }
+        misses.incrementAndGet();
+        path = pathOf.apply(node);
+        if (path != null) {
+            paths.put(node, path);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the object dictionary of all nodes of the resource set, brought up to date with the given
+     * path function. The same map is returned every time and kept current by the cache; callers must not
+     * modify it.
+     */
+    public HashMap<String, ALLNodes> getDictionary(Function<EObject, String> pathOf) {
+        if (!complete) {
+            complete = true;
+            pending.clear();
+            dictionary.clear();
+            for (Resource r : resourceSet.getResources()) {
+                pending.addAll(r.getContents());
+            }
+        }
+        List<EObject> roots = new ArrayList<EObject>(pending);
+        pending.clear();
+        for (EObject root : roots) {
+            if (!isAttached(root)) {
+                continue;
+            }
+            addToDictionary(root, pathOf);
+            TreeIterator<EObject> it = root.eAllContents();
+            while (it.hasNext()) {
+                addToDictionary(it.next(), pathOf);
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Whether the map is the object dictionary of this cache.
+     */
+    public boolean isDictionary(Map<String, ALLNodes> map) {
+        return map == dictionary;
+    }
+
+    /**
+     * The number of paths found in the cache; safe to read from any thread.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * The number of paths that had to be computed; safe to read from any thread.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void notifyChanged(Notification notification) {
+        super.notifyChanged(notification);
+        if (notification.isTouch()) {
+            return;
+        }
+        Object notifier = notification.getNotifier();
+        Object feature = notification.getFeature();
+        if (notifier instanceof EObject) {
+            if (feature instanceof EAttribute && "name".equals(((EAttribute) feature).getName())) {
+                moved((EObject) notifier);
+            } else if (feature instanceof EReference && ((EReference) feature).isContainment()) {
+                contentsChanged(notification);
+            }
+        } else if (notifier instanceof Resource) {
+            if (notification.getFeatureID(Resource.class) == Resource.RESOURCE__CONTENTS) {
+                contentsChanged(notification);
+            }
+        } else if (notifier instanceof ResourceSet) {
+            if (notification.getFeatureID(ResourceSet.class) == ResourceSet.RESOURCE_SET__RESOURCES) {
+                for (Object r : values(notification.getOldValue())) {
+                    if (r instanceof Resource) {
+                        for (EObject root : ((Resource) r).getContents()) {
+                            evict(root);
+                        }
+                    }
+                }
+                for (Object r : values(notification.getNewValue())) {
+                    if (r instanceof Resource) {
+                        for (EObject root : ((Resource) r).getContents()) {
+                            moved(root);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected boolean resolve() {
+        return false;
+    }
+
+    private void contentsChanged(Notification notification) {
+        switch (notification.getEventType()) {
+            case Notification.ADD:
+            case Notification.ADD_MANY:
+            case Notification.REMOVE:
+            case Notification.REMOVE_MANY:
+            case Notification.SET:
+            case Notification.UNSET:
+                for (Object obj : values(notification.getOldValue())) {
+                    if (obj instanceof EObject) {
+                        evict((EObject) obj);
+                    }
+                }
+                for (Object obj : values(notification.getNewValue())) {
+                    if (obj instanceof EObject) {
+                        moved((EObject) obj);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Drops the paths of the subtree and queues it to be added to the dictionary with its new paths.
+     */
+    private void moved(EObject root) {
+        evict(root);
+        pending.add(root);
+    }
+
+    private void evict(EObject root) {
+        evictOne(root);
+        TreeIterator<EObject> it = root.eAllContents();
+        while (it.hasNext()) {
+            evictOne(it.next());
+        }
+    }
+
+    private void evictOne(EObject obj) {
+        String path = paths.remove(obj);
+        if (path != null && dictionary.get(path) == obj) {
+            dictionary.remove(path);
+        }
+    }
+
+    private void addToDictionary(EObject obj, Function<EObject, String> pathOf) {
+        if (obj instanceof ALLNodes) {
+            String path = getPath(obj, pathOf);
+            if (path != null) {
+                dictionary.put(path, (ALLNodes) obj);
+            }
+        }
+    }
+
+    private boolean isAttached(EObject obj) {
+        Resource r = EcoreUtil.getRootContainer(obj).eResource();
+        return r != null && r.getResourceSet() == resourceSet;
+    }
+
+    private static Collection<?> values(Object value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        return value instanceof Collection<?> ? (Collection<?>) value : Collections.singletonList(value);
+    }
+}
@@ -0,0 +1,174 @@
+package edu.vanderbilt.isis.caid.assurancedsl.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature.Setting;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.AssurancePackage;
+
+/**
+ * Inverse index of the node references of a resource set: for every node, the GoalNodeRef,
+ * StrategyNodeRef, ... objects whose ref points to it.
+ *
+ * The index is an adapter on the resource set and all of its contents and is kept current by the
+ * notifications of edits, loads and unloads, so deleting a node or removing a reference only touches the
+ * referring objects instead of walking the whole resource set. Proxies are not resolved by the index; an
+ * unresolved reference is indexed under its proxy until it is resolved.
+ */
+public class NodeReferenceIndex extends ECrossReferenceAdapter {
+
+    private static final Set<EReference> NODE_REFS = new HashSet<EReference>(Arrays.asList(
+            AssurancePackage.Literals.GOAL_NODE_REF__REF, AssurancePackage.Literals.STRATEGY_NODE_REF__REF,
+            AssurancePackage.Literals.SOLUTION_NODE_REF__REF, AssurancePackage.Literals.CONTEXT_NODE_REF__REF,
+            AssurancePackage.Literals.ASSUMPTION_NODE_REF__REF,
+            AssurancePackage.Literals.JUSTIFICATION_NODE_REF__REF));
+
+    /**
+     * Returns the index of the resource set, attaching a new one if it has none yet.
+     */
+    public static NodeReferenceIndex install(ResourceSet resourceSet) {
+        NodeReferenceIndex index = find(resourceSet);
+        if (index == null) {
+            index = new NodeReferenceIndex();
+            resourceSet.eAdapters().add(index);
+        }
+        return index;
+    }
+
+    /**
+     * The index that the object (a resource set, resource or model object) is part of, or null.
+     */
+    public static NodeReferenceIndex find(Notifier target) {
+        if (target == null) {
+            return null;
+        }
+        for (Adapter adapter : target.eAdapters()) {
+            if (adapter instanceof NodeReferenceIndex) {
+                return (NodeReferenceIndex) adapter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The node references that point to the node, in no particular order.
+     */
+    public List<EObject> getReferrers(EObject node) {
+        Collection<Setting> settings = getNonNavigableInverseReferences(node, false);
+        List<EObject> result = new ArrayList<EObject>(settings.size());
+        for (Setting setting : settings) {
+            result.add(setting.getEObject());
+        }
+        return result;
+    }
+
+    /**
+     * The node references that point to the node or to a node contained in it, except the ones that are
+     * contained in the node themselves.
+     */
+    public List<EObject> getSubtreeReferrers(EObject node) {
+        List<EObject> result = new ArrayList<EObject>();
+        addReferrers(node, node, result);
+        TreeIterator<EObject> it = node.eAllContents();
+        while (it.hasNext()) {
+            EObject obj = it.next();
+            if (obj instanceof ALLNodes) {
+                addReferrers(obj, node, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the last reference to the child among the details of the node; returns false if the node
+     * has no such reference.
+     */
+    public boolean removeReference(EObject node, EObject child) {
+        EObject last = null;
+        List<?> details = null;
+        for (EObject ref : getReferrers(child)) {
+            if (ref.eContainer() != node) {
+                continue;
+            }
+            if (details == null) {
+                details = (List<?>) node.eGet(ref.eContainmentFeature());
+            }
+            if (last == null || details.indexOf(ref) > details.indexOf(last)) {
+                last = ref;
+            }
+        }
+        if (last == null) {
+            return false;
+        }
+        EcoreUtil.remove(last);
+        return true;
+    }
+
+    /**
+     * Resolves the node references that still point to proxies. Unlike resolving the whole resource set,
+     * this only visits the unresolved references.
+     */
+    public void resolveProxies() {
+        List<EObject> proxies = new ArrayList<EObject>();
+        for (EObject target : inverseCrossReferencer.keySet()) {
+            if (target.eIsProxy()) {
+                proxies.add(target);
+            }
+        }
+        for (EObject proxy : proxies) {
+            Collection<Setting> settings = inverseCrossReferencer.get(proxy);
+            if (settings == null) {
+                continue;
+            }
+            for (Setting setting : new ArrayList<Setting>(settings)) {
+                setting.getEObject().eGet(setting.getEStructuralFeature(), true);
+            }
+        }
+    }
+
+    /**
+     * The resources that contain a reference to the node or to a node contained in it.
+     */
+    public Set<Resource> getReferringResources(EObject node) {
+        Set<Resource> result = new HashSet<Resource>();
+        for (EObject ref : getSubtreeReferrers(node)) {
+            if (ref.eResource() != null) {
+                result.add(ref.eResource());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected boolean isIncluded(EReference eReference) {
+        return NODE_REFS.contains(eReference);
+    }
+
+    @Override
+    protected boolean resolve() {
+        return false;
+    }
+
+    private void addReferrers(EObject target, EObject root, List<EObject> result) {
+        for (EObject ref : getReferrers(target)) {
+            if (!EcoreUtil.isAncestor(root, ref)) {
+                result.add(ref);
+            }
+        }
+    }
+}
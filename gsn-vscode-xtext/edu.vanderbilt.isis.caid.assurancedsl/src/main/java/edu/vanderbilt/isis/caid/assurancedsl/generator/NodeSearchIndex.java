@@ -0,0 +1,653 @@
+package edu.vanderbilt.isis.caid.assurancedsl.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.BaseNode;
+
+/**
+ * Inverted index of the text of the nodes of a resource set: names, summaries, info texts, labels and
+ * artifact URIs.
+ *
+ * Texts are split into lower-case words at every character that is not a letter or digit, and a search
+ * term matches the words it is a prefix of. A node matches a search if every term of it matches a word of
+ * the node; nodes are ranked by where the terms matched (the name counts most, then labels, summary,
+ * info and artifacts) and whether they matched whole words.
+ *
+ * The index is a content adapter on the resource set. Nodes whose text may have changed, e.g. by
+ * setFeature, the subtree of a node renamed by OnNameChange and nodes of added resources are re-indexed by
+ * the next {@link #update()}, which every search starts with; nodes of removed resources are dropped right
+ * away. Every indexed node gets a number, and
+ * the postings of a word are arrays of numbers, so a search over a large model only adds up ints. Numbers
+ * are handed out in the order of the node ids whenever the index is renumbered, so equal scores are mostly
+ * ordered without comparing ids.
+ */
+public class NodeSearchIndex extends EContentAdapter {
+
+    public static final String NAME = "name";
+
+    public static final String LABELS = "labels";
+
+    public static final String SUMMARY = "summary";
+
+    public static final String INFO = "info";
+
+    public static final String ARTIFACTS = "artifacts";
+
+    private static final List<String> FIELDS = Arrays.asList(NAME, LABELS, SUMMARY, INFO, ARTIFACTS);
+
+    private static final int[] WEIGHTS = { 8, 4, 2, 1, 1 };
+
+    /**
+     * The best matches of a search and the number of all matches.
+     */
+    public static class Result {
+
+        public final List<Hit> hits;
+
+        public final int total;
+
+        Result(List<Hit> hits, int total) {
+            this.hits = hits;
+            this.total = total;
+        }
+    }
+
+    /**
+     * One match of a search.
+     */
+    public static class Hit {
+
+        public final ALLNodes node;
+
+        public final int score;
+
+        Hit(ALLNodes node, int score) {
+            this.node = node;
+            this.score = score;
+        }
+    }
+
+    /**
+     * The found words in one text of a node; ranges are pairs of start and end offsets into the text.
+     */
+    public static class Highlight {
+
+        public final String field;
+
+        public final String text;
+
+        public final List<int[]> ranges;
+
+        Highlight(String field, String text, List<int[]> ranges) {
+            this.field = field;
+            this.text = text;
+            this.ranges = ranges;
+        }
+    }
+
+    private static class Document {
+        ALLNodes node;
+        Resource resource;
+        /**
+         * The id of the node when it was indexed, in lower case; ties between equal scores are broken by it,
+         * which is the order of {@link AssuranceGenerator#compareNodeIds(String, String)} for ids.
+         */
+        String key;
+        /**
+         * The position of the document in {@link NodeSearchIndex#numbered}.
+         */
+        int number;
+        /**
+         * The texts of the node per field, in the order of {@link #FIELDS}.
+         */
+        List<List<String>> texts;
+        /**
+         * The fields each word occurs in, as a bit mask.
+         */
+        Map<String, Integer> words;
+    }
+
+    /**
+     * The documents a word occurs in, each entry the number of the document shifted left by the number of
+     * fields, or'ed with the mask of the fields. Entries of documents that were dropped are skipped by
+     * searches until the postings are compacted.
+     */
+    private static class Posting {
+        int[] entries = new int[2];
+        int size;
+
+        void add(int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+    }
+
+    private static final int FIELD_BITS = FIELDS.size();
+
+    /**
+     * The score of a match per field mask.
+     */
+    private static final int[] SCORES = new int[1 << FIELD_BITS];
+
+    static {
+        for (int mask = 0; mask < SCORES.length; mask++) {
+            for (int f = 0; f < FIELD_BITS; f++) {
+                if ((mask & (1 << f)) != 0) {
+                    SCORES[mask] += WEIGHTS[f];
+                }
+            }
+        }
+    }
+
+    private final ResourceSet resourceSet;
+
+    private final AssuranceGenerator generator;
+
+    private final Map<ALLNodes, Document> documents = new HashMap<ALLNodes, Document>();
+
+    /**
+     * The documents by number; null where a document was dropped.
+     */
+    private Document[] numbered = new Document[1024];
+
+    private int nextNumber;
+
+    /**
+     * The documents below this number are numbered in the order of their keys.
+     */
+    private int sortedCount;
+
+    private final Map<Resource, Set<ALLNodes>> byResource = new HashMap<Resource, Set<ALLNodes>>();
+
+    private final TreeMap<String, Posting> postings = new TreeMap<String, Posting>();
+
+    private final Set<ALLNodes> pending = new LinkedHashSet<ALLNodes>();
+
+    private boolean complete;
+
+    /**
+     * Per document number, the search term that last matched it and the score of that term.
+     */
+    private int[] marks = new int[1024];
+
+    private int[] termScores = new int[1024];
+
+    private int[] scores = new int[1024];
+
+    private int mark;
+
+    /**
+     * Returns the index of the resource set, attaching a new one if it has none yet.
+     */
+    public static NodeSearchIndex install(ResourceSet resourceSet, AssuranceGenerator generator) {
+        NodeSearchIndex index = find(resourceSet);
+        if (index == null) {
+            index = new NodeSearchIndex(resourceSet, generator);
+            resourceSet.eAdapters().add(index);
+        }
+        return index;
+    }
+
+    /**
+     * The index that the object (a resource set, resource or model object) is part of, or null.
+     */
+    public static NodeSearchIndex find(Notifier target) {
+        if (target == null) {
+            return null;
+        }
+        for (Adapter adapter : target.eAdapters()) {
+            if (adapter instanceof NodeSearchIndex) {
+                return (NodeSearchIndex) adapter;
+            }
+        }
+        return null;
+    }
+
+    private NodeSearchIndex(ResourceSet resourceSet, AssuranceGenerator generator) {
+        this.resourceSet = resourceSet;
+        this.generator = generator;
+    }
+
+    /**
+     * Returns the nodes of the given resources that match all words of the query, best first and then by
+     * id; at most limit hits unless limit is negative.
+     */
+    public synchronized Result search(String query, int limit, Collection<Resource> resources) {
+        update();
+        List<String> terms = new ArrayList<String>(new LinkedHashSet<String>(tokenize(query)));
+        if (terms.isEmpty()) {
+            return new Result(Collections.<Hit>emptyList(), 0);
+        }
+        List<SortedMap<String, Posting>> matches = new ArrayList<SortedMap<String, Posting>>(terms.size());
+        int[] sizes = new int[terms.size()];
+        for (String term : terms) {
+            SortedMap<String, Posting> words = postings.subMap(term, term + Character.MAX_VALUE);
+            int size = 0;
+            for (Posting posting : words.values()) {
+                size += posting.size;
+            }
+            if (size == 0) {
+                return new Result(Collections.<Hit>emptyList(), 0);
+            }
+            sizes[matches.size()] = size;
+            matches.add(words);
+        }
+        // Start from the rarest term, so that the candidates are few from the start.
+        List<Integer> order = new ArrayList<Integer>();
+        for (int t = 0; t < terms.size(); t++) {
+            order.add(t);
+        }
+        order.sort((t1, t2) -> Integer.compare(sizes[t1], sizes[t2]));
+
+        int[] candidates = new int[16];
+        int count = 0;
+        for (int i = 0; i < order.size(); i++) {
+            String term = terms.get(order.get(i));
+            int termMark = nextMark();
+            for (Map.Entry<String, Posting> e : matches.get(order.get(i)).entrySet()) {
+                int factor = e.getKey().equals(term) ? 2 : 1;
+                Posting posting = e.getValue();
+                for (int p = 0; p < posting.size; p++) {
+                    int n = posting.entries[p] >>> FIELD_BITS;
+                    if (numbered[n] == null) {
+                        continue;
+                    }
+                    int score = factor * SCORES[posting.entries[p] & (SCORES.length - 1)];
+                    if (marks[n] != termMark) {
+                        marks[n] = termMark;
+                        termScores[n] = score;
+                        if (i == 0) {
+                            if (count == candidates.length) {
+                                candidates = Arrays.copyOf(candidates, count * 2);
+                            }
+                            candidates[count++] = n;
+                        }
+                    } else if (score > termScores[n]) {
+                        termScores[n] = score;
+                    }
+                }
+            }
+            int kept = 0;
+            for (int c = 0; c < count; c++) {
+                int n = candidates[c];
+                if (marks[n] == termMark) {
+                    scores[n] = i == 0 ? termScores[n] : scores[n] + termScores[n];
+                    candidates[kept++] = n;
+                }
+            }
+            count = kept;
+        }
+
+        Set<Resource> scope = Collections.newSetFromMap(new IdentityHashMap<Resource, Boolean>());
+        scope.addAll(resources);
+        if (!scope.containsAll(byResource.keySet())) {
+            int kept = 0;
+            for (int c = 0; c < count; c++) {
+                if (scope.contains(numbered[candidates[c]].resource)) {
+                    candidates[kept++] = candidates[c];
+                }
+            }
+            count = kept;
+        }
+
+        // Keep only the best hits while scanning, so a short query over a large model sorts little.
+        Comparator<Integer> best = (n1, n2) -> compare(n1, n2);
+        int size = limit >= 0 ? Math.min(limit, count) : count;
+        PriorityQueue<Integer> top = new PriorityQueue<Integer>(Math.max(1, size + 1), best.reversed());
+        for (int c = 0; c < count && size > 0; c++) {
+            if (top.size() < size) {
+                top.add(candidates[c]);
+            } else if (compare(candidates[c], top.peek()) < 0) {
+                top.poll();
+                top.add(candidates[c]);
+            }
+        }
+        List<Integer> numbers = new ArrayList<Integer>(top);
+        numbers.sort(best);
+        List<Hit> hits = new ArrayList<Hit>(numbers.size());
+        for (int n : numbers) {
+            hits.add(new Hit(numbered[n].node, scores[n]));
+        }
+        return new Result(hits, count);
+    }
+
+    /**
+     * The texts of the node in which words of the query were found, with the ranges of the found words.
+     */
+    public synchronized List<Highlight> highlight(ALLNodes node, String query) {
+        List<Highlight> result = new ArrayList<Highlight>();
+        Document document = documents.get(node);
+        List<String> terms = tokenize(query);
+        if (document == null || terms.isEmpty()) {
+            return result;
+        }
+        for (int f = 0; f < FIELDS.size(); f++) {
+            for (String text : document.texts.get(f)) {
+                List<int[]> ranges = new ArrayList<int[]>();
+                String lower = text.toLowerCase(Locale.ROOT);
+                for (int[] word : getWords(lower)) {
+                    int end = -1;
+                    for (String term : terms) {
+                        if (term.length() <= word[1] - word[0] && lower.startsWith(term, word[0])) {
+                            end = Math.max(end, word[0] + term.length());
+                        }
+                    }
+                    if (end >= 0) {
+                        ranges.add(new int[] { word[0], end });
+                    }
+                }
+                if (!ranges.isEmpty()) {
+                    result.add(new Highlight(FIELDS.get(f), text, ranges));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void notifyChanged(Notification notification) {
+        super.notifyChanged(notification);
+        if (notification.isTouch()) {
+            return;
+        }
+        Object notifier = notification.getNotifier();
+        Object feature = notification.getFeature();
+        if (notifier instanceof EObject) {
+            if (feature instanceof EAttribute && "name".equals(((EAttribute) feature).getName())) {
+                // The ids of the whole subtree change with the name.
+                added((EObject) notifier);
+            } else if (feature instanceof EReference && ((EReference) feature).isContainment()) {
+                contentsChanged(notification);
+            }
+            // Any change below a node may change its text.
+            for (EObject obj = (EObject) notifier; obj != null; obj = obj.eContainer()) {
+                if (obj instanceof ALLNodes) {
+                    pending.add((ALLNodes) obj);
+                    break;
+                }
+            }
+        } else if (notifier instanceof Resource) {
+            if (notification.getFeatureID(Resource.class) == Resource.RESOURCE__CONTENTS) {
+                contentsChanged(notification);
+            }
+        } else if (notifier instanceof ResourceSet) {
+            if (notification.getFeatureID(ResourceSet.class) == ResourceSet.RESOURCE_SET__RESOURCES) {
+                for (Object r : values(notification.getOldValue())) {
+                    Set<ALLNodes> nodes = byResource.get(r);
+                    if (nodes != null) {
+                        for (ALLNodes node : new ArrayList<ALLNodes>(nodes)) {
+                            remove(node);
+                        }
+                    }
+                }
+                for (Object r : values(notification.getNewValue())) {
+                    if (r instanceof Resource) {
+                        for (EObject root : ((Resource) r).getContents()) {
+                            added(root);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected boolean resolve() {
+        return false;
+    }
+
+    private int compare(int n1, int n2) {
+        int c = Integer.compare(scores[n2], scores[n1]);
+        if (c == 0 && (n1 >= sortedCount || n2 >= sortedCount)) {
+            c = numbered[n1].key.compareTo(numbered[n2].key);
+        }
+        return c != 0 ? c : Integer.compare(n1, n2);
+    }
+
+    private int nextMark() {
+        if (mark == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            mark = 0;
+        }
+        return ++mark;
+    }
+
+    /**
+     * Indexes the nodes of the resource set that are new or may have changed since the last update; the
+     * first update indexes the whole resource set.
+     */
+    public synchronized void update() {
+        if (!complete) {
+            complete = true;
+            for (Resource r : resourceSet.getResources()) {
+                for (EObject root : r.getContents()) {
+                    added(root);
+                }
+            }
+        }
+        List<ALLNodes> nodes = new ArrayList<ALLNodes>(pending);
+        pending.clear();
+        for (ALLNodes node : nodes) {
+            remove(node);
+            Resource r = EcoreUtil.getRootContainer(node).eResource();
+            if (r != null && r.getResourceSet() == resourceSet && !node.eIsProxy()) {
+                index(node, r);
+            }
+        }
+        // Renumber once many documents were indexed since the last time, e.g. after the first update, or
+        // most postings entries belong to dropped documents.
+        int threshold = Math.max(1024, documents.size() / 4);
+        if (nextNumber - sortedCount > threshold || nextNumber - documents.size() > threshold) {
+            compact();
+        }
+    }
+
+    private void index(ALLNodes node, Resource r) {
+        EList<BaseNode> details = generator.getNodeDetails(node);
+        Document document = new Document();
+        document.node = node;
+        document.resource = r;
+        document.key = String.valueOf(generator.getNodeFQN(node)).toLowerCase(Locale.ROOT);
+        document.texts = new ArrayList<List<String>>(FIELDS.size());
+        List<String> none = Collections.emptyList();
+        document.texts.add(nonEmpty(generator.getNodeName(node)));
+        document.texts.add(details != null ? generator.dumpNodeLabels(details) : none);
+        document.texts.add(details != null ? nonEmpty(generator.dumpNodeSummary(details)) : none);
+        document.texts.add(details != null ? nonEmpty(generator.dumpNodeInfo(details)) : none);
+        document.texts.add(details != null ? generator.dumpNodeArtifacts(details) : none);
+        document.words = new HashMap<String, Integer>();
+        for (int f = 0; f < FIELDS.size(); f++) {
+            for (String text : document.texts.get(f)) {
+                for (String word : tokenize(text)) {
+                    document.words.merge(word, 1 << f, (m1, m2) -> m1 | m2);
+                }
+            }
+        }
+        documents.put(node, document);
+        byResource.computeIfAbsent(r, k -> new HashSet<ALLNodes>()).add(node);
+        number(document);
+    }
+
+    private void number(Document document) {
+        if (nextNumber == numbered.length) {
+            int capacity = numbered.length * 2;
+            numbered = Arrays.copyOf(numbered, capacity);
+            marks = Arrays.copyOf(marks, capacity);
+            termScores = new int[capacity];
+            scores = new int[capacity];
+        }
+        document.number = nextNumber++;
+        numbered[document.number] = document;
+        for (Map.Entry<String, Integer> e : document.words.entrySet()) {
+            postings.computeIfAbsent(e.getKey(), k -> new Posting())
+                    .add(document.number << FIELD_BITS | e.getValue());
+        }
+    }
+
+    /**
+     * Numbers the documents again in the order of their keys, without the dropped ones.
+     */
+    private void compact() {
+        List<Document> live = new ArrayList<Document>(documents.size());
+        for (int n = 0; n < nextNumber; n++) {
+            if (numbered[n] != null) {
+                live.add(numbered[n]);
+            }
+        }
+        live.sort((d1, d2) -> d1.key.compareTo(d2.key));
+        int capacity = Math.max(1024, Integer.highestOneBit(live.size()) * 2);
+        numbered = new Document[capacity];
+        marks = new int[capacity];
+        termScores = new int[capacity];
+        scores = new int[capacity];
+        mark = 0;
+        nextNumber = 0;
+        postings.clear();
+        for (Document document : live) {
+            number(document);
+        }
+        sortedCount = nextNumber;
+    }
+
+    private void remove(ALLNodes node) {
+        Document document = documents.remove(node);
+        if (document == null) {
+            return;
+        }
+        numbered[document.number] = null;
+        Set<ALLNodes> nodes = byResource.get(document.resource);
+        if (nodes != null) {
+            nodes.remove(node);
+            if (nodes.isEmpty()) {
+                byResource.remove(document.resource);
+            }
+        }
+    }
+
+    private void contentsChanged(Notification notification) {
+        switch (notification.getEventType()) {
+            case Notification.ADD:
+            case Notification.ADD_MANY:
+            case Notification.REMOVE:
+            case Notification.REMOVE_MANY:
+            case Notification.SET:
+            case Notification.UNSET:
+                for (Object obj : values(notification.getOldValue())) {
+                    if (obj instanceof EObject) {
+                        removed((EObject) obj);
+                    }
+                }
+                for (Object obj : values(notification.getNewValue())) {
+                    if (obj instanceof EObject) {
+                        added((EObject) obj);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void added(EObject root) {
+        if (root instanceof ALLNodes) {
+            pending.add((ALLNodes) root);
+        }
+        TreeIterator<EObject> it = root.eAllContents();
+        while (it.hasNext()) {
+            EObject obj = it.next();
+            if (obj instanceof ALLNodes) {
+                pending.add((ALLNodes) obj);
+            }
+        }
+    }
+
+    private void removed(EObject root) {
+        if (root instanceof ALLNodes) {
+            remove((ALLNodes) root);
+            pending.remove(root);
+        }
+        TreeIterator<EObject> it = root.eAllContents();
+        while (it.hasNext()) {
+            EObject obj = it.next();
+            if (obj instanceof ALLNodes) {
+                remove((ALLNodes) obj);
+                pending.remove(obj);
+            }
+        }
+    }
+
+    /**
+     * Splits the text into lower-case words at every character that is not a letter or digit.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<String>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int[] word : getWords(lower)) {
+            words.add(lower.substring(word[0], word[1]));
+        }
+        return words;
+    }
+
+    /**
+     * The start and end offsets of the words of the text.
+     */
+    private static List<int[]> getWords(String text) {
+        List<int[]> words = new ArrayList<int[]>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(new int[] { start, i });
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static List<String> nonEmpty(String text) {
+        return text == null || text.isEmpty() ? Collections.<String>emptyList() : Collections.singletonList(text);
+    }
+
+    private static Collection<?> values(Object value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        return value instanceof Collection<?> ? (Collection<?>) value : Collections.singletonList(value);
+    }
+}
@@ -0,0 +1,89 @@
+package edu.vanderbilt.isis.caid.assurancedsl.generator;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for one phase of a command (parse, link, JSON generation, sort, update,
+ * format, save, ...), carrying the command and model directory that the current thread works on.
+ *
+ * Use it as {@code PhaseEvent e = PhaseEvent.start("parse"); ...; e.end(resources, nodes, bytes);}. When
+ * the event is not enabled in a recording, {@link #end(int, int, long)} does nothing but a check, and the
+ * JIT removes the allocation of the event.
+ */
+@Name("edu.vanderbilt.isis.caid.assurancedsl.Phase")
+@Label("GSN Phase")
+@Category({ "GSN", "Commands" })
+@Description("A phase of a gsn.* command of the language server")
+@StackTrace(false)
+public class PhaseEvent extends Event {
+
+    private static final ThreadLocal<String[]> COMMAND = new ThreadLocal<String[]>();
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Command")
+    public String command;
+
+    @Label("Model Directory")
+    public String modelDir;
+
+    @Label("Resource Count")
+    public int resourceCount;
+
+    @Label("Node Count")
+    public int nodeCount;
+
+    @Label("Bytes Out")
+    @DataAmount
+    public long bytesOut;
+
+    public static PhaseEvent start(String phase) {
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event with the given counts if it is recorded; a count of -1 means not applicable.
+     */
+    public void end(int resources, int nodes, long bytes) {
+        if (shouldCommit()) {
+            String[] context = COMMAND.get();
+            if (context != null) {
+                command = context[0];
+                modelDir = context[1];
+            }
+            resourceCount = resources;
+            nodeCount = nodes;
+            bytesOut = bytes;
+            commit();
+        }
+    }
+
+    /**
+     * Sets the command that the phases of the current thread belong to, until {@link #clearCommand()}.
+     */
+    public static void setCommand(String command, String modelDir) {
+        COMMAND.set(new String[] { command, modelDir });
+    }
+
+    /**
+     * The model directory of the command of the current thread, or null.
+     */
+    public static String getModelDir() {
+        String[] context = COMMAND.get();
+        return context != null ? context[1] : null;
+    }
+
+    public static void clearCommand() {
+        COMMAND.remove();
+    }
+}
@@ -0,0 +1,106 @@
+package edu.vanderbilt.isis.caid.assurancedsl.scoping;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.IContainer;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IResourceDescriptions;
+import org.eclipse.xtext.resource.ISelectable;
+import org.eclipse.xtext.resource.containers.FilterUriContainer;
+import org.eclipse.xtext.resource.impl.ResourceDescriptionsData;
+import org.eclipse.xtext.resource.impl.ResourceSetBasedResourceDescriptions;
+import org.eclipse.xtext.scoping.IScope;
+import org.eclipse.xtext.scoping.impl.DefaultGlobalScopeProvider;
+import org.eclipse.xtext.scoping.impl.SelectableBasedScope;
+
+import com.google.common.base.Predicate;
+import com.google.inject.Inject;
+
+/**
+ * Global scope that looks up the targets of cross references (ref_goal:, ref_strategy:, ...) by name in
+ * the {@link QualifiedNameIndex} of the resource set.
+ *
+ * Only the resource set based descriptions used when the models are loaded standalone are indexed; an
+ * index that the language server attached to the resource set already supports lookups by name, and
+ * lookups that ignore case are left to the default implementation.
+ */
+public class AssuranceGlobalScopeProvider extends DefaultGlobalScopeProvider {
+
+    /**
+     * The objects of a container, without those of the resource the scope is created for (they are in
+     * its local scope), with name lookups served by the index.
+     */
+    private class IndexedContainer implements ISelectable {
+
+        private final ResourceSet resourceSet;
+
+        private final IResourceDescriptions descriptions;
+
+        private final IContainer container;
+
+        private final URI excluded;
+
+        IndexedContainer(ResourceSet resourceSet, IResourceDescriptions descriptions, IContainer container,
+                URI excluded) {
+            this.resourceSet = resourceSet;
+            this.descriptions = descriptions;
+            this.container = container;
+            this.excluded = excluded;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return filtered().isEmpty();
+        }
+
+        @Override
+        public Iterable<IEObjectDescription> getExportedObjects() {
+            return filtered().getExportedObjects();
+        }
+
+        @Override
+        public Iterable<IEObjectDescription> getExportedObjects(EClass type, QualifiedName name, boolean ignoreCase) {
+            if (ignoreCase) {
+                return filtered().getExportedObjects(type, name, ignoreCase);
+            }
+            return index.getExportedObjects(resourceSet, descriptions, container, excluded, type, name);
+        }
+
+        @Override
+        public Iterable<IEObjectDescription> getExportedObjectsByType(EClass type) {
+            return filtered().getExportedObjectsByType(type);
+        }
+
+        @Override
+        public Iterable<IEObjectDescription> getExportedObjectsByObject(EObject object) {
+            return filtered().getExportedObjectsByObject(object);
+        }
+
+        private IContainer filtered() {
+            return new FilterUriContainer(excluded, container);
+        }
+    }
+
+    @Inject
+    private QualifiedNameIndex index;
+
+    @Override
+    protected IScope createContainerScopeWithContext(Resource eResource, IScope parent, IContainer container,
+            Predicate<IEObjectDescription> filter, EClass type, boolean ignoreCase) {
+        ResourceSet resourceSet = eResource != null ? eResource.getResourceSet() : null;
+        if (ignoreCase || resourceSet == null
+                || ResourceDescriptionsData.ResourceSetAdapter.findResourceDescriptionsData(resourceSet) != null) {
+            return super.createContainerScopeWithContext(eResource, parent, container, filter, type, ignoreCase);
+        }
+        IResourceDescriptions descriptions = getResourceDescriptions(eResource);
+        if (!(descriptions instanceof ResourceSetBasedResourceDescriptions)) {
+            return super.createContainerScopeWithContext(eResource, parent, container, filter, type, ignoreCase);
+        }
+        ISelectable selectable = new IndexedContainer(resourceSet, descriptions, container, eResource.getURI());
+        return SelectableBasedScope.createScope(parent, selectable, filter, type, ignoreCase);
+    }
+}
@@ -0,0 +1,209 @@
+package edu.vanderbilt.isis.caid.assurancedsl.scoping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.EcoreUtil2;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.IContainer;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.IResourceDescriptions;
+import org.eclipse.xtext.util.IResourceScopeCache;
+import org.eclipse.xtext.util.OnChangeEvictingCache;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Maps the qualified names of the objects exported by the resources of a resource set to their
+ * descriptions, per EClass, so that the global scope finds the target of a cross reference in O(1)
+ * instead of asking every resource description in turn.
+ *
+ * The index is attached to the resource set and shared by all linking passes. It is brought up to date
+ * before a lookup only if a resource was added, removed or changed since the last lookup (the eviction
+ * of a resource's cache tells when it changed), and then only the entries of the resources whose
+ * description changed are replaced.
+ */
+@Singleton
+public class QualifiedNameIndex {
+
+    /**
+     * The index of one resource set.
+     */
+    private static class Index extends AdapterImpl implements OnChangeEvictingCache.Listener {
+
+        private Map<URI, IResourceDescription> descriptions = new LinkedHashMap<URI, IResourceDescription>();
+
+        private final Map<URI, List<IEObjectDescription>> exported = new HashMap<URI, List<IEObjectDescription>>();
+
+        private final Map<EClass, Map<QualifiedName, List<IEObjectDescription>>> byType = new HashMap<EClass, Map<QualifiedName, List<IEObjectDescription>>>();
+
+        private final Map<Resource, OnChangeEvictingCache.CacheAdapter> observed = new HashMap<Resource, OnChangeEvictingCache.CacheAdapter>();
+
+        private volatile boolean dirty = true;
+
+        @Override
+        public void notifyChanged(Notification msg) {
+            if (msg.getFeatureID(ResourceSet.class) == ResourceSet.RESOURCE_SET__RESOURCES) {
+                dirty = true;
+            }
+        }
+
+        @Override
+        public void onEvict(OnChangeEvictingCache.CacheAdapter cache) {
+            dirty = true;
+        }
+
+        @Override
+        public boolean isAdapterForType(Object type) {
+            return type == Index.class;
+        }
+
+        private void add(IResourceDescription description) {
+            List<IEObjectDescription> objects = new ArrayList<IEObjectDescription>();
+            for (IEObjectDescription obj : description.getExportedObjects()) {
+                objects.add(obj);
+                byType.computeIfAbsent(obj.getEClass(), k -> new HashMap<QualifiedName, List<IEObjectDescription>>())
+                        .computeIfAbsent(obj.getName(), k -> new ArrayList<IEObjectDescription>(1)).add(obj);
+            }
+            exported.put(description.getURI(), objects);
+        }
+
+        private void remove(URI uri) {
+            List<IEObjectDescription> objects = exported.remove(uri);
+            if (objects == null) {
+                return;
+            }
+            for (IEObjectDescription obj : objects) {
+                Map<QualifiedName, List<IEObjectDescription>> byName = byType.get(obj.getEClass());
+                List<IEObjectDescription> list = byName != null ? byName.get(obj.getName()) : null;
+                if (list != null) {
+                    list.removeIf(o -> o == obj);
+                    if (list.isEmpty()) {
+                        byName.remove(obj.getName());
+                    }
+                }
+            }
+        }
+    }
+
+    @Inject
+    private IResourceScopeCache cache;
+
+    /**
+     * Returns the descriptions of the objects of the given type (or a subtype) with the given name that
+     * are exported by a resource of the given container other than the excluded one. The descriptions
+     * must be the ones of the given resource set.
+     */
+    public List<IEObjectDescription> getExportedObjects(ResourceSet resourceSet, IResourceDescriptions descriptions,
+            IContainer container, URI excluded, EClass type, QualifiedName name) {
+        Index index = getIndex(resourceSet);
+        synchronized (index) {
+            if (index.dirty) {
+                refresh(index, resourceSet, descriptions);
+            }
+            boolean all = container.getResourceDescriptionCount() == index.descriptions.size();
+            List<IEObjectDescription> result = null;
+            for (Map.Entry<EClass, Map<QualifiedName, List<IEObjectDescription>>> e : index.byType.entrySet()) {
+                if (!EcoreUtil2.isAssignableFrom(type, e.getKey())) {
+                    continue;
+                }
+                List<IEObjectDescription> objects = e.getValue().get(name);
+                if (objects == null) {
+                    continue;
+                }
+                for (IEObjectDescription obj : objects) {
+                    URI uri = obj.getEObjectURI().trimFragment();
+                    if (!uri.equals(excluded) && (all || container.hasResourceDescription(uri))) {
+                        if (result == null) {
+                            result = new ArrayList<IEObjectDescription>(1);
+                        }
+                        result.add(obj);
+                    }
+                }
+            }
+            return result != null ? result : Collections.<IEObjectDescription>emptyList();
+        }
+    }
+
+    private void refresh(Index index, ResourceSet resourceSet, IResourceDescriptions descriptions) {
+        // Cleared first, so that a change while the index is refreshed marks it dirty again.
+        index.dirty = false;
+        observe(index, resourceSet);
+
+        Map<URI, IResourceDescription> current = new LinkedHashMap<URI, IResourceDescription>();
+        for (IResourceDescription description : descriptions.getAllResourceDescriptions()) {
+            current.put(description.getURI(), description);
+        }
+        for (Map.Entry<URI, IResourceDescription> e : index.descriptions.entrySet()) {
+            if (current.get(e.getKey()) != e.getValue()) {
+                index.remove(e.getKey());
+            }
+        }
+        for (Map.Entry<URI, IResourceDescription> e : current.entrySet()) {
+            if (index.descriptions.get(e.getKey()) != e.getValue()) {
+                index.remove(e.getKey());
+                index.add(e.getValue());
+            }
+        }
+        index.descriptions = current;
+    }
+
+    /**
+     * Listens to the cache of every resource of the resource set, which is cleared whenever the resource
+     * changes. Without such caches the index is refreshed before every lookup.
+     */
+    private void observe(Index index, ResourceSet resourceSet) {
+        if (!(cache instanceof OnChangeEvictingCache)) {
+            index.dirty = true;
+            return;
+        }
+        Set<Resource> resources = new HashSet<Resource>(resourceSet.getResources());
+        for (Iterator<Map.Entry<Resource, OnChangeEvictingCache.CacheAdapter>> it = index.observed.entrySet()
+                .iterator(); it.hasNext();) {
+            Map.Entry<Resource, OnChangeEvictingCache.CacheAdapter> e = it.next();
+            if (!resources.contains(e.getKey())) {
+                e.getValue().removeCacheListener(index);
+                it.remove();
+            }
+        }
+        for (Resource r : resources) {
+            OnChangeEvictingCache.CacheAdapter adapter = ((OnChangeEvictingCache) cache).getOrCreate(r);
+            OnChangeEvictingCache.CacheAdapter previous = index.observed.put(r, adapter);
+            if (previous != adapter) {
+                if (previous != null) {
+                    previous.removeCacheListener(index);
+                }
+                adapter.addCacheListener(index);
+            }
+        }
+    }
+
+    private static Index getIndex(ResourceSet resourceSet) {
+        synchronized (resourceSet) {
+            for (Adapter adapter : resourceSet.eAdapters()) {
+                if (adapter instanceof Index) {
+                    return (Index) adapter;
+                }
+            }
+            Index index = new Index();
+            resourceSet.eAdapters().add(index);
+            return index;
+        }
+    }
+}
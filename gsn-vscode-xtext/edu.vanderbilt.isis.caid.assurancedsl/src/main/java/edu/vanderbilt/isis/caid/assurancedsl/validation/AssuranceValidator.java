@@ -5,20 +5,18 @@ package edu.vanderbilt.isis.caid.assurancedsl.validation;
 
 import org.checkerframework.checker.signature.qual.FullyQualifiedName;
 import org.eclipse.emf.ecore.EObject;
-import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.xtext.naming.IQualifiedNameProvider;
 import org.eclipse.xtext.naming.QualifiedName;
 import org.eclipse.xtext.validation.Check;
 import org.eclipse.xtext.validation.CheckType;
 import org.eclipse.xtext.xbase.lib.Extension;
-import org.eclipse.xtext.xbase.lib.IteratorExtensions;
 
-import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 
 import edu.vanderbilt.isis.caid.assurancedsl.assurance.UUIDType;
 import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
 import edu.vanderbilt.isis.caid.assurancedsl.assurance.AssurancePackage;
+import java.util.Map;
 import java.util.regex.*;
 
 /**
@@ -33,69 +31,58 @@ public class AssuranceValidator extends AbstractAssuranceValidator {
     private IQualifiedNameProvider _iQualifiedNameProvider;
     public static final String INVALID_UUID = "invalidUUID";
     public static final String DUPLICATE_UUID = "duplicateUuid";
-    public static final String DUPLICATE_FQN = "duplicateUuid";
+    public static final String DUPLICATE_FQN = "duplicateFqn";
 
+    private static final String DIRECTORY_COUNTS = UniquenessIndex.class.getName() + ".directory";
 
-    @Check(CheckType.NORMAL) // Run only at save
-    public void checkUniqueUUIDs(UUIDType uuid) {
-        // FIXME: This could end up being expensive
-        // If perf. issues - consider moving to a global check over the entire resource-set and only run once from it.
-        boolean hasDuplicate = false;
-        for (Resource resource : uuid.eResource().getResourceSet().getResources()) {
-            Iterable<UUIDType> uuidTypes = Iterables.<UUIDType>filter(
-                    IteratorExtensions.<EObject>toIterable(resource.getAllContents()), UUIDType.class);
+    @Inject
+    private UniquenessIndex uniquenessIndex;
 
-            for (UUIDType otherUuid : uuidTypes) {
-                if (otherUuid != uuid && uuid.getInfo().equals(otherUuid.getInfo())) {
-                    hasDuplicate = true;
-                    break;
-                }
-            }
 
-            if (hasDuplicate) {
-                break;
-            }
+    @Check(CheckType.NORMAL) // Run only at save
+    public void checkUniqueUUIDs(UUIDType uuid) {
+        if (uuid.getInfo() == null) {
+            return;
         }
-
-        if (hasDuplicate) {
+        if (getUniquenessCounts(uuid, false).getUUIDCount(uuid.getInfo()) > 1) {
             error("Duplicate 'uuid' : '" + uuid.getInfo() + "' - remove duplicates, save, then run 'GSN: Assign UUIDs'",
                     AssurancePackage.Literals.UUID_TYPE__INFO,
                     DUPLICATE_UUID);
         }
     }
 
-    // @Check(CheckType.NORMAL) // Run only at save
-    // public void checkUniqueFQN(ALLNodes node) {
-    //     boolean hasDuplicate = false;
-    //     String thisFqn = this._iQualifiedNameProvider.getFullyQualifiedName(node).toString();
-
-    //     for (Resource resource : node.eResource().getResourceSet().getResources()) {
-    //         Iterable<ALLNodes> otherNodes = Iterables.<ALLNodes>filter(
-    //                 IteratorExtensions.<EObject>toIterable(resource.getAllContents()), ALLNodes.class);
-
-    //         for (ALLNodes otherNode : otherNodes) {
-    //             if (otherNode == node) {
-    //                 continue;
-    //             }
-
-    //             String otherFqn = this._iQualifiedNameProvider.getFullyQualifiedName(otherNode).toString();
-    //             if (thisFqn.equals(otherFqn)) {
-    //                 hasDuplicate = true;
-    //                 break;
-    //             }
-    //         }
-
-    //         if (hasDuplicate) {
-    //             break;
-    //         }
-    //     }
+    @Check(CheckType.NORMAL) // Run only at save
+    public void checkUniqueFQN(ALLNodes node) {
+        QualifiedName fqn = this._iQualifiedNameProvider.getFullyQualifiedName(node);
+        if (fqn == null) {
+            return;
+        }
+        String thisFqn = fqn.toString();
+        if (getUniquenessCounts(node, true).getFQNCount(thisFqn) > 1) {
+            error("Duplicate fully qualified name : '" + thisFqn + "' - rename duplicate.",
+                    node.eClass().getEStructuralFeature("name"),
+                    DUPLICATE_FQN);
+        }
+    }
 
-    //     if (hasDuplicate) {
-    //         error("Duplicate fully qualified name : '" + thisFqn + "' - rename duplicate.",
-    //                 AssurancePackage.Literals.UUID_TYPE__INFO,
-    //                 DUPLICATE_FQN);
-    //     }
-    // }
+    /**
+     * Returns the UUID and name counts of the whole resource set, or of the model directory of the object.
+     * UUIDs are unique across all models, names only within a model. The counts are looked up once per
+     * validation pass; within a pass the model does not change.
+     */
+    private UniquenessIndex.Counts getUniquenessCounts(EObject obj, boolean directory) {
+        Map<Object, Object> context = getContext();
+        if (context == null) {
+            return directory ? uniquenessIndex.getDirectoryCounts(obj) : uniquenessIndex.getCounts(obj);
+        }
+        Object key = directory ? DIRECTORY_COUNTS : UniquenessIndex.class;
+        UniquenessIndex.Counts counts = (UniquenessIndex.Counts) context.get(key);
+        if (counts == null) {
+            counts = directory ? uniquenessIndex.getDirectoryCounts(obj) : uniquenessIndex.getCounts(obj);
+            context.put(key, counts);
+        }
+        return counts;
+    }
 
     @Check(CheckType.NORMAL) // Run only at save
     public void checkUUIDFormat(UUIDType uuid) {
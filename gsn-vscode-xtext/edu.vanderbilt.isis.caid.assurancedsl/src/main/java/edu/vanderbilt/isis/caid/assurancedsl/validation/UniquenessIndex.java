@@ -0,0 +1,198 @@
+package edu.vanderbilt.isis.caid.assurancedsl.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.naming.IQualifiedNameProvider;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.util.IResourceScopeCache;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.ALLNodes;
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.UUIDType;
+
+/**
+ * Counts the UUIDs and fully qualified names of all nodes in a resource set, for the duplicate checks of
+ * the validator. Besides the counts of the whole resource set there are the counts of every directory:
+ * a model directory is one model, and the language server keeps the files of all of them in one
+ * resource set.
+ *
+ * The counts of every resource are kept in the resource scope cache, so they are computed again only
+ * after the resource changed. The merged counts are attached to the resource set and merged again only
+ * when one of its resources changed, was added or was removed. Looking up a UUID or a name is O(1).
+ */
+@Singleton
+public class UniquenessIndex {
+
+    /**
+     * The merged counts of one resource set at one point in time.
+     */
+    public static class Counts {
+
+        private final Map<String, Integer> uuids = new HashMap<String, Integer>();
+
+        private final Map<String, Integer> fqns = new HashMap<String, Integer>();
+
+        public int getUUIDCount(String uuid) {
+            Integer count = uuids.get(uuid);
+            return count != null ? count : 0;
+        }
+
+        public int getFQNCount(String fqn) {
+            Integer count = fqns.get(fqn);
+            return count != null ? count : 0;
+        }
+
+        private void add(Counts other) {
+            for (Map.Entry<String, Integer> e : other.uuids.entrySet()) {
+                uuids.merge(e.getKey(), e.getValue(), Integer::sum);
+            }
+            for (Map.Entry<String, Integer> e : other.fqns.entrySet()) {
+                fqns.merge(e.getKey(), e.getValue(), Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * The merged counts of a resource set together with the per-resource counts they were merged from.
+     */
+    private static class MergedCounts extends AdapterImpl {
+
+        private List<Counts> parts = Collections.emptyList();
+
+        private List<URI> directories = Collections.emptyList();
+
+        private Counts counts;
+
+        private Map<URI, Counts> directoryCounts;
+
+        @Override
+        public boolean isAdapterForType(Object type) {
+            return type == MergedCounts.class;
+        }
+    }
+
+    private static final String CACHE_KEY = UniquenessIndex.class.getName();
+
+    @Inject
+    private IResourceScopeCache cache;
+
+    @Inject
+    private IQualifiedNameProvider qualifiedNameProvider;
+
+    /**
+     * Returns the counts of the resource set of the given object, or of its resource alone if it does
+     * not belong to a resource set.
+     */
+    public Counts getCounts(EObject obj) {
+        return getCounts(obj, false);
+    }
+
+    /**
+     * Like {@link #getCounts(EObject)}, but only of the resources in the directory of the object's
+     * resource.
+     */
+    public Counts getDirectoryCounts(EObject obj) {
+        return getCounts(obj, true);
+    }
+
+    private Counts getCounts(EObject obj, boolean directory) {
+        Resource resource = obj.eResource();
+        if (resource == null) {
+            return new Counts();
+        }
+        ResourceSet resourceSet = resource.getResourceSet();
+        if (resourceSet == null) {
+            return getCounts(resource);
+        }
+        synchronized (resourceSet) {
+            List<Resource> resources = new ArrayList<Resource>(resourceSet.getResources());
+            List<Counts> parts = new ArrayList<Counts>(resources.size());
+            List<URI> directories = new ArrayList<URI>(resources.size());
+            for (Resource r : resources) {
+                parts.add(getCounts(r));
+                directories.add(getDirectory(r));
+            }
+            MergedCounts merged = getMergedCounts(resourceSet);
+            if (merged.counts == null || !isSame(merged.parts, parts) || !merged.directories.equals(directories)) {
+                Counts counts = new Counts();
+                Map<URI, Counts> directoryCounts = new HashMap<URI, Counts>();
+                for (int i = 0; i < parts.size(); i++) {
+                    counts.add(parts.get(i));
+                    directoryCounts.computeIfAbsent(directories.get(i), k -> new Counts()).add(parts.get(i));
+                }
+                merged.parts = parts;
+                merged.directories = directories;
+                merged.counts = counts;
+                merged.directoryCounts = directoryCounts;
+            }
+            if (!directory) {
+                return merged.counts;
+            }
+            Counts counts = merged.directoryCounts.get(getDirectory(resource));
+            return counts != null ? counts : getCounts(resource);
+        }
+    }
+
+    private Counts getCounts(Resource resource) {
+        return cache.get(CACHE_KEY, resource, () -> {
+            Counts counts = new Counts();
+            Iterator<EObject> it = resource.getAllContents();
+            while (it.hasNext()) {
+                EObject obj = it.next();
+                if (obj instanceof UUIDType) {
+                    String uuid = ((UUIDType) obj).getInfo();
+                    if (uuid != null) {
+                        counts.uuids.merge(uuid, 1, Integer::sum);
+                    }
+                } else if (obj instanceof ALLNodes) {
+                    QualifiedName fqn = qualifiedNameProvider.getFullyQualifiedName(obj);
+                    if (fqn != null) {
+                        counts.fqns.merge(fqn.toString(), 1, Integer::sum);
+                    }
+                }
+            }
+            return counts;
+        });
+    }
+
+    private static URI getDirectory(Resource resource) {
+        URI uri = resource.getURI();
+        return uri != null ? uri.trimSegments(1) : null;
+    }
+
+    private static MergedCounts getMergedCounts(ResourceSet resourceSet) {
+        for (Adapter adapter : resourceSet.eAdapters()) {
+            if (adapter instanceof MergedCounts) {
+                return (MergedCounts) adapter;
+            }
+        }
+        MergedCounts merged = new MergedCounts();
+        resourceSet.eAdapters().add(merged);
+        return merged;
+    }
+
+    private static boolean isSame(List<Counts> a, List<Counts> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package edu.vanderbilt.isis.caid.assurancedsl.tests
+
+import com.google.inject.Inject
+import com.google.inject.Provider
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.AssuranceModel
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.GoalNode
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.GoalNodeRef
+import edu.vanderbilt.isis.caid.assurancedsl.scoping.QualifiedNameIndex
+import org.eclipse.emf.common.util.URI
+import org.eclipse.emf.ecore.resource.ResourceSet
+import org.eclipse.xtext.resource.XtextResourceSet
+import org.eclipse.xtext.testing.InjectWith
+import org.eclipse.xtext.testing.extensions.InjectionExtension
+import org.eclipse.xtext.testing.util.ParseHelper
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.^extension.ExtendWith
+
+@ExtendWith(InjectionExtension)
+@InjectWith(AssuranceInjectorProvider)
+class AssuranceScopingTest {
+	@Inject
+	ParseHelper<AssuranceModel> parseHelper
+
+	@Inject
+	Provider<XtextResourceSet> resourceSetProvider
+
+	@Test
+	def void referencesIntoOtherFiles() {
+		val resourceSet = resourceSetProvider.get
+		val target = parseHelper.parse('''
+			GOALS a
+			{
+			    goal G1
+			    {
+			        uuid:"0d12aa3a-f15f-4fa1-a6d5-3bf10f384b52";
+			    }
+			}
+		''', URI.createURI("a.gsn"), resourceSet)
+		val goal = target.eAllContents.filter(GoalNode).head
+		Assertions.assertSame(goal, resolve(resourceSet, "b", "a.G1"))
+		// the lookup went through the index of the resource set
+		Assertions.assertTrue(resourceSet.eAdapters.exists[class.enclosingClass == QualifiedNameIndex])
+
+		// the index follows a rename
+		goal.name = "Renamed"
+		Assertions.assertTrue(resolve(resourceSet, "c", "a.G1").eIsProxy)
+		Assertions.assertSame(goal, resolve(resourceSet, "d", "a.Renamed"))
+
+		// and the removal of a resource
+		val resource = target.eResource
+		resource.unload
+		resourceSet.resources.remove(resource)
+		Assertions.assertTrue(resolve(resourceSet, "e", "a.Renamed").eIsProxy)
+	}
+
+	/**
+	 * Parses a file with a goal that references the given name and returns the target of the reference.
+	 */
+	private def GoalNode resolve(ResourceSet resourceSet, String name, String reference) {
+		val model = parseHelper.parse('''
+			GOALS «name»
+			{
+			    goal Referrer
+			    {
+			        uuid:"6d39f8d2-6b07-4334-bdcc-dc47bee4dde3";
+			        ref_goal: «reference»;
+			    }
+			}
+		''', URI.createURI(name + ".gsn"), resourceSet)
+		model.eAllContents.filter(GoalNodeRef).head.ref
+	}
+}
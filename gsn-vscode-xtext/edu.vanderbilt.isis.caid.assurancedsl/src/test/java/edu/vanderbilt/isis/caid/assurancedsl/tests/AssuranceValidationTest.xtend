@@ -0,0 +1,129 @@
+package edu.vanderbilt.isis.caid.assurancedsl.tests
+
+import com.google.inject.Inject
+import com.google.inject.Provider
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.AssuranceModel
+import edu.vanderbilt.isis.caid.assurancedsl.assurance.AssurancePackage
+import edu.vanderbilt.isis.caid.assurancedsl.validation.AssuranceValidator
+import org.eclipse.emf.common.util.URI
+import org.eclipse.xtext.resource.XtextResourceSet
+import org.eclipse.xtext.testing.InjectWith
+import org.eclipse.xtext.testing.extensions.InjectionExtension
+import org.eclipse.xtext.testing.util.ParseHelper
+import org.eclipse.xtext.testing.validation.ValidationTestHelper
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.^extension.ExtendWith
+
+@ExtendWith(InjectionExtension)
+@InjectWith(AssuranceInjectorProvider)
+class AssuranceValidationTest {
+	@Inject
+	ParseHelper<AssuranceModel> parseHelper
+
+	@Inject
+	ValidationTestHelper validationHelper
+
+	@Inject
+	Provider<XtextResourceSet> resourceSetProvider
+
+	@Test
+	def void duplicateUUIDsAcrossFiles() {
+		val resourceSet = resourceSetProvider.get
+		val first = parseHelper.parse('''
+			GOALS a
+			{
+			    goal G1
+			    {
+			        uuid:"0d12aa3a-f15f-4fa1-a6d5-3bf10f384b52";
+			    }
+			}
+		''', URI.createURI("a.gsn"), resourceSet)
+		val second = parseHelper.parse('''
+			GOALS b
+			{
+			    goal G2
+			    {
+			        uuid:"0d12aa3a-f15f-4fa1-a6d5-3bf10f384b52";
+			    }
+			    goal G3
+			    {
+			        uuid:"6d39f8d2-6b07-4334-bdcc-dc47bee4dde3";
+			    }
+			}
+		''', URI.createURI("b.gsn"), resourceSet)
+		validationHelper.assertError(first, AssurancePackage.Literals.UUID_TYPE, AssuranceValidator.DUPLICATE_UUID)
+		validationHelper.assertError(second, AssurancePackage.Literals.UUID_TYPE, AssuranceValidator.DUPLICATE_UUID)
+		validationHelper.assertNoErrors(second.eResource, AssurancePackage.Literals.GOAL_NODE, AssuranceValidator.DUPLICATE_FQN)
+
+		// the index follows changes of the resource set
+		val resource = second.eResource
+		resource.unload
+		resourceSet.resources.remove(resource)
+		validationHelper.assertNoErrors(first)
+	}
+
+	@Test
+	def void duplicateFQNsAcrossFiles() {
+		val resourceSet = resourceSetProvider.get
+		val first = parseHelper.parse('''
+			GOALS a
+			{
+			    goal G1
+			    {
+			        uuid:"0d12aa3a-f15f-4fa1-a6d5-3bf10f384b52";
+			    }
+			}
+		''', URI.createURI("a.gsn"), resourceSet)
+		val second = parseHelper.parse('''
+			GOALS a
+			{
+			    goal G1
+			    {
+			        uuid:"6d39f8d2-6b07-4334-bdcc-dc47bee4dde3";
+			    }
+			}
+		''', URI.createURI("b.gsn"), resourceSet)
+		validationHelper.assertError(first, AssurancePackage.Literals.GOAL_NODE, AssuranceValidator.DUPLICATE_FQN)
+		validationHelper.assertError(second, AssurancePackage.Literals.GOAL_NODE, AssuranceValidator.DUPLICATE_FQN)
+		validationHelper.assertNoErrors(first, AssurancePackage.Literals.UUID_TYPE, AssuranceValidator.DUPLICATE_UUID)
+	}
+
+	@Test
+	def void duplicateFQNsWithinAModelDirectory() {
+		val resourceSet = resourceSetProvider.get
+		val first = parseHelper.parse('''
+			GOALS a
+			{
+			    goal G1
+			    {
+			        uuid:"0d12aa3a-f15f-4fa1-a6d5-3bf10f384b52";
+			    }
+			}
+		''', URI.createURI("one/a.gsn"), resourceSet)
+		// the same model name in another model directory
+		val other = parseHelper.parse('''
+			GOALS a
+			{
+			    goal G1
+			    {
+			        uuid:"6d39f8d2-6b07-4334-bdcc-dc47bee4dde3";
+			    }
+			}
+		''', URI.createURI("two/a.gsn"), resourceSet)
+		validationHelper.assertNoErrors(first, AssurancePackage.Literals.GOAL_NODE, AssuranceValidator.DUPLICATE_FQN)
+		validationHelper.assertNoErrors(other, AssurancePackage.Literals.GOAL_NODE, AssuranceValidator.DUPLICATE_FQN)
+
+		val second = parseHelper.parse('''
+			GOALS a
+			{
+			    goal G1
+			    {
+			        uuid:"9a1b4c2d-3e5f-4a6b-8c7d-0e1f2a3b4c5d";
+			    }
+			}
+		''', URI.createURI("one/b.gsn"), resourceSet)
+		validationHelper.assertError(first, AssurancePackage.Literals.GOAL_NODE, AssuranceValidator.DUPLICATE_FQN)
+		validationHelper.assertError(second, AssurancePackage.Literals.GOAL_NODE, AssuranceValidator.DUPLICATE_FQN)
+		validationHelper.assertNoErrors(other, AssurancePackage.Literals.GOAL_NODE, AssuranceValidator.DUPLICATE_FQN)
+	}
+}
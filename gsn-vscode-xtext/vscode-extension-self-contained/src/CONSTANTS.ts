@@ -15,6 +15,7 @@ const CONSTANTS = {
         MODEL_UPDATE_COMMAND: 'gsn.MODEL_UPDATE',
         REVEAL_ORIGIN_COMMAND: 'gsn.REVEAL_ORIGIN',
         ASSIGN_UUIDS_COMMAND: 'gsn.ASSIGN_UUIDS',
+        MODEL_CHANGED_EVENT: 'gsn.modelChanged',
     },
     SOLUTION_DEPI_STATES: {
         DEPI_UNAVAILABLE: 'DepiUnavailable',
@@ -170,26 +170,46 @@ export async function activate(context: ExtensionContext) {
 
             const toDispose = [];
 
+            const reloadModel = async () => {
+                modelContext.undoStack = [];
+                modelContext.redoStack = [];
+                try {
+                    await emitUndoRedoAvailable(modelContext, panel, log);
+                    const modelStr = await postCommandToLSP(log, CONSTANTS.LSP.GET_MODEL_JSON_COMMAND,
+                        { modelDir: modelContext.dirUri.path });
+                    await checkAndSendModelToGraph(panel, log, modelStr);
+                    modelContext.modelHash = await readInModelHash(modelContext.dirUri);
+                } catch (err) {
+                    await panel.webview.postMessage({
+                        type: CONSTANTS.EVENTS.TYPES.ERROR_MESSAGE,
+                        value: err.message,
+                    });
+                }
+            };
+
             toDispose.push(
                 workspace.onDidSaveTextDocument(async (event) => {
                     const fpath = event.uri.path;
 
                     if (fpath.endsWith(CONSTANTS.FILE_EXTENSION) && modelContext.dirUri && fpath.startsWith(modelContext.dirUri.path)) {
                         log(`\nModel was updated via file: ${fpath}`);
-                        modelContext.undoStack = [];
-                        modelContext.redoStack = [];
-                        try {
-                            await emitUndoRedoAvailable(modelContext, panel, log);
-                            const modelStr = await postCommandToLSP(log, CONSTANTS.LSP.GET_MODEL_JSON_COMMAND,
-                                { modelDir: modelContext.dirUri.path });
-                            await checkAndSendModelToGraph(panel, log, modelStr);
-                            modelContext.modelHash = await readInModelHash(modelContext.dirUri);
-                        } catch (err) {
-                            await panel.webview.postMessage({
-                                type: CONSTANTS.EVENTS.TYPES.ERROR_MESSAGE,
-                                value: err.message,
-                            });
-                        }
+                        await reloadModel();
+                    }
+                })
+            );
+
+            // The server watches the model directory and reports .gsn-files changed by other programs
+            // (git checkout, json2gsn, ..) - saves from the editor were already handled above.
+            toDispose.push(
+                lc.onTelemetry(async (event) => {
+                    if (!event || event.type !== CONSTANTS.LSP.MODEL_CHANGED_EVENT || !modelContext.dirUri
+                        || Uri.file(event.modelDir).path !== modelContext.dirUri.path) {
+                        return;
+                    }
+
+                    if (await readInModelHash(modelContext.dirUri) !== modelContext.modelHash) {
+                        log(`\nModel was updated outside of the editor: ${event.files.join(', ')}`);
+                        await reloadModel();
                     }
                 })
             );